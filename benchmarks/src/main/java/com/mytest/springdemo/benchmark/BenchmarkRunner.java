@@ -0,0 +1,35 @@
+package com.mytest.springdemo.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks in throughput and average-time mode with the GC
+ * profiler attached, so every result also reports the allocation rate
+ * ({@code gc.alloc.rate.norm} is bytes allocated per operation).
+ * <p>
+ * The first argument is an optional regular expression selecting benchmarks.
+ * Results are also written to {@code jmh-result.json}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .mode(Mode.Throughput)
+                .mode(Mode.AverageTime)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,91 @@
+package com.mytest.springdemo.benchmark;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.mytest.springdemo.SpringBootHelloWorldApplication;
+
+/**
+ * Measures the employee endpoints end to end through the DispatcherServlet:
+ * handler mapping, argument resolution, the controller and Jackson message
+ * conversion. The application is started with its real configuration; requests
+ * are dispatched through MockMvc so socket I/O does not drown the result.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmployeeControllerBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    private String listEtag;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(SpringBootHelloWorldApplication.class)
+                .properties("server.port=0", "EMPLOYEE_SERVICE=localhost")
+                .run();
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        listEtag = mockMvc.perform(get("/employee/list")).andReturn().getResponse().getHeader("ETag");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] employeeById() throws Exception {
+        return mockMvc.perform(get("/employee/1")).andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] employeeByUnknownId() throws Exception {
+        return mockMvc.perform(get("/employee/999999")).andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] employeeList() throws Exception {
+        return mockMvc.perform(get("/employee/list")).andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] designationStats() throws Exception {
+        return mockMvc.perform(get("/employee/stats/designation")).andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] searchByDesignation() throws Exception {
+        return mockMvc.perform(get("/employee/search").param("designation", "manager")).andReturn().getResponse()
+                .getContentAsByteArray();
+    }
+
+    /**
+     * Dashboard poll with the ETag of the previous response: no body is
+     * serialized or sent.
+     */
+    @Benchmark
+    public int employeeListNotModified() throws Exception {
+        return mockMvc.perform(get("/employee/list").header("If-None-Match", listEtag)).andReturn().getResponse().getStatus();
+    }
+}
@@ -0,0 +1,80 @@
+package com.mytest.springdemo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytest.springdemo.codec.EmployeeCodecs;
+import com.mytest.springdemo.codec.EmployeeFormat;
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Encode/decode cost of {@link Employee} payloads in each
+ * {@link EmployeeFormat}, for a single employee and an {@code Employee[]} of
+ * {@link #size} elements. Payload sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmployeeFormatBenchmark {
+
+    @Param({"JSON", "CBOR", "SMILE", "PROTOBUF"})
+    public EmployeeFormat format;
+
+    @Param({"1", "1000"})
+    public int size;
+
+    private EmployeeCodecs codecs;
+
+    private Employee employee;
+    private Employee[] employees;
+    private byte[] employeeBytes;
+    private byte[] employeesBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        codecs = new EmployeeCodecs(new ObjectMapper());
+
+        employees = new Employee[size];
+        for (int i = 0; i < size; i++) {
+            employees[i] = new Employee(String.valueOf(i + 1), "emp" + (i + 1),
+                    i == 0 ? "manager" : "individual contributor", i == 0 ? 3000 : 2000);
+        }
+        employee = employees[0];
+        employeeBytes = codecs.writeEmployee(format, employee);
+        employeesBytes = codecs.writeEmployees(format, employees);
+        System.out.println(format + " payload: employee=" + employeeBytes.length + " bytes, "
+                + size + " employees=" + employeesBytes.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encodeEmployee() throws Exception {
+        return codecs.writeEmployee(format, employee);
+    }
+
+    @Benchmark
+    public byte[] encodeEmployees() throws Exception {
+        return codecs.writeEmployees(format, employees);
+    }
+
+    @Benchmark
+    public Employee decodeEmployee() throws Exception {
+        return codecs.readEmployee(format, employeeBytes);
+    }
+
+    @Benchmark
+    public Employee[] decodeEmployees() throws Exception {
+        return codecs.readEmployees(format, employeesBytes);
+    }
+}
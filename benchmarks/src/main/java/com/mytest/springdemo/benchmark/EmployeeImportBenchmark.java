@@ -0,0 +1,80 @@
+package com.mytest.springdemo.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytest.springdemo.codec.EmployeeRowReader;
+import com.mytest.springdemo.model.ImportSummary;
+import com.mytest.springdemo.repository.EmployeeImporter;
+import com.mytest.springdemo.repository.EmployeeRepository;
+
+/**
+ * {@link EmployeeImporter} loading {@link #RECORDS} employees from an
+ * in-memory NDJSON or CSV payload into an empty repository, for a few batch
+ * sizes. Each invocation starts from a fresh repository.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EmployeeImportBenchmark {
+
+    private static final int RECORDS = 100000;
+
+    @Param({"NDJSON", "CSV"})
+    public EmployeeRowReader.Format format;
+
+    @Param({"1", "1000"})
+    public int batchSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private byte[] payload;
+
+    private EmployeeImporter importer;
+
+    @Setup(Level.Trial)
+    public void setUpPayload() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(RECORDS * 80);
+        StringBuilder line = new StringBuilder();
+        for (int i = 1; i <= RECORDS; i++) {
+            line.setLength(0);
+            String designation = i % 10 == 0 ? "manager" : "individual contributor";
+            if (format == EmployeeRowReader.Format.CSV) {
+                line.append(i).append(",emp").append(i).append(',').append(designation).append(',').append(2000 + i % 1000);
+            } else {
+                line.append("{\"empId\":\"").append(i).append("\",\"name\":\"emp").append(i)
+                        .append("\",\"designation\":\"").append(designation).append("\",\"salary\":").append(2000 + i % 1000)
+                        .append('}');
+            }
+            out.write(line.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+        }
+        payload = out.toByteArray();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpRepository() {
+        importer = new EmployeeImporter(new EmployeeRepository(), mapper, batchSize, 8192);
+    }
+
+    @Benchmark
+    public ImportSummary importAll() throws IOException {
+        return importer.importFrom(new ByteArrayInputStream(payload), StandardCharsets.UTF_8, format, true);
+    }
+}
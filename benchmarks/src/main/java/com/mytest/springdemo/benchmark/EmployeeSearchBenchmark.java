@@ -0,0 +1,87 @@
+package com.mytest.springdemo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mytest.springdemo.model.Employee;
+import com.mytest.springdemo.repository.EmployeeRepository;
+
+/**
+ * First page of 100 results for each indexed search in a repository of
+ * {@link #size} employees, against filtering {@link EmployeeRepository#findAll()}
+ * the way callers had to before. One employee in 50 is a manager.
+ * {@link #pageAfterWrite} reads a page of the id-ordered list right after a
+ * write, which used to re-sort every employee.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmployeeSearchBenchmark {
+
+    private static final int LIMIT = 100;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private EmployeeRepository repository;
+
+    @Setup
+    public void setUp() {
+        repository = new EmployeeRepository();
+        List<Employee> batch = new ArrayList<Employee>(1000);
+        for (int id = 1; id <= size; id++) {
+            batch.add(new Employee(String.valueOf(id), "emp" + id, id % 50 == 0 ? "manager" : "individual contributor",
+                    1000 + id % 9000));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch, true);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch, true);
+    }
+
+    @Benchmark
+    public Employee[] designationIndex() {
+        return repository.findByDesignation("manager", null, LIMIT);
+    }
+
+    @Benchmark
+    public Employee[] salaryIndex() {
+        return repository.findBySalaryRange(5000, 5100, null, null, LIMIT);
+    }
+
+    @Benchmark
+    public Employee[] namePrefixIndex() {
+        return repository.findByNamePrefix("emp77", null, null, LIMIT);
+    }
+
+    @Benchmark
+    public Employee[] pageAfterWrite() {
+        repository.save(new Employee("1", "emp1", "individual contributor", 1001));
+        return repository.findPage(Integer.valueOf(size / 2), LIMIT);
+    }
+
+    @Benchmark
+    public List<Employee> designationScan() {
+        List<Employee> page = new ArrayList<Employee>(LIMIT);
+        for (Employee employee : repository.findAll()) {
+            if ("manager".equals(employee.getDesignation()) && page.size() < LIMIT) {
+                page.add(employee);
+            }
+        }
+        return page;
+    }
+}
@@ -0,0 +1,81 @@
+package com.mytest.springdemo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Jackson encode/decode cost of a single {@link Employee} and of an
+ * {@code Employee[]} of {@link #size} elements, isolated from Spring MVC.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmployeeSerializationBenchmark {
+
+    @Param({"3", "1000"})
+    public int size;
+
+    private ObjectWriter employeeWriter;
+    private ObjectWriter arrayWriter;
+    private ObjectReader employeeReader;
+    private ObjectReader arrayReader;
+
+    private Employee employee;
+    private Employee[] employees;
+    private byte[] employeeJson;
+    private byte[] employeesJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        employeeWriter = mapper.writerFor(Employee.class);
+        arrayWriter = mapper.writerFor(Employee[].class);
+        employeeReader = mapper.readerFor(Employee.class);
+        arrayReader = mapper.readerFor(Employee[].class);
+
+        employees = new Employee[size];
+        for (int i = 0; i < size; i++) {
+            employees[i] = new Employee(String.valueOf(i + 1), "emp" + (i + 1),
+                    i == 0 ? "manager" : "individual contributor", i == 0 ? 3000 : 2000);
+        }
+        employee = employees[0];
+        employeeJson = employeeWriter.writeValueAsBytes(employee);
+        employeesJson = arrayWriter.writeValueAsBytes(employees);
+    }
+
+    @Benchmark
+    public byte[] serializeEmployee() throws Exception {
+        return employeeWriter.writeValueAsBytes(employee);
+    }
+
+    @Benchmark
+    public byte[] serializeEmployeeArray() throws Exception {
+        return arrayWriter.writeValueAsBytes(employees);
+    }
+
+    @Benchmark
+    public Employee deserializeEmployee() throws Exception {
+        return employeeReader.readValue(employeeJson);
+    }
+
+    @Benchmark
+    public Employee[] deserializeEmployeeArray() throws Exception {
+        return arrayReader.readValue(employeesJson);
+    }
+}
@@ -0,0 +1,161 @@
+package com.mytest.springdemo.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytest.springdemo.client.EmployeeServiceClient;
+import com.mytest.springdemo.client.EmployeeServiceProperties;
+import com.mytest.springdemo.model.Employee;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * {@link EmployeeServiceClient} against an embedded stub of the employee
+ * service (JDK HttpServer on a loopback port) holding {@link #EMPLOYEES}
+ * employees. Compares a cache hit, a pooled keep-alive round-trip, and
+ * {@link #BATCH} ids fetched one by one versus in one batch request.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmployeeServiceClientBenchmark {
+
+    private static final int EMPLOYEES = 1000;
+
+    private static final int BATCH = 100;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private HttpServer server;
+
+    private EmployeeServiceClient cachingClient;
+
+    private EmployeeServiceClient uncachedClient;
+
+    private List<Integer> batchIds;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/employee/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        cachingClient = new EmployeeServiceClient(properties(url, 60000));
+        uncachedClient = new EmployeeServiceClient(properties(url, 0));
+        cachingClient.getEmployee(1);
+
+        batchIds = new ArrayList<Integer>(BATCH);
+        for (int i = 1; i <= BATCH; i++) {
+            batchIds.add(Integer.valueOf(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        System.out.println(uncachedClient.getMetrics());
+        cachingClient.destroy();
+        uncachedClient.destroy();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public Employee cachedLookup() {
+        return cachingClient.getEmployee(1);
+    }
+
+    @Benchmark
+    public Employee pooledRoundTrip() {
+        next = next % EMPLOYEES + 1;
+        return uncachedClient.getEmployee(next);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int singleLookups() {
+        int found = 0;
+        for (Integer id : batchIds) {
+            if (uncachedClient.getEmployee(id.intValue()) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<Integer, Employee> batchLookup() {
+        return uncachedClient.getEmployees(batchIds);
+    }
+
+    private static EmployeeServiceProperties properties(String url, long cacheTtlMillis) {
+        EmployeeServiceProperties properties = new EmployeeServiceProperties();
+        properties.setUrl(url);
+        properties.setCacheTtlMillis(cacheTtlMillis);
+        properties.setBatchSize(BATCH);
+        return properties;
+    }
+
+    /**
+     * Answers {@code /employee/{id}} and {@code /employee/list?ids=...} the
+     * way TestController does.
+     */
+    private void respond(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        Object body;
+        if (path.equals("/employee/list") && query != null && query.startsWith("ids=")) {
+            List<Employee> employees = new ArrayList<Employee>();
+            for (String id : query.substring(4).split(",")) {
+                Employee employee = employee(Integer.parseInt(id));
+                if (employee.getEmpId() != null) {
+                    employees.add(employee);
+                }
+            }
+            body = employees;
+        } else {
+            body = employee(Integer.parseInt(path.substring("/employee/".length())));
+        }
+        byte[] json = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, json.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(json);
+        out.close();
+    }
+
+    private static Employee employee(int id) {
+        if (id < 1 || id > EMPLOYEES) {
+            return new Employee();
+        }
+        return new Employee(String.valueOf(id), "emp" + id, id == 1 ? "manager" : "IC", id == 1 ? 3000 : 2000);
+    }
+}
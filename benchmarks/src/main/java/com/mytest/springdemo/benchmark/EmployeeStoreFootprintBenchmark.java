@@ -0,0 +1,121 @@
+package com.mytest.springdemo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mytest.springdemo.model.Employee;
+import com.mytest.springdemo.repository.ColumnarEmployeeStore;
+import com.mytest.springdemo.repository.EmployeeRepository;
+import com.mytest.springdemo.repository.EmployeeStore;
+import com.mytest.springdemo.repository.MapEmployeeStore;
+
+/**
+ * Heap footprint and read cost of each {@link EmployeeStore} holding
+ * {@link #size} employees with a handful of distinct designations. Retained
+ * heap per employee is measured once per trial (used heap after GC, before
+ * and after loading) and printed twice: for the store alone, and for an
+ * {@link EmployeeRepository} over the same layout, which adds the
+ * designation aggregates and the id, designation, salary and name indexes.
+ * Names come from a small shared pool, so the difference shown is the
+ * per-employee overhead of the layout itself.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EmployeeStoreFootprintBenchmark {
+
+    private static final String[] DESIGNATIONS = {
+        "manager", "individual contributor", "architect", "director", "intern"
+    };
+
+    @Param({"map", "columnar"})
+    public String layout;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private EmployeeStore store;
+
+    private EmployeeRepository repository;
+
+    @Setup
+    public void setUp() {
+        String[] names = new String[1000];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "emp" + i;
+        }
+        long before = usedHeap();
+        store = newStore();
+        for (int id = 1; id <= size; id++) {
+            store.put(id, employee(id, names));
+        }
+        report("store", usedHeap() - before);
+
+        before = usedHeap();
+        repository = new EmployeeRepository(newStore());
+        List<Employee> batch = new ArrayList<Employee>(1000);
+        for (int id = 1; id <= size; id++) {
+            batch.add(employee(id, names));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch, true);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch, true);
+        batch = null;
+        report("repository", usedHeap() - before);
+    }
+
+    @Benchmark
+    public Employee get() {
+        return store.get(ThreadLocalRandom.current().nextInt(1, size + 1));
+    }
+
+    @Benchmark
+    public Employee[] page() {
+        return repository.findPage(Integer.valueOf(ThreadLocalRandom.current().nextInt(size)), 100);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Employee[] toArray() {
+        return store.toArray();
+    }
+
+    private EmployeeStore newStore() {
+        return "columnar".equals(layout) ? new ColumnarEmployeeStore() : new MapEmployeeStore();
+    }
+
+    private static Employee employee(int id, String[] names) {
+        // fresh designation strings, as a JSON body would produce
+        return new Employee(String.valueOf(id), names[id % names.length],
+                new String(DESIGNATIONS[id % DESIGNATIONS.length]), 1000 + id % 5000);
+    }
+
+    private void report(String what, long retained) {
+        System.out.println(layout + " " + what + ": " + size + " employees retain " + retained / (1024 * 1024)
+                + " MB, " + retained / size + " bytes per employee");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,119 @@
+package jp.co.alico.cusext.dao;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mytest.springdemo.support.LatencyRegistry;
+
+import jp.co.alico.cusext.form.DisAgrEntryForm;
+import jp.co.alico.cusext.vo.DisAgrmntInfoVO;
+
+/**
+ * SQL construction and read/write round-trips of {@link DisAgrInfoDAO}
+ * against the in-memory {@link DisAgrTestDatabase}. Absolute numbers are not
+ * comparable with SQL Server; the point is catching regressions in the Java
+ * side of each call (statement building, mapping, allocation).
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DisAgrInfoDaoBenchmark {
+
+    private static final int ACT_COUNT = 100;
+
+    @Param({"20"})
+    public int rowsPerAct;
+
+    private DisAgrTestDatabase database;
+    private DisAgrInfoDAO dao;
+    private DisAgrEntryForm form;
+    private String actId;
+    private String disAgrmntNo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new DisAgrTestDatabase("disagr_bench");
+        database.create(ACT_COUNT, rowsPerAct);
+        dao = new EmbeddedDisAgrInfoDAO(database);
+
+        actId = DisAgrTestDatabase.actId(ACT_COUNT / 2);
+        disAgrmntNo = DisAgrTestDatabase.agreementNo(ACT_COUNT / 2, rowsPerAct / 2);
+
+        form = new DisAgrEntryForm();
+        form.setActId(actId);
+        form.setDisAgrmntNo(disAgrmntNo);
+        form.setActSubject("benchmark subject");
+        form.setHouseholdId("HH0001");
+        form.setTelNg("TRUE");
+        form.setCnfdncNg("FALSE");
+        form.setFrmAcquaintanceApps("FALSE");
+        form.setUndertakeNg("FALSE");
+        form.setMemo("benchmark memo");
+        form.setCompeAterCmpny1("company");
+        form.setCompeAterCmpny1Prdct("product");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.println(database.getPool());
+        System.out.println(LatencyRegistry.shared().getMetrics());
+        database.shutdown();
+    }
+
+    @Benchmark
+    public String buildListSql() {
+        return dao.getDisAgrInfoSql(false, true);
+    }
+
+    @Benchmark
+    public String buildDetailSql() {
+        return dao.getDisAgrInfoSql(true, true);
+    }
+
+    @Benchmark
+    public List<DisAgrmntInfoVO> getDisAgrInfoList() throws Exception {
+        return dao.getDisAgrInfoList(actId, true);
+    }
+
+    @Benchmark
+    public DisAgrmntInfoVO getDisAgrDetailInfo() throws Exception {
+        return dao.getDisAgrDetailInfo(disAgrmntNo, true);
+    }
+
+    @Benchmark
+    public DisAgrmntInfoVO insertDisAgrInfo() throws Exception {
+        return dao.insertDisAgrInfo(form, "bench");
+    }
+
+    @Benchmark
+    public DisAgrmntInfoVO updateDisAgrInfo() throws Exception {
+        return dao.updateDisAgrInfo(form, "bench");
+    }
+
+    /**
+     * Read-then-write with the UPDATE_DT check. Under multiple threads some
+     * writes lose the race; those count as completed operations too.
+     */
+    @Benchmark
+    public DisAgrmntInfoVO updateDisAgrInfoOptimistic() throws Exception {
+        try {
+            return dao.updateDisAgrInfo(form, "bench", dao.getDisAgrUpdateDt(disAgrmntNo));
+        } catch (DisAgrConflictException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import jp.co.alico.cusext.common.Constant;
+
+/**
+ * In-memory H2 database (SQL Server mode) standing in for the CUSEXT tables
+ * read and written by {@link DisAgrInfoDAO}. SQL Server's FORMAT() is not
+ * available in H2 and is registered as a Java alias.
+ * Connections are served by a {@link DisAgrConnectionPool} over H2's
+ * unpooled data source, so the pool sits in the measured path just as it
+ * does in production.
+ */
+public class DisAgrTestDatabase {
+
+    private final DisAgrConnectionPool pool;
+
+    public DisAgrTestDatabase(String name) {
+        JdbcDataSource source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:" + name + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+        source.setUser("sa");
+        source.setPassword("");
+        DisAgrConnectionPool.Config config = new DisAgrConnectionPool.Config();
+        config.maxSize = 64;
+        pool = new DisAgrConnectionPool(source, config);
+    }
+
+    public DisAgrConnectionPool getPool() {
+        return pool;
+    }
+
+    public DataSource getDataSource() {
+        return pool;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    /**
+     * Creates schemas, sequences and tables, then registers {@code actCount}
+     * activities ACT0..ACTn with {@code rowsPerAct} non-agreement rows each.
+     */
+    public void create(int actCount, int rowsPerAct) throws SQLException {
+        String table = Constant.TABLE_SCHEMA + ".";
+        String seq = Constant.SEQ_SCHEMA + ".";
+        Connection conn = getConnection();
+        try {
+            Statement stmt = conn.createStatement();
+            stmt.execute("CREATE SCHEMA IF NOT EXISTS " + Constant.TABLE_SCHEMA);
+            stmt.execute("CREATE SCHEMA IF NOT EXISTS " + Constant.SEQ_SCHEMA);
+            stmt.execute("CREATE ALIAS IF NOT EXISTS FORMAT FOR \"" + DisAgrTestDatabase.class.getName() + ".format\"");
+            stmt.execute("CREATE SEQUENCE IF NOT EXISTS " + seq + "SEQ_MST_CUS_AGRMNT_NO_EXT START WITH 1");
+            stmt.execute("CREATE SEQUENCE IF NOT EXISTS " + seq + "SEQ_MST_CUS_AGRMNT_ID_EXT START WITH 1");
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + table + "T_MST_CUS_ACT_DT ("
+                    + " SFDC_ID VARCHAR(18) PRIMARY KEY, ACT_SUBJECT VARCHAR(255), REGIST_KBN CHAR(1))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + table + "T_MST_CUS_LDS_AGRMNT_INFO_DT ("
+                    + " SFDC_ID VARCHAR(40) PRIMARY KEY, AGRMNT_NO VARCHAR(40), ACT_SFDC_ID VARCHAR(18),"
+                    + " AGRMNT_NAGRMNT VARCHAR(10), ACT_SUBJECT VARCHAR(255), HOUSEHOLD_ID VARCHAR(18),"
+                    + " TEL_NG VARCHAR(5), CNFDNC_NG VARCHAR(5), FRM_ACQUAINTANCE_APPS VARCHAR(5), UNDERTAKE_NG VARCHAR(5),"
+                    + " MEMO VARCHAR(4000),"
+                    + " COMPE_ATER_CMPNY1 VARCHAR(255), COMPE_ATER_CMPNY1_PRDCT VARCHAR(255),"
+                    + " COMPE_ATER_CMPNY2 VARCHAR(255), COMPE_ATER_CMPNY2_PRDCT VARCHAR(255),"
+                    + " COMPE_ATER_CMPNY3 VARCHAR(255), COMPE_ATER_CMPNY3_PRDCT VARCHAR(255),"
+                    + " DEL_FLG VARCHAR(5), ENTRY_PG_ID VARCHAR(20), ENTRY_DT TIMESTAMP, ENTRY_BY VARCHAR(20),"
+                    + " UPDATE_PG_ID VARCHAR(20), UPDATE_DT TIMESTAMP, UPDATE_BY VARCHAR(20))");
+            stmt.execute("CREATE INDEX IF NOT EXISTS IX_AGRMNT_NO ON " + table + "T_MST_CUS_LDS_AGRMNT_INFO_DT (AGRMNT_NO)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS IX_ACT_SFDC_ID ON " + table + "T_MST_CUS_LDS_AGRMNT_INFO_DT (ACT_SFDC_ID)");
+            stmt.close();
+
+            PreparedStatement act = conn.prepareStatement("INSERT INTO " + table + "T_MST_CUS_ACT_DT VALUES (?, ?, '1')");
+            PreparedStatement agr = conn.prepareStatement("INSERT INTO " + table + "T_MST_CUS_LDS_AGRMNT_INFO_DT"
+                    + " (SFDC_ID, AGRMNT_NO, ACT_SFDC_ID, AGRMNT_NAGRMNT, ACT_SUBJECT, HOUSEHOLD_ID, TEL_NG, CNFDNC_NG,"
+                    + " FRM_ACQUAINTANCE_APPS, UNDERTAKE_NG, MEMO, COMPE_ATER_CMPNY1, COMPE_ATER_CMPNY1_PRDCT, DEL_FLG,"
+                    + " ENTRY_PG_ID, ENTRY_DT, ENTRY_BY, UPDATE_PG_ID, UPDATE_DT, UPDATE_BY)"
+                    + " VALUES (?, ?, ?, '不成約', ?, 'HH0001', 'TRUE', 'FALSE', 'FALSE', 'FALSE', 'memo',"
+                    + " 'company', 'product', 'FALSE', 'CUSEXT', CURRENT_TIMESTAMP, 'ope', 'CUSEXT', CURRENT_TIMESTAMP, 'ope')");
+            for (int a = 0; a < actCount; a++) {
+                String actId = actId(a);
+                act.setString(1, actId);
+                act.setString(2, "subject " + a);
+                act.executeUpdate();
+                for (int r = 0; r < rowsPerAct; r++) {
+                    String no = agreementNo(a, r);
+                    agr.setString(1, "SEED_" + no);
+                    agr.setString(2, no);
+                    agr.setString(3, actId);
+                    agr.setString(4, "subject " + a);
+                    agr.addBatch();
+                }
+                agr.executeBatch();
+            }
+            act.close();
+            agr.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    public void shutdown() throws SQLException {
+        Connection conn = getConnection();
+        try {
+            conn.createStatement().execute("SHUTDOWN");
+        } finally {
+            conn.close();
+        }
+        pool.close();
+    }
+
+    public static String actId(int act) {
+        return "ACT" + act;
+    }
+
+    public static String agreementNo(int act, int row) {
+        return "SEED" + act + "_" + row;
+    }
+
+    /**
+     * Java implementation of the subset of SQL Server FORMAT(datetime, pattern)
+     * used by the DAO; the patterns happen to be SimpleDateFormat compatible.
+     */
+    public static String format(Timestamp value, String pattern) {
+        if (value == null) {
+            return null;
+        }
+        return new SimpleDateFormat(pattern).format(value);
+    }
+}
@@ -0,0 +1,60 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import jp.co.alico.cusext.common.Constant;
+
+/**
+ * {@link DisAgrInfoDAO} wired to a {@link DisAgrTestDatabase} instead of the
+ * container-managed connection. H2 has no OUTPUT clause, so the returning
+ * insert and update are rewritten to the equivalent
+ * {@code SELECT ... FROM FINAL TABLE (...)} form.
+ */
+public class EmbeddedDisAgrInfoDAO extends DisAgrInfoDAO {
+
+    private static final AgrmntNoAllocator AGRMNT_NO_ALLOCATOR = new H2AgrmntNoAllocator(
+            Constant.SEQ_SCHEMA + ".SEQ_MST_CUS_AGRMNT_NO_EXT", "EN", AgrmntNoAllocator.DEFAULT_BLOCK_SIZE);
+
+    private static final String INSERT_RETURNING_SQL = toFinalTable(new DisAgrInfoDAO().getInsertReturningSql());
+
+    private static final String UPDATE_RETURNING_SQL = toFinalTable(new DisAgrInfoDAO().getUpdateReturningSql());
+
+    private static final String UPDATE_CHECKED_RETURNING_SQL = toFinalTable(new DisAgrInfoDAO().getUpdateCheckedReturningSql());
+
+    private final DisAgrTestDatabase database;
+
+    public EmbeddedDisAgrInfoDAO(DisAgrTestDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return database.getConnection();
+    }
+
+    @Override
+    protected AgrmntNoAllocator getAgrmntNoAllocator() {
+        return AGRMNT_NO_ALLOCATOR;
+    }
+
+    @Override
+    protected String getInsertReturningSql() {
+        return INSERT_RETURNING_SQL;
+    }
+
+    @Override
+    protected String getUpdateReturningSql() {
+        return UPDATE_RETURNING_SQL;
+    }
+
+    @Override
+    protected String getUpdateCheckedReturningSql() {
+        return UPDATE_CHECKED_RETURNING_SQL;
+    }
+
+    private static String toFinalTable(String sql) {
+        String columns = OUTPUT_CLAUSE.replace(" OUTPUT ", "").replace("INSERTED.", "");
+        return "SELECT " + columns + " FROM FINAL TABLE (" + sql.replace(OUTPUT_CLAUSE, "") + ")";
+    }
+}
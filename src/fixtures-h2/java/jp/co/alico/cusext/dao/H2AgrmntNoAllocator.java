@@ -0,0 +1,40 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * {@link AgrmntNoAllocator} for H2, which has no sp_sequence_get_range. The
+ * range is drawn with one NEXT VALUE per element in a single query; that is
+ * contiguous only because this allocator is the sole user of the sequence and
+ * only one refill runs at a time, which holds for the benchmark database.
+ */
+public class H2AgrmntNoAllocator extends AgrmntNoAllocator {
+
+    private final String sequenceName;
+
+    public H2AgrmntNoAllocator(String sequenceName, String prefix, int blockSize) {
+        super(sequenceName, prefix, blockSize);
+        this.sequenceName = sequenceName;
+    }
+
+    @Override
+    protected ReservedRange reserveRange(Connection conn, int size) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT MIN(V), MAX(V) FROM (SELECT NEXT VALUE FOR " + sequenceName + " AS V FROM SYSTEM_RANGE(1, ?))");
+        try {
+            pstmt.setInt(1, size);
+            ResultSet rset = pstmt.executeQuery();
+            rset.next();
+            long first = rset.getLong(1);
+            if (rset.getLong(2) - first + 1 != size) {
+                throw new SQLException("sequence range is not contiguous: " + sequenceName);
+            }
+            return new ReservedRange(first, 1, size);
+        } finally {
+            pstmt.close();
+        }
+    }
+}
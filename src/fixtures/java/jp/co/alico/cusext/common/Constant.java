@@ -0,0 +1,26 @@
+package jp.co.alico.cusext.common;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 定数クラス（代替）</p>
+ * <p>概要： CUSEXT共通基盤の Constant のうち、DAOが参照する定数のみを持つ代替クラス。</p>
+ *
+ * @version 1.0.0
+ */
+public class Constant {
+
+    /** メソッドログ：開始 */
+    public static final String METHOD_START = "START";
+
+    /** メソッドログ：終了 */
+    public static final String METHOD_END = "END";
+
+    /** テーブルのスキーマ */
+    public static final String TABLE_SCHEMA = "dbo";
+
+    /** シーケンスのスキーマ */
+    public static final String SEQ_SCHEMA = "seq";
+
+    private Constant() {
+    }
+}
@@ -0,0 +1,69 @@
+package jp.co.alico.cusext.common;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： ログ出力クラス（代替）</p>
+ * <p>概要： CUSEXT共通基盤の LoggerUtil の代替クラス。java.util.logging へ出力する。</p>
+ *
+ * @version 1.0.0
+ */
+public class LoggerUtil {
+
+    private final Logger logger;
+
+    /**
+     * コンストラクタ。
+     * @param name ロガー名
+     */
+    public LoggerUtil(String name) {
+        this.logger = Logger.getLogger(name);
+    }
+
+    public boolean isDebugEnabled() {
+        return logger.isLoggable(Level.FINE);
+    }
+
+    /**
+     * メソッドの開始・終了を引数・戻り値とともに出力する。
+     * @param methodName メソッド名
+     * @param args 引数または戻り値
+     * @param kind Constant.METHOD_START または Constant.METHOD_END
+     */
+    public void methodLog(String methodName, Object[] args, String kind) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(methodName + " " + kind + " " + Arrays.toString(args));
+        }
+    }
+
+    /**
+     * メソッドの開始・終了を出力する。
+     * @param methodName メソッド名
+     * @param kind Constant.METHOD_START または Constant.METHOD_END
+     */
+    public void methodLog(String methodName, String kind) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(methodName + " " + kind);
+        }
+    }
+
+    /**
+     * SQL文を出力する。
+     * @param sql SQL文
+     */
+    public void printSql(String sql) {
+        logger.fine(sql);
+    }
+
+    /**
+     * エラーを出力する。
+     * @param code メッセージコード
+     * @param t 例外
+     */
+    public void error(String code, Throwable t) {
+        logger.log(Level.SEVERE, code, t);
+    }
+}
@@ -0,0 +1,48 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： DAO基底クラス（代替）</p>
+ * <p>概要： CUSEXT共通基盤の DAOBase を持たない環境（ベンチマーク・単体テスト）でビルドするための代替クラス。
+ * コネクションはコンテナから取得できないため、DisAgrConnectionPool を設定するかサブクラスで getConnection を上書きすること。</p>
+ *
+ * @version 1.0.0
+ */
+public class DAOBase {
+
+    /**
+     * DBコネクションを取得する。代替クラスでは取得元がないため常に例外とする。
+     * @return Connection DBコネクション
+     * @throws Exception 例外処理
+     */
+    protected Connection getConnection() throws Exception {
+        throw new SQLException("no container DataSource outside CUSEXT; install a DisAgrConnectionPool");
+    }
+
+    /**
+     * ResultSet・Statement・Connection を順にクローズする。nullは無視する。
+     * @param conn コネクション
+     * @param stmt ステートメント
+     * @param rset 結果セット
+     * @throws SQLException 例外処理
+     */
+    protected void close(Connection conn, Statement stmt, ResultSet rset) throws SQLException {
+        try {
+            if (rset != null) {
+                rset.close();
+            }
+            if (stmt != null) {
+                stmt.close();
+            }
+        } finally {
+            if (conn != null) {
+                conn.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package jp.co.alico.cusext.vo;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報VO（代替）</p>
+ * <p>概要： CUSEXT共通基盤の DisAgrmntInfoVO のうち、DAOが参照する項目のみを持つ代替クラス。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrmntInfoVO {
+    private String disAgrmntNo;
+    private String actSubject;
+    private String householdId;
+    private String telNg;
+    private String frmAcquaintanceApps;
+    private String undertakeNg;
+    private String cnfdncNg;
+    private String memo;
+    private String compeAterCmpny1;
+    private String compeAterCmpny1Prdct;
+    private String compeAterCmpny2;
+    private String compeAterCmpny2Prdct;
+    private String compeAterCmpny3;
+    private String compeAterCmpny3Prdct;
+    private String entryPgId;
+    private String entryDt;
+    private String entryBy;
+    private String updatePgId;
+    private String updateDt;
+    private String updateBy;
+
+    public String getDisAgrmntNo() {
+        return disAgrmntNo;
+    }
+
+    public void setDisAgrmntNo(String disAgrmntNo) {
+        this.disAgrmntNo = disAgrmntNo;
+    }
+
+    public String getActSubject() {
+        return actSubject;
+    }
+
+    public void setActSubject(String actSubject) {
+        this.actSubject = actSubject;
+    }
+
+    public String getHouseholdId() {
+        return householdId;
+    }
+
+    public void setHouseholdId(String householdId) {
+        this.householdId = householdId;
+    }
+
+    public String getTelNg() {
+        return telNg;
+    }
+
+    public void setTelNg(String telNg) {
+        this.telNg = telNg;
+    }
+
+    public String getFrmAcquaintanceApps() {
+        return frmAcquaintanceApps;
+    }
+
+    public void setFrmAcquaintanceApps(String frmAcquaintanceApps) {
+        this.frmAcquaintanceApps = frmAcquaintanceApps;
+    }
+
+    public String getUndertakeNg() {
+        return undertakeNg;
+    }
+
+    public void setUndertakeNg(String undertakeNg) {
+        this.undertakeNg = undertakeNg;
+    }
+
+    public String getCnfdncNg() {
+        return cnfdncNg;
+    }
+
+    public void setCnfdncNg(String cnfdncNg) {
+        this.cnfdncNg = cnfdncNg;
+    }
+
+    public String getMemo() {
+        return memo;
+    }
+
+    public void setMemo(String memo) {
+        this.memo = memo;
+    }
+
+    public String getCompeAterCmpny1() {
+        return compeAterCmpny1;
+    }
+
+    public void setCompeAterCmpny1(String compeAterCmpny1) {
+        this.compeAterCmpny1 = compeAterCmpny1;
+    }
+
+    public String getCompeAterCmpny1Prdct() {
+        return compeAterCmpny1Prdct;
+    }
+
+    public void setCompeAterCmpny1Prdct(String compeAterCmpny1Prdct) {
+        this.compeAterCmpny1Prdct = compeAterCmpny1Prdct;
+    }
+
+    public String getCompeAterCmpny2() {
+        return compeAterCmpny2;
+    }
+
+    public void setCompeAterCmpny2(String compeAterCmpny2) {
+        this.compeAterCmpny2 = compeAterCmpny2;
+    }
+
+    public String getCompeAterCmpny2Prdct() {
+        return compeAterCmpny2Prdct;
+    }
+
+    public void setCompeAterCmpny2Prdct(String compeAterCmpny2Prdct) {
+        this.compeAterCmpny2Prdct = compeAterCmpny2Prdct;
+    }
+
+    public String getCompeAterCmpny3() {
+        return compeAterCmpny3;
+    }
+
+    public void setCompeAterCmpny3(String compeAterCmpny3) {
+        this.compeAterCmpny3 = compeAterCmpny3;
+    }
+
+    public String getCompeAterCmpny3Prdct() {
+        return compeAterCmpny3Prdct;
+    }
+
+    public void setCompeAterCmpny3Prdct(String compeAterCmpny3Prdct) {
+        this.compeAterCmpny3Prdct = compeAterCmpny3Prdct;
+    }
+
+    public String getEntryPgId() {
+        return entryPgId;
+    }
+
+    public void setEntryPgId(String entryPgId) {
+        this.entryPgId = entryPgId;
+    }
+
+    public String getEntryDt() {
+        return entryDt;
+    }
+
+    public void setEntryDt(String entryDt) {
+        this.entryDt = entryDt;
+    }
+
+    public String getEntryBy() {
+        return entryBy;
+    }
+
+    public void setEntryBy(String entryBy) {
+        this.entryBy = entryBy;
+    }
+
+    public String getUpdatePgId() {
+        return updatePgId;
+    }
+
+    public void setUpdatePgId(String updatePgId) {
+        this.updatePgId = updatePgId;
+    }
+
+    public String getUpdateDt() {
+        return updateDt;
+    }
+
+    public void setUpdateDt(String updateDt) {
+        this.updateDt = updateDt;
+    }
+
+    public String getUpdateBy() {
+        return updateBy;
+    }
+
+    public void setUpdateBy(String updateBy) {
+        this.updateBy = updateBy;
+    }
+}
@@ -0,0 +1,200 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約No採番クラス</p>
+ * <p>概要： シーケンスの値を範囲単位で予約し、予約済みの範囲からメモリ上で採番する。
+ * 範囲内の採番はロックを取らずに行い、範囲を使い切ったスレッドのうち1つだけがDBから次の範囲を予約する。
+ * 予約中は他のスレッドは予約の完了を待つが、モニタは保持しないため、DBの応答待ちの間に
+ * 採番以外の処理が同じロックで止まることはない。
+ * 予約はSQL Serverの sys.sp_sequence_get_range で行うため、シーケンス自体の定義
+ * （開始値・増分）は変更不要で、他ノードや既存の採番と値が重複することはない。
+ * 範囲内の値はシーケンスの増分ずつ進める。範囲の途中で循環（CYCLE）した場合は値が連続しないためエラーとする。
+ * 再起動時に未使用だった予約分は欠番となるが、再利用はされない。</p>
+ *
+ * @version 1.0.0
+ */
+public class AgrmntNoAllocator {
+
+    // 予約範囲の件数（システムプロパティで変更可能）
+    public static final int DEFAULT_BLOCK_SIZE = Integer.getInteger("cusext.agrmntNo.blockSize", 50).intValue();
+
+    // 範囲予約用SQL
+    private static final String RESERVE_RANGE_SQL =
+        "SET NOCOUNT ON;"
+        + " DECLARE @first SQL_VARIANT, @last SQL_VARIANT, @increment SQL_VARIANT, @cycles INT;"
+        + " EXEC sys.sp_sequence_get_range @sequence_name = ?, @range_size = ?,"
+        + " @range_first_value = @first OUTPUT, @range_last_value = @last OUTPUT,"
+        + " @range_cycle_count = @cycles OUTPUT, @sequence_increment = @increment OUTPUT;"
+        + " SELECT CAST(@first AS BIGINT), CAST(@last AS BIGINT), CAST(@increment AS BIGINT), @cycles";
+
+    // シーケンス名（スキーマ付き）
+    private final String sequenceName;
+    // 採番値の接頭辞
+    private final String prefix;
+    // 予約範囲の件数
+    private final int blockSize;
+    // 採番中の範囲
+    private volatile Range current = Range.EMPTY;
+    // 予約中であれば完了時に開放されるラッチ、予約中でなければnull
+    private final AtomicReference<CountDownLatch> refilling = new AtomicReference<CountDownLatch>();
+    // DBから予約した範囲の数
+    private final AtomicLong reservations = new AtomicLong();
+
+    /**
+     * コンストラクタ。
+     * @param sequenceName シーケンス名（スキーマ付き）
+     * @param prefix 採番値の接頭辞
+     * @param blockSize 1回に予約する件数
+     */
+    public AgrmntNoAllocator(String sequenceName, String prefix, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        this.sequenceName = sequenceName;
+        this.prefix = prefix;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * 次の番号を採番する。予約済みの範囲を使い切った場合のみ、渡されたコネクションで次の範囲を予約する。
+     * @param conn 範囲予約に使用するコネクション
+     * @return String 接頭辞付きの番号
+     * @throws SQLException 例外処理
+     */
+    public String next(Connection conn) throws SQLException {
+        for (;;) {
+            Range range = current;
+            long index = range.next.getAndIncrement();
+            if (index < range.size) {
+                return prefix + (range.first + index * range.increment);
+            }
+            CountDownLatch latch = new CountDownLatch(1);
+            if (refilling.compareAndSet(null, latch)) {
+                try {
+                    // 他スレッドの予約が先に完了していればそちらを使う
+                    if (current == range) {
+                        ReservedRange reserved = reserveRange(conn, blockSize);
+                        if (reserved.size != blockSize) {
+                            throw new SQLException("reserved " + reserved.size + " values of " + sequenceName
+                                + ", requested " + blockSize);
+                        }
+                        reservations.incrementAndGet();
+                        current = new Range(reserved);
+                    }
+                } finally {
+                    refilling.set(null);
+                    latch.countDown();
+                }
+            } else {
+                // 予約中のスレッドの完了を待って再試行する（失敗していた場合は自スレッドで予約する）
+                CountDownLatch other = refilling.get();
+                if (other != null) {
+                    try {
+                        other.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("interrupted while waiting for " + sequenceName + " to be reserved", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * DBから予約した範囲の数を返す。
+     * @return long 予約回数
+     */
+    public long getReservationCount() {
+        return reservations.get();
+    }
+
+    /**
+     * シーケンスから連続した値を予約する。
+     * @param conn コネクション
+     * @param size 予約件数
+     * @return ReservedRange 予約範囲
+     * @throws SQLException 範囲の途中でシーケンスが循環した場合、または範囲が増分と一致しない場合
+     */
+    protected ReservedRange reserveRange(Connection conn, int size) throws SQLException {
+        PreparedStatement pstmt = null;
+        ResultSet rset = null;
+        try {
+            pstmt = conn.prepareStatement(RESERVE_RANGE_SQL);
+            pstmt.setString(1, sequenceName);
+            pstmt.setLong(2, size);
+            rset = pstmt.executeQuery();
+            if (!rset.next()) {
+                throw new SQLException("sp_sequence_get_range returned no value for " + sequenceName);
+            }
+            long first = rset.getLong(1);
+            long last = rset.getLong(2);
+            long increment = rset.getLong(3);
+            if (rset.getInt(4) != 0) {
+                throw new SQLException("sequence " + sequenceName + " cycled within the reserved range " + first + ".." + last);
+            }
+            if (increment == 0 || last - first != increment * (size - 1)) {
+                throw new SQLException("sequence " + sequenceName + " returned " + first + ".." + last
+                    + " for " + size + " values with increment " + increment);
+            }
+            return new ReservedRange(first, increment, size);
+        } finally {
+            try {
+                if (rset != null) {
+                    rset.close();
+                }
+            } finally {
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * シーケンスから予約した範囲。値は first, first + increment, ... の size 件。
+     */
+    protected static final class ReservedRange {
+        final long first;
+        final long increment;
+        final int size;
+
+        /**
+         * コンストラクタ。
+         * @param first 先頭の値
+         * @param increment シーケンスの増分
+         * @param size 件数
+         */
+        public ReservedRange(long first, long increment, int size) {
+            this.first = first;
+            this.increment = increment;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 採番中の範囲。next（範囲内の位置）が size に達したら使い切り。
+     */
+    private static final class Range {
+        static final Range EMPTY = new Range(new ReservedRange(1, 1, 0));
+
+        final AtomicLong next = new AtomicLong();
+        final long first;
+        final long increment;
+        final int size;
+
+        Range(ReservedRange reserved) {
+            this.first = reserved.first;
+            this.increment = reserved.increment;
+            this.size = reserved.size;
+        }
+    }
+}
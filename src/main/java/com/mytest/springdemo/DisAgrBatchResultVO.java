@@ -0,0 +1,66 @@
+package jp.co.alico.cusext.vo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報一括登録結果クラス</p>
+ * <p>概要： 不成約情報一括登録の行ごとの結果を保持する。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrBatchResultVO {
+
+    // 行ごとの結果（登録対象リストと同じ順序）
+    private List<DisAgrBatchRowResultVO> rowResultList;
+    // 登録成功件数
+    private int successCount;
+    // 登録失敗件数
+    private int failureCount;
+
+    /**
+     * コンストラクタ。
+     * @param size 登録対象件数
+     */
+    public DisAgrBatchResultVO(int size) {
+        rowResultList = new ArrayList<DisAgrBatchRowResultVO>(size);
+    }
+
+    /**
+     * 登録成功の行を追加する。
+     * @param index 登録対象リスト中の位置
+     * @param disAgrmntNo 採番した不成約No
+     */
+    public void addSuccess(int index, String disAgrmntNo) {
+        rowResultList.add(new DisAgrBatchRowResultVO(index, disAgrmntNo, null));
+        successCount++;
+    }
+
+    /**
+     * 登録失敗の行を追加する。
+     * @param index 登録対象リスト中の位置
+     * @param errorMessage エラー内容
+     */
+    public void addFailure(int index, String errorMessage) {
+        rowResultList.add(new DisAgrBatchRowResultVO(index, null, errorMessage));
+        failureCount++;
+    }
+
+    public List<DisAgrBatchRowResultVO> getRowResultList() {
+        return rowResultList;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DisAgrBatchResultVO[successCount=" + successCount + ", failureCount=" + failureCount + "]";
+    }
+}
@@ -0,0 +1,46 @@
+package jp.co.alico.cusext.vo;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報一括登録行結果クラス</p>
+ * <p>概要： 不成約情報一括登録の1行分の結果を保持する。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrBatchRowResultVO {
+
+    // 登録対象リスト中の位置
+    private int index;
+    // 採番した不成約No（失敗時はnull）
+    private String disAgrmntNo;
+    // エラー内容（成功時はnull）
+    private String errorMessage;
+
+    /**
+     * コンストラクタ。
+     * @param index 登録対象リスト中の位置
+     * @param disAgrmntNo 採番した不成約No
+     * @param errorMessage エラー内容
+     */
+    public DisAgrBatchRowResultVO(int index, String disAgrmntNo, String errorMessage) {
+        this.index = index;
+        this.disAgrmntNo = disAgrmntNo;
+        this.errorMessage = errorMessage;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getDisAgrmntNo() {
+        return disAgrmntNo;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public boolean isSuccess() {
+        return errorMessage == null;
+    }
+}
@@ -0,0 +1,48 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.Timestamp;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報排他エラー</p>
+ * <p>概要： 楽観排他で不成約情報を更新する際、読込後に他の処理で更新されていた場合にスローする。
+ * 呼出し元は最新の情報を読込み直し、利用者に再入力を促すこと。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrConflictException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    // 不成約No
+    private final String disAgrmntNo;
+    // 読込時の更新日時
+    private final Timestamp expectedUpdateDt;
+    // 現在の更新日時
+    private final Timestamp currentUpdateDt;
+
+    /**
+     * コンストラクタ。
+     * @param disAgrmntNo 不成約No
+     * @param expectedUpdateDt 読込時の更新日時
+     * @param currentUpdateDt 現在の更新日時
+     */
+    public DisAgrConflictException(String disAgrmntNo, Timestamp expectedUpdateDt, Timestamp currentUpdateDt) {
+        super("disAgrmntNo " + disAgrmntNo + " was updated at " + currentUpdateDt + " after it was read at " + expectedUpdateDt);
+        this.disAgrmntNo = disAgrmntNo;
+        this.expectedUpdateDt = expectedUpdateDt;
+        this.currentUpdateDt = currentUpdateDt;
+    }
+
+    public String getDisAgrmntNo() {
+        return disAgrmntNo;
+    }
+
+    public Timestamp getExpectedUpdateDt() {
+        return expectedUpdateDt;
+    }
+
+    public Timestamp getCurrentUpdateDt() {
+        return currentUpdateDt;
+    }
+}
@@ -0,0 +1,591 @@
+package jp.co.alico.cusext.dao;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.mytest.springdemo.support.LatencyHistogram;
+import com.mytest.springdemo.support.LatencyRegistry;
+
+import jp.co.alico.cusext.common.LoggerUtil;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： DBコネクションプール</p>
+ * <p>概要： 接続元の DataSource から取得した物理コネクションをプールし、DAOへ論理コネクションとして貸し出す。
+ * 論理コネクションを{@code close()}すると物理コネクションはプールへ返却される。</p>
+ * <ul>
+ * <li>同時に貸し出す数は最大件数までとし、空きがない場合は取得待ち時間まで待機する（超過時は SQLTimeoutException）。</li>
+ * <li>一定時間使われていなかったコネクションは貸出前に{@code isValid}で検証し、無効であれば破棄して取り直す。</li>
+ * <li>貸出時間がリーク検出時間を超えたコネクションは、取得箇所のスタックトレースをエラーログに出力する。
+ * スタックトレースの取得は貸出ごとに例外オブジェクトを作成するため、既定では無効とし、
+ * 有効にした場合もサンプリング率の割合の貸出についてのみ取得する。</li>
+ * <li>アイドル時間を超えたコネクションは最小アイドル数を残して破棄し、最小アイドル数まで補充する。</li>
+ * <li>物理コネクションは StatementCachingConnection で包み、PreparedStatement を再利用する。</li>
+ * <li>返却時は未確定のトランザクションをロールバックし、自動コミット・分離レベル・読取専用を作成時の状態に戻す。</li>
+ * </ul>
+ * <p>使用中・アイドル・取得待ちの数と取得待ち時間の分布は{@link #getMetrics()}で取得できる。
+ * 取得待ち時間は{@link LatencyRegistry#shared()}の pool / acquire に記録するため、{@code /metrics}の latency にも出力される。
+ * 取得待ちのタイムアウトはエラーとして数え、分布には含めない。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrConnectionPool implements DataSource {
+
+    // DAOが使用するプール（未設定の場合は DAOBase のコネクションを使用する）
+    private static volatile DisAgrConnectionPool installed;
+
+    // Logインスタンスの生成
+    private LoggerUtil logger = new LoggerUtil(this.getClass().getName());
+
+    // 接続元
+    private final DataSource source;
+    // 設定
+    private final Config config;
+    // 貸出枠（最大件数）
+    private final Semaphore permits;
+    // アイドル中のコネクション。直近に返却されたものから貸し出す
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<PooledConnection>();
+    // 貸出中のコネクション
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    // 物理コネクション数（作成予約中を含む）
+    private final AtomicInteger total = new AtomicInteger();
+    // 取得待ちのスレッド数
+    private final AtomicInteger pending = new AtomicInteger();
+    // 定期処理（リーク検出・アイドル破棄・補充）
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    // 統計
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder validationFailureCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    // 取得待ち時間
+    private final LatencyHistogram waitTimes = LatencyRegistry.shared().histogram("pool", "acquire");
+
+    /**
+     * コンストラクタ。
+     * @param source 物理コネクションの接続元
+     * @param config 設定
+     */
+    public DisAgrConnectionPool(DataSource source, Config config) {
+        if (config.maxSize < 1 || config.minIdle < 0 || config.minIdle > config.maxSize) {
+            throw new IllegalArgumentException("invalid pool size: maxSize=" + config.maxSize + ", minIdle=" + config.minIdle);
+        }
+        this.source = source;
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cusext-pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.housekeeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                housekeep();
+            }
+        }, 0, config.housekeepingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * DAOが使用するプールを設定する。null を設定すると DAOBase のコネクションに戻る。
+     * @param pool プール
+     */
+    public static void install(DisAgrConnectionPool pool) {
+        installed = pool;
+    }
+
+    /**
+     * DAOが使用するプールを取得する。
+     * @return DisAgrConnectionPool プール。未設定の場合はnull
+     */
+    public static DisAgrConnectionPool getInstalled() {
+        return installed;
+    }
+
+    /**
+     * トランザクションの終了後（commit・rollback、または未確定のままcloseされた時）に実行する処理を登録する。
+     * 処理は1回だけ実行される。処理で発生した例外はエラーログに出力し、呼出し元へは伝えない。
+     * @param conn このプールから貸し出された論理コネクション
+     * @param callback トランザクション終了後に実行する処理
+     * @return boolean 登録できた場合はtrue。プールのコネクションでない場合、または自動コミットの場合はfalse
+     * @throws SQLException 自動コミットの確認に失敗した場合
+     */
+    public static boolean afterCompletion(Connection conn, Runnable callback) throws SQLException {
+        if (conn == null || !Proxy.isProxyClass(conn.getClass())) {
+            return false;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(conn);
+        if (!(handler instanceof LogicalConnection) || conn.getAutoCommit()) {
+            return false;
+        }
+        return ((LogicalConnection) handler).addCompletion(callback);
+    }
+
+    /**
+     * コネクションを貸し出す。空きがない場合は取得待ち時間まで待機する。
+     * @return Connection 論理コネクション。close() でプールへ返却される
+     * @throws SQLException 取得待ち時間を超えた場合（SQLTimeoutException）、または接続に失敗した場合
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("connection pool is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        pending.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(config.acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a connection", e);
+        } finally {
+            pending.decrementAndGet();
+        }
+        if (!acquired) {
+            timeoutCount.increment();
+            waitTimes.record(System.nanoTime() - start, false);
+            throw new SQLTimeoutException("timed out after " + config.acquireTimeoutMillis + "ms waiting for a connection"
+                    + " (active=" + getActiveCount() + ", idle=" + getIdleCount() + ", pending=" + getPendingCount() + ")");
+        }
+        try {
+            PooledConnection pooled = takeIdleOrCreate();
+            waitTimes.recordSince(start);
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.acquireTrace = config.leakDetectionMillis > 0 && config.leakTraceSampleRate > 0.0
+                    && (config.leakTraceSampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < config.leakTraceSampleRate)
+                    ? new Throwable("connection acquired here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            return pooled.lend();
+        } catch (SQLException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * プールを閉じる。アイドル中のコネクションは直ちに、貸出中のコネクションは返却時に破棄する。
+     * DAOが使用するプールとして設定されていた場合は設定を解除する。
+     */
+    public void close() {
+        closed = true;
+        if (installed == this) {
+            install(null);
+        }
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    public LatencyHistogram getWaitTimeHistogram() {
+        return waitTimes;
+    }
+
+    /**
+     * 監視用の統計値を取得する。
+     * @return Map 統計名 → 値
+     */
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<String, Number>();
+        metrics.put("active", Integer.valueOf(getActiveCount()));
+        metrics.put("idle", Integer.valueOf(getIdleCount()));
+        metrics.put("pending", Integer.valueOf(getPendingCount()));
+        metrics.put("total", Integer.valueOf(getTotalCount()));
+        metrics.put("max", Integer.valueOf(config.maxSize));
+        metrics.put("created", Long.valueOf(createdCount.sum()));
+        metrics.put("destroyed", Long.valueOf(destroyedCount.sum()));
+        metrics.put("timeouts", Long.valueOf(timeoutCount.sum()));
+        metrics.put("validationFailures", Long.valueOf(validationFailureCount.sum()));
+        metrics.put("leaks", Long.valueOf(leakCount.sum()));
+        // 取得待ち時間は wait を前置する（waitCount, waitP99Micros など）
+        for (Map.Entry<String, Number> entry : waitTimes.getMetrics().entrySet()) {
+            String name = entry.getKey();
+            metrics.put("wait" + Character.toUpperCase(name.charAt(0)) + name.substring(1), entry.getValue());
+        }
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "DisAgrConnectionPool" + getMetrics();
+    }
+
+    /**
+     * アイドル中のコネクションを取り出す。必要であれば検証し、アイドルがなければ新しく作成する。
+     * 呼出し元は貸出枠を取得済みであること。
+     */
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        for (;;) {
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled == null) {
+                if (total.incrementAndGet() > config.maxSize) {
+                    // 補充中のコネクションがアイドルに入るのを待つ
+                    total.decrementAndGet();
+                    Thread.yield();
+                    continue;
+                }
+                return create();
+            }
+            if (System.currentTimeMillis() - pooled.returnedAt > config.validationIntervalMillis && !isValid(pooled)) {
+                validationFailureCount.increment();
+                destroy(pooled);
+                continue;
+            }
+            return pooled;
+        }
+    }
+
+    /**
+     * 物理コネクションを作成する。呼出し元は total を予約済みであること。
+     */
+    private PooledConnection create() throws SQLException {
+        try {
+            Connection physical = source.getConnection();
+            if (config.maxStatements > 0) {
+                physical = StatementCachingConnection.wrap(physical, config.maxStatements);
+            }
+            PooledConnection pooled = new PooledConnection(physical, physical.getTransactionIsolation(), physical.isReadOnly());
+            createdCount.increment();
+            return pooled;
+        } catch (SQLException e) {
+            total.decrementAndGet();
+            throw e;
+        } catch (RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(config.validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 論理コネクションの close() から呼ばれ、物理コネクションをプールへ返却する。
+     * 未確定のトランザクションはロールバックし、自動コミットに戻す。
+     * 貸出中に分離レベル・読取専用が変更されていた場合は作成時の値に戻す。
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        boolean reusable = !closed;
+        if (reusable) {
+            try {
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                if (pooled.stateChanged) {
+                    pooled.physical.setTransactionIsolation(pooled.defaultIsolation);
+                    pooled.physical.setReadOnly(pooled.defaultReadOnly);
+                    pooled.stateChanged = false;
+                }
+                pooled.physical.clearWarnings();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+        if (reusable) {
+            pooled.returnedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } else {
+            destroy(pooled);
+        }
+        permits.release();
+    }
+
+    private void destroy(PooledConnection pooled) {
+        total.decrementAndGet();
+        destroyedCount.increment();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // 破棄時の例外は無視する
+        }
+    }
+
+    /**
+     * リーク検出、アイドル時間を超えたコネクションの破棄、最小アイドル数までの補充を行う。
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        try {
+            if (config.leakDetectionMillis > 0) {
+                for (PooledConnection pooled : borrowed) {
+                    if (!pooled.leakReported && now - pooled.borrowedAt > config.leakDetectionMillis) {
+                        pooled.leakReported = true;
+                        leakCount.increment();
+                        logger.error("E0003", new IllegalStateException("connection held for " + (now - pooled.borrowedAt)
+                                + "ms without being closed", pooled.acquireTrace));
+                    }
+                }
+            }
+            for (PooledConnection pooled : new ArrayList<PooledConnection>(idle)) {
+                if (idle.size() <= config.minIdle) {
+                    break;
+                }
+                if (now - pooled.returnedAt > config.idleTimeoutMillis && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            }
+            while (!closed && idle.size() < config.minIdle) {
+                if (total.incrementAndGet() > config.maxSize) {
+                    total.decrementAndGet();
+                    break;
+                }
+                PooledConnection pooled = create();
+                pooled.returnedAt = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            }
+        } catch (Exception e) {
+            logger.error("E0002", e);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("pooled connections use the configured credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return source.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        source.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        source.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return source.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return source.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return source.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || source.isWrapperFor(iface);
+    }
+
+    /**
+     * プールの設定。既定値はシステムプロパティ cusext.pool.* で変更できる。
+     */
+    public static class Config {
+        /** 最大件数 */
+        public int maxSize = Integer.getInteger("cusext.pool.maxSize", 20).intValue();
+        /** 最小アイドル数 */
+        public int minIdle = Integer.getInteger("cusext.pool.minIdle", 2).intValue();
+        /** 取得待ち時間（ミリ秒） */
+        public long acquireTimeoutMillis = Long.getLong("cusext.pool.acquireTimeoutMillis", 5000L).longValue();
+        /** アイドル時間（ミリ秒）。超えたコネクションは最小アイドル数を残して破棄する */
+        public long idleTimeoutMillis = Long.getLong("cusext.pool.idleTimeoutMillis", 600000L).longValue();
+        /** 検証間隔（ミリ秒）。返却からこの時間を超えたコネクションは貸出前に検証する */
+        public long validationIntervalMillis = Long.getLong("cusext.pool.validationIntervalMillis", 30000L).longValue();
+        /** 検証のタイムアウト（秒） */
+        public int validationTimeoutSeconds = Integer.getInteger("cusext.pool.validationTimeoutSeconds", 5).intValue();
+        /** リーク検出時間（ミリ秒）。0以下の場合は検出しない（既定） */
+        public long leakDetectionMillis = Long.getLong("cusext.pool.leakDetectionMillis", 0L).longValue();
+        /** リーク検出時に取得箇所のスタックトレースを記録する貸出の割合（0～1） */
+        public double leakTraceSampleRate = Double.parseDouble(System.getProperty("cusext.pool.leakTraceSampleRate", "1.0"));
+        /** コネクションごとにキャッシュする PreparedStatement の最大件数。0以下の場合はキャッシュしない */
+        public int maxStatements = Integer.getInteger("cusext.pool.maxStatements", 50).intValue();
+        /** 定期処理の間隔（ミリ秒） */
+        public long housekeepingIntervalMillis = Long.getLong("cusext.pool.housekeepingIntervalMillis", 30000L).longValue();
+    }
+
+    /**
+     * プール中の物理コネクション。
+     */
+    private final class PooledConnection {
+        final Connection physical;
+        // 作成時の分離レベル・読取専用
+        final int defaultIsolation;
+        final boolean defaultReadOnly;
+        volatile long borrowedAt;
+        volatile long returnedAt;
+        volatile Throwable acquireTrace;
+        volatile boolean leakReported;
+        // 貸出中に分離レベル・読取専用が変更されたか
+        volatile boolean stateChanged;
+
+        PooledConnection(Connection physical, int defaultIsolation, boolean defaultReadOnly) {
+            this.physical = physical;
+            this.defaultIsolation = defaultIsolation;
+            this.defaultReadOnly = defaultReadOnly;
+            this.returnedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * 今回の貸出用の論理コネクションを作成する。
+         */
+        Connection lend() {
+            return (Connection) Proxy.newProxyInstance(DisAgrConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LogicalConnection(this));
+        }
+    }
+
+    /**
+     * DAOへ貸し出す論理コネクション。close() 後は物理コネクションを操作させない。
+     */
+    private final class LogicalConnection implements InvocationHandler {
+        private PooledConnection pooled;
+        // トランザクション終了後に実行する処理
+        private List<Runnable> completions;
+
+        LogicalConnection(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        synchronized boolean addCompletion(Runnable callback) {
+            if (pooled == null) {
+                return false;
+            }
+            if (completions == null) {
+                completions = new ArrayList<Runnable>(2);
+            }
+            completions.add(callback);
+            return true;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            boolean noArgs = args == null || args.length == 0;
+            PooledConnection current;
+            synchronized (this) {
+                current = pooled;
+                if ("close".equals(name) && noArgs) {
+                    pooled = null;
+                }
+            }
+            if ("close".equals(name) && noArgs) {
+                if (current != null) {
+                    try {
+                        release(current);
+                    } finally {
+                        runCompletions();
+                    }
+                }
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return Boolean.valueOf(current == null || current.physical.isClosed());
+            }
+            if ("equals".equals(name)) {
+                return Boolean.valueOf(proxy == args[0]);
+            }
+            if ("hashCode".equals(name)) {
+                return Integer.valueOf(System.identityHashCode(proxy));
+            }
+            if (current == null) {
+                throw new SQLException("connection is closed");
+            }
+            if ("setTransactionIsolation".equals(name) || "setReadOnly".equals(name)) {
+                current.stateChanged = true;
+            }
+            // commit・rollback（セーブポイント指定なし）はトランザクションを終了させる
+            boolean completes = noArgs && ("commit".equals(name) || "rollback".equals(name));
+            try {
+                return method.invoke(current.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (completes) {
+                    runCompletions();
+                }
+            }
+        }
+
+        private void runCompletions() {
+            List<Runnable> callbacks;
+            synchronized (this) {
+                callbacks = completions;
+                completions = null;
+            }
+            if (callbacks == null) {
+                return;
+            }
+            for (Runnable callback : callbacks) {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    logger.error("E0003", e);
+                }
+            }
+        }
+    }
+}
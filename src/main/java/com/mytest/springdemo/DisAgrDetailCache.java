@@ -0,0 +1,301 @@
+package jp.co.alico.cusext.dao;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import jp.co.alico.cusext.vo.DisAgrmntInfoVO;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報詳細キャッシュクラス</p>
+ * <p>概要： 不成約情報詳細を (不成約No, 支社マLeads区分) 単位でキャッシュする。
+ * 件数の上限を超えた場合は最も長く参照されていない情報から、有効期間を過ぎた情報は参照時に破棄する。
+ * 競合を抑えるため、キーのハッシュ値で分割したセグメントごとに排他制御する。</p>
+ * <p>DB読込中に同じ情報が無効化された場合、読込んだ情報は古い可能性があるためキャッシュしない
+ * （{@link #getEpoch()} で読込前の世代を取得し、{@link #put} に渡す）。
+ * 無効化の世代は不成約No・活動情報IDのハッシュ値で分割した区分ごとに記録するため、
+ * 無関係な情報の無効化によって読込結果が捨てられることはほとんどない。</p>
+ * <p>不成約No・活動情報IDはDBと同じく大文字小文字・前後の空白を区別せずに照合する
+ * （{@link DisAgrInfoDAO#lookupKey(String)} で正規化してから使用する）。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrDetailCache {
+
+    // セグメント数（2のべき乗）
+    private static final int SEGMENT_COUNT = 16;
+    // 無効化世代の区分数（2のべき乗）
+    private static final int EPOCH_STRIPES = 256;
+
+    // セグメント
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    // 有効期間（ナノ秒）
+    private final long ttlNanos;
+    // 無効化の世代。無効化のたびに増える
+    private final AtomicLong epoch = new AtomicLong();
+    // 不成約Noの区分ごとの最終無効化世代
+    private final AtomicLongArray keyEpochs = new AtomicLongArray(EPOCH_STRIPES);
+    // 活動情報IDの区分ごとの最終無効化世代
+    private final AtomicLongArray actIdEpochs = new AtomicLongArray(EPOCH_STRIPES);
+    // 全件無効化の最終世代
+    private final AtomicLong allEpoch = new AtomicLong();
+
+    // 統計
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    /**
+     * コンストラクタ。
+     * @param maxSize キャッシュする最大件数
+     * @param ttl 有効期間
+     * @param unit 有効期間の単位
+     */
+    public DisAgrDetailCache(int maxSize, long ttl, TimeUnit unit) {
+        int segmentSize = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * 現在の無効化世代を取得する。DBから読込む前に取得すること。
+     * @return long 無効化世代
+     */
+    public long getEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * キャッシュから不成約情報詳細を取得する。
+     * @param disAgrmntNo 不成約No
+     * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @return DisAgrmntInfoVO キャッシュ済みの情報。未キャッシュまたは期限切れの場合はnull
+     */
+    public DisAgrmntInfoVO get(String disAgrmntNo, boolean isBranch) {
+        Key key = new Key(DisAgrInfoDAO.lookupKey(disAgrmntNo), isBranch);
+        Segment segment = segmentFor(key);
+        CacheEntry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && System.nanoTime() - entry.loadedAt > ttlNanos) {
+                segment.remove(key);
+                evictionCount.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return entry.value;
+    }
+
+    /**
+     * 不成約情報詳細をキャッシュする。読込開始後に同じ不成約No・活動情報IDの区分、または全件の
+     * 無効化が行われていた場合はキャッシュしない。
+     * @param disAgrmntNo 不成約No
+     * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @param actId 不成約情報の活動情報ID（活動単位の無効化に使用）
+     * @param value 不成約情報詳細
+     * @param loadEpoch DB読込前に取得した無効化世代
+     */
+    public void put(String disAgrmntNo, boolean isBranch, String actId, DisAgrmntInfoVO value, long loadEpoch) {
+        Key key = new Key(DisAgrInfoDAO.lookupKey(disAgrmntNo), isBranch);
+        String actKey = DisAgrInfoDAO.lookupKey(actId);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            // 世代の確認はセグメントのロック内で行い、無効化との前後関係を保証する
+            if (keyEpochs.get(stripe(key.disAgrmntNo)) > loadEpoch || allEpoch.get() > loadEpoch
+                    || (actKey != null && actIdEpochs.get(stripe(actKey)) > loadEpoch)) {
+                return;
+            }
+            segment.put(key, new CacheEntry(actKey, value, System.nanoTime()));
+        }
+    }
+
+    /**
+     * 不成約Noに該当する情報を無効化する。
+     * @param disAgrmntNo 不成約No
+     */
+    public void invalidate(String disAgrmntNo) {
+        String no = DisAgrInfoDAO.lookupKey(disAgrmntNo);
+        advance(keyEpochs, stripe(no));
+        invalidationCount.increment();
+        for (boolean isBranch : new boolean[]{true, false}) {
+            Key key = new Key(no, isBranch);
+            Segment segment = segmentFor(key);
+            synchronized (segment) {
+                segment.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 活動情報IDに紐付く情報をすべて無効化する。
+     * @param actId 活動情報ID
+     */
+    public void invalidateByActId(String actId) {
+        String actKey = DisAgrInfoDAO.lookupKey(actId);
+        advance(actIdEpochs, stripe(actKey));
+        invalidationCount.increment();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Iterator<CacheEntry> it = segment.values().iterator(); it.hasNext();) {
+                    CacheEntry entry = it.next();
+                    if (entry.actId != null && entry.actId.equals(actKey)) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * すべての情報を無効化する。
+     */
+    public void invalidateAll() {
+        long invalidated = epoch.incrementAndGet();
+        for (;;) {
+            long current = allEpoch.get();
+            if (current >= invalidated || allEpoch.compareAndSet(current, invalidated)) {
+                break;
+            }
+        }
+        invalidationCount.increment();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "DisAgrDetailCache[size=" + size() + ", hit=" + getHitCount() + ", miss=" + getMissCount()
+                + ", eviction=" + getEvictionCount() + ", invalidation=" + getInvalidationCount() + "]";
+    }
+
+    /**
+     * 世代を進め、区分の最終無効化世代として記録する。
+     * 記録はセグメントから情報を取り除く前に行い、読込中の{@link #put}に確実に検知させる。
+     */
+    private void advance(AtomicLongArray epochs, int stripe) {
+        long invalidated = epoch.incrementAndGet();
+        for (;;) {
+            long current = epochs.get(stripe);
+            if (current >= invalidated || epochs.compareAndSet(stripe, current, invalidated)) {
+                return;
+            }
+        }
+    }
+
+    private static int stripe(String id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (EPOCH_STRIPES - 1);
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * 参照順のLRUセグメント。上限を超えた場合は最も長く参照されていない情報を破棄する。
+     */
+    private final class Segment extends LinkedHashMap<Key, CacheEntry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry> eldest) {
+            if (size() > maxSize) {
+                evictionCount.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * キャッシュのキー。
+     */
+    private static final class Key {
+        final String disAgrmntNo;
+        final boolean isBranch;
+
+        Key(String disAgrmntNo, boolean isBranch) {
+            this.disAgrmntNo = disAgrmntNo;
+            this.isBranch = isBranch;
+        }
+
+        @Override
+        public int hashCode() {
+            return disAgrmntNo.hashCode() * 31 + (isBranch ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return isBranch == other.isBranch && disAgrmntNo.equals(other.disAgrmntNo);
+        }
+    }
+
+    /**
+     * キャッシュされた情報。
+     */
+    private static final class CacheEntry {
+        final String actId;
+        final DisAgrmntInfoVO value;
+        final long loadedAt;
+
+        CacheEntry(String actId, DisAgrmntInfoVO value, long loadedAt) {
+            this.actId = actId;
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
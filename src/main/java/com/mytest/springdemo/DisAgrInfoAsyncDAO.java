@@ -0,0 +1,343 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import jp.co.alico.cusext.form.DisAgrEntryForm;
+import jp.co.alico.cusext.vo.DisAgrmntInfoVO;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報非同期DAOクラス</p>
+ * <p>概要： DisAgrInfoDAO の処理を専用のスレッドプールで実行し、結果を CompletableFuture で返す。
+ * DB処理が遅延しても、使用するスレッドは専用プールのスレッド数まで、待機する処理はキューの上限までに限られ（バルクヘッド）、
+ * 呼出し元（Webのリクエストスレッド）や他の処理のスレッドを占有しない。</p>
+ * <ul>
+ * <li>スレッド・キューともに空きがない場合は直ちに RejectedExecutionException で完了する。</li>
+ * <li>タイムアウト時間を超えた処理は TimeoutException で完了し、実行中のスレッドには割込みをかける。
+ * JDBCドライバ（mssql-jdbc など）は割込みでは実行中のSQL文を中断しないため、DAOが準備する文には
+ * 期限までの残り時間を{@code Statement.setQueryTimeout}として設定し、DB側でも処理を打ち切らせる。</li>
+ * </ul>
+ * <p>受付・完了・失敗・拒否・タイムアウトの件数は{@link #getMetrics()}で取得できる。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrInfoAsyncDAO {
+
+    // 監視対象として登録された非同期DAO
+    private static volatile DisAgrInfoAsyncDAO installed;
+
+    // 委譲先のDAO
+    private final DisAgrInfoDAO dao;
+    // 既定のタイムアウト（ミリ秒）
+    private final long defaultTimeoutMillis;
+    // DB処理用スレッドプール
+    private final ThreadPoolExecutor executor;
+    // タイムアウト監視用
+    private final ScheduledExecutorService timer;
+
+    // 統計
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /**
+     * コンストラクタ。
+     * @param dao 委譲先のDAO
+     * @param config 設定
+     */
+    public DisAgrInfoAsyncDAO(DisAgrInfoDAO dao, Config config) {
+        if (config.threads < 1 || config.queueSize < 1) {
+            throw new IllegalArgumentException("invalid bulkhead size: threads=" + config.threads + ", queueSize=" + config.queueSize);
+        }
+        this.dao = dao;
+        this.defaultTimeoutMillis = config.timeoutMillis;
+        this.executor = new ThreadPoolExecutor(config.threads, config.threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(config.queueSize), new NamedThreadFactory("cusext-dao-async-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("cusext-dao-timeout-"));
+    }
+
+    /**
+     * 監視対象の非同期DAOを登録する（統計値を MetricsController から参照させる）。null を設定すると登録を解除する。
+     * @param asyncDao 非同期DAO
+     */
+    public static void install(DisAgrInfoAsyncDAO asyncDao) {
+        installed = asyncDao;
+    }
+
+    /**
+     * 監視対象として登録された非同期DAOを取得する。
+     * @return DisAgrInfoAsyncDAO 非同期DAO。未登録の場合はnull
+     */
+    public static DisAgrInfoAsyncDAO getInstalled() {
+        return installed;
+    }
+
+    /**
+     * 不成約情報一覧を非同期で取得する。
+     * @param actId 不成約情報を取得する活動情報のID
+     * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @return CompletableFuture 不成約情報のリスト
+     */
+    public CompletableFuture<List<DisAgrmntInfoVO>> getDisAgrInfoList(final String actId, final boolean isBranch) {
+        return submit(new DaoCall<List<DisAgrmntInfoVO>>() {
+            @Override
+            public List<DisAgrmntInfoVO> call(DisAgrInfoDAO dao) throws Exception {
+                return dao.getDisAgrInfoList(actId, isBranch);
+            }
+        });
+    }
+
+    /**
+     * 不成約情報詳細を非同期で取得する。
+     * @param disAgrmntNo 不成約No
+     * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @return CompletableFuture 不成約詳細情報
+     */
+    public CompletableFuture<DisAgrmntInfoVO> getDisAgrDetailInfo(final String disAgrmntNo, final boolean isBranch) {
+        return submit(new DaoCall<DisAgrmntInfoVO>() {
+            @Override
+            public DisAgrmntInfoVO call(DisAgrInfoDAO dao) throws Exception {
+                return dao.getDisAgrDetailInfo(disAgrmntNo, isBranch);
+            }
+        });
+    }
+
+    /**
+     * 不成約情報を非同期で登録する。
+     * @param disAgrEntryForm 登録する情報を持つオブジェクト
+     * @param opeId 登録者のOpeId
+     * @return CompletableFuture 登録した不成約情報
+     */
+    public CompletableFuture<DisAgrmntInfoVO> insertDisAgrInfo(final DisAgrEntryForm disAgrEntryForm, final String opeId) {
+        return submit(new DaoCall<DisAgrmntInfoVO>() {
+            @Override
+            public DisAgrmntInfoVO call(DisAgrInfoDAO dao) throws Exception {
+                return dao.insertDisAgrInfo(disAgrEntryForm, opeId);
+            }
+        });
+    }
+
+    /**
+     * 不成約情報を非同期で楽観排他更新する。他の処理で更新済みの場合は DisAgrConflictException で完了する。
+     * @param disAgrEntryForm 更新する情報を持つオブジェクト
+     * @param opeId 更新者のOpeId
+     * @param expectedUpdateDt 読込時の更新日時。nullの場合は排他確認を行わない
+     * @return CompletableFuture 更新した不成約情報。該当なしの場合はnull
+     */
+    public CompletableFuture<DisAgrmntInfoVO> updateDisAgrInfo(final DisAgrEntryForm disAgrEntryForm, final String opeId,
+            final Timestamp expectedUpdateDt) {
+        return submit(new DaoCall<DisAgrmntInfoVO>() {
+            @Override
+            public DisAgrmntInfoVO call(DisAgrInfoDAO dao) throws Exception {
+                return dao.updateDisAgrInfo(disAgrEntryForm, opeId, expectedUpdateDt);
+            }
+        });
+    }
+
+    /**
+     * 不成約情報を非同期で削除する。
+     * @param disAgrId 削除する不成約情報のID
+     * @return CompletableFuture 削除の完了
+     */
+    public CompletableFuture<Void> deleteDisAgrInfo(final String disAgrId) {
+        return submit(new DaoCall<Void>() {
+            @Override
+            public Void call(DisAgrInfoDAO dao) throws Exception {
+                dao.deleteDisAgrInfo(disAgrId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * DAOの処理を既定のタイムアウトで非同期実行する。
+     * @param call DAOの処理
+     * @return CompletableFuture 処理結果
+     */
+    public <T> CompletableFuture<T> submit(DaoCall<T> call) {
+        return submit(call, defaultTimeoutMillis);
+    }
+
+    /**
+     * DAOの処理を非同期実行する。
+     * @param call DAOの処理
+     * @param timeoutMillis タイムアウト（ミリ秒）。0以下の場合はタイムアウトしない
+     * @return CompletableFuture 処理結果。拒否時は RejectedExecutionException、タイムアウト時は TimeoutException で完了する
+     */
+    public <T> CompletableFuture<T> submit(final DaoCall<T> call, final long timeoutMillis) {
+        submittedCount.increment();
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        final Future<?> task;
+        try {
+            task = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // キューで待っている間にタイムアウト・取消しされた場合は実行しない
+                    if (result.isDone()) {
+                        return;
+                    }
+                    if (timeoutMillis > 0) {
+                        DisAgrInfoDAO.setQueryDeadline(deadlineNanos);
+                    }
+                    try {
+                        if (result.complete(call.call(dao))) {
+                            completedCount.increment();
+                        }
+                    } catch (Throwable t) {
+                        if (result.completeExceptionally(t)) {
+                            failedCount.increment();
+                        }
+                    } finally {
+                        DisAgrInfoDAO.clearQueryDeadline();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            result.completeExceptionally(e);
+            return result;
+        }
+        if (timeoutMillis > 0) {
+            final Future<?> timeout = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (result.completeExceptionally(new TimeoutException("DAO call timed out after " + timeoutMillis + "ms"))) {
+                        timeoutCount.increment();
+                        task.cancel(true);
+                    }
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            result.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T value, Throwable error) {
+                    timeout.cancel(false);
+                }
+            });
+        }
+        result.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable error) {
+                // 呼出し元が取消した場合は実行中の処理にも割込みをかける
+                if (result.isCancelled()) {
+                    task.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * スレッドプールを停止する。受付済みの処理は実行する。監視対象として登録されていた場合は登録を解除する。
+     */
+    public void shutdown() {
+        if (installed == this) {
+            install(null);
+        }
+        executor.shutdown();
+        timer.shutdown();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * 監視用の統計値を取得する。
+     * @return Map 統計名 → 値
+     */
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<String, Number>();
+        metrics.put("active", Integer.valueOf(getActiveCount()));
+        metrics.put("queued", Integer.valueOf(getQueuedCount()));
+        metrics.put("threads", Integer.valueOf(executor.getMaximumPoolSize()));
+        metrics.put("queueCapacity", Integer.valueOf(getQueuedCount() + executor.getQueue().remainingCapacity()));
+        metrics.put("submitted", Long.valueOf(submittedCount.sum()));
+        metrics.put("completed", Long.valueOf(completedCount.sum()));
+        metrics.put("failed", Long.valueOf(failedCount.sum()));
+        metrics.put("rejected", Long.valueOf(rejectedCount.sum()));
+        metrics.put("timeouts", Long.valueOf(timeoutCount.sum()));
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "DisAgrInfoAsyncDAO" + getMetrics();
+    }
+
+    /**
+     * 非同期実行するDAOの処理。
+     */
+    public interface DaoCall<T> {
+        /**
+         * DAOの処理を実行する。
+         * @param dao 委譲先のDAO
+         * @return T 処理結果
+         * @throws Exception 例外処理
+         */
+        T call(DisAgrInfoDAO dao) throws Exception;
+    }
+
+    /**
+     * 非同期DAOの設定。既定値はシステムプロパティ cusext.disAgrAsync.* で変更できる。
+     */
+    public static class Config {
+        /** スレッド数（同時に実行するDB処理の上限） */
+        public int threads = Integer.getInteger("cusext.disAgrAsync.threads", 16).intValue();
+        /** 待機できる処理の上限 */
+        public int queueSize = Integer.getInteger("cusext.disAgrAsync.queueSize", 100).intValue();
+        /** 既定のタイムアウト（ミリ秒）。0以下の場合はタイムアウトしない */
+        public long timeoutMillis = Long.getLong("cusext.disAgrAsync.timeoutMillis", 10000L).longValue();
+    }
+
+    /**
+     * 名前付きのデーモンスレッドを作成する。
+     */
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package jp.co.alico.cusext.dao;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.mytest.springdemo.support.LatencyHistogram;
+import com.mytest.springdemo.support.LatencyRegistry;
 
 import jp.co.alico.cusext.common.LoggerUtil;
 import jp.co.alico.cusext.common.Constant;
 import jp.co.alico.cusext.form.DisAgrEntryForm;
+import jp.co.alico.cusext.vo.DisAgrBatchResultVO;
 import jp.co.alico.cusext.vo.DisAgrmntInfoVO;
 
 /**
@@ -24,6 +40,68 @@ public class DisAgrInfoDAO extends DAOBase {
     // Logインスタンスの生成
     private LoggerUtil logger = new LoggerUtil(this.getClass().getName());
 
+    // 日時列の書式変換をDB（FORMAT関数）で行うか。既定は日時のまま取得し、DisAgrInfoRowMapper で変換する
+    private static final boolean FORMAT_DATES_IN_DB = Boolean.getBoolean("cusext.disAgr.formatDatesInDb");
+    // 登録・更新した行を返す OUTPUT 句。列名・順序は詳細取得SQLと同じ
+    static final String OUTPUT_CLAUSE = buildOutputClause();
+    // 取得用SQLの逐次取得区分：逐次取得しない／先頭から取得／キーセットの続きから取得
+    private static final int STREAM_NONE = 0;
+    private static final int STREAM_FROM_START = 1;
+    private static final int STREAM_AFTER_KEYSET = 2;
+    // 実行SQL文はクラスロード時に一度だけ作成する（SQL文が固定のためドライバ側の文キャッシュにもヒットする）
+    // 取得用SQL。インデックスは sqlShape(isDetail, isBranch)
+    private static final String[] DIS_AGR_INFO_SQL = {
+        buildDisAgrInfoSql(false, false, 0, STREAM_NONE),
+        buildDisAgrInfoSql(false, true, 0, STREAM_NONE),
+        buildDisAgrInfoSql(true, false, 0, STREAM_NONE),
+        buildDisAgrInfoSql(true, true, 0, STREAM_NONE),
+    };
+    // 逐次取得用SQL。[isBranch ? 1 : 0][キーセット指定あり ? 1 : 0]
+    private static final String[][] DIS_AGR_INFO_STREAM_SQL = {
+        {buildDisAgrInfoSql(false, false, 0, STREAM_FROM_START), buildDisAgrInfoSql(false, false, 0, STREAM_AFTER_KEYSET)},
+        {buildDisAgrInfoSql(false, true, 0, STREAM_FROM_START), buildDisAgrInfoSql(false, true, 0, STREAM_AFTER_KEYSET)},
+    };
+    // 逐次取得時の既定のフェッチサイズ
+    private static final int DEFAULT_FETCH_SIZE = Integer.getInteger("cusext.disAgr.fetchSize", 500).intValue();
+    // 複数活動一括取得時のIN句の最大要素数（2のべき乗）
+    private static final int MAX_IN_LIST_SIZE = 512;
+    // 複数活動一括取得用SQL。[isBranch ? 1 : 0][log2(IN句の要素数)]
+    // IN句の要素数を2のべき乗に揃え、SQL文の種類を抑える（端数は最後の要素を繰り返して埋める）
+    private static final String[][] DIS_AGR_INFO_LIST_IN_SQL = buildDisAgrInfoListInSql();
+    // 不成約No採番（シーケンスを範囲予約してメモリ上で採番する）
+    private static final AgrmntNoAllocator AGRMNT_NO_ALLOCATOR =
+        new AgrmntNoAllocator(Constant.SEQ_SCHEMA + ".SEQ_MST_CUS_AGRMNT_NO_EXT", "EN", AgrmntNoAllocator.DEFAULT_BLOCK_SIZE);
+    // 登録用SQL（一括登録用。登録結果を返さない）
+    private static final String INSERT_SQL = buildInsertSql(false);
+    // 登録用SQL（登録した行を OUTPUT 句で返す）
+    private static final String INSERT_RETURNING_SQL = buildInsertSql(true);
+    // 更新用SQL（更新した行を OUTPUT 句で返す）
+    private static final String UPDATE_RETURNING_SQL = buildUpdateSql(false);
+    // 更新用SQL（更新日時が読込時から変わっていない場合のみ更新する楽観排他。更新した行を OUTPUT 句で返す）
+    private static final String UPDATE_CHECKED_RETURNING_SQL = buildUpdateSql(true);
+    // 更新日時取得用SQL
+    private static final String SELECT_UPDATE_DT_SQL = buildSelectUpdateDtSql();
+    // 削除用SQL
+    private static final String DELETE_SQL = buildDeleteSql();
+    // 活動情報単位の削除用SQL
+    private static final String DELETE_ALL_SQL = buildDeleteAllSql();
+    // 不成約情報詳細キャッシュ（件数上限・有効期間はシステムプロパティで変更可能。上限0で無効）
+    private static final DisAgrDetailCache DETAIL_CACHE = createDetailCache();
+    // 一括登録時に1回のバッチで送信する件数（システムプロパティで変更可能）
+    private static final int BATCH_CHUNK_SIZE = Integer.getInteger("cusext.disAgr.batchChunkSize", 500).intValue();
+    // 処理時間の記録先（/metrics で参照できる）。DAO処理単位は "dao"、SQL文単位は "sql" のグループに記録する
+    private static final LatencyRegistry LATENCY = LatencyRegistry.shared();
+    // SQL文 → 処理時間ヒストグラム。SQL文は定数のため、記録時に名前の文字列を作成しない
+    private static final ConcurrentHashMap<String, LatencyHistogram> SQL_LATENCY = new ConcurrentHashMap<String, LatencyHistogram>();
+    // SQL文を実行していないことを示す開始時刻
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+    // 処理時間の表示名に使うSQL文の先頭文字数
+    private static final int SQL_NAME_LENGTH = 60;
+    // SQLトレース・スロークエリログ（設定はシステムプロパティ cusext.sqlTrace.*）
+    private static final DisAgrSqlTracer SQL_TRACER = DisAgrSqlTracer.shared();
+    // 実行中のスレッドのDB処理の期限（System.nanoTime 基準）。期限がない場合はnull
+    private static final ThreadLocal<Long> QUERY_DEADLINE = new ThreadLocal<Long>();
+
     /**
      * 不成約情報一覧を取得する。
      * @param actId 不成約情報を取得する活動情報のID
@@ -58,19 +136,26 @@ public class DisAgrInfoDAO extends DAOBase {
         List<DisAgrmntInfoVO> disAgrInfoList = new ArrayList<DisAgrmntInfoVO>();
         // 実行SQL文
         String strSql = null;
-        // 成約情報を持つオブジェクト
-        DisAgrmntInfoVO disAgrInfoVO = null;
+
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
 
         try {
             conn = getConnection();
 
             strSql = getDisAgrInfoSql(false, isBranch);
 
-            // 実行するSQL文をログに出力
-            logger.printSql(strSql);
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(strSql);
+            }
 
             // SQL文設定
-            pstmt = conn.prepareStatement(strSql);
+            sqlStartNanos = System.nanoTime();
+            pstmt = prepare(conn, strSql);
 
             pstmt.setString(1, actId);
 
@@ -78,16 +163,11 @@ public class DisAgrInfoDAO extends DAOBase {
             rset = pstmt.executeQuery();
 
             // 該当データがあった場合はリストに設定
+            DisAgrInfoRowMapper.Binding binding = DisAgrInfoRowMapper.LIST.bind(strSql, rset);
             while (rset.next()) {
-                disAgrInfoVO = new DisAgrmntInfoVO();
-                disAgrInfoVO.setDisAgrmntNo(rset.getString("AGRMNT_NO"));                           // 不成約No
-                disAgrInfoVO.setCompeAterCmpny1(rset.getString("COMPE_ATER_CMPNY1"));               // 競合他社1
-                disAgrInfoVO.setCompeAterCmpny1Prdct(rset.getString("COMPE_ATER_CMPNY1_PRDCT"));    // 競合他社1商品
-                disAgrInfoVO.setMemo(rset.getString("MEMO"));                                       // その他メモ
-                disAgrInfoVO.setEntryDt(rset.getString("ENTRY_DT"));                                // 登録日時
-                disAgrInfoVO.setUpdateDt(rset.getString("UPDATE_DT"));                              // 更新日時
-                disAgrInfoList.add(disAgrInfoVO);
+                disAgrInfoList.add(DisAgrInfoRowMapper.LIST.map(rset, binding));
             }
+            succeeded = true;
 
         } catch (SQLException sqle) {
             logger.error("E0002", sqle);
@@ -96,6 +176,11 @@ public class DisAgrInfoDAO extends DAOBase {
             logger.error("E0003", e);
             throw e;
         } finally {
+            // 処理時間を記録
+            long sqlNanos = recordLatency("getDisAgrInfoList", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("getDisAgrInfoList", strSql, new Object[]{actId}, disAgrInfoList.size(), sqlNanos, succeeded);
+            }
             try {
                 close(conn, pstmt, rset);
             } finally {
@@ -110,6 +195,255 @@ public class DisAgrInfoDAO extends DAOBase {
         return disAgrInfoList;
     }
 
+    /**
+     * 不成約情報一覧を1行ずつ取得し、呼出し元のハンドラへ渡す。
+     * 取得結果をリストに保持しないため、活動情報の不成約情報件数に関わらずメモリ使用量は一定となる。
+     * 行は (登録日時, 不成約No) 順に渡され、戻り値のキーセットを次回の after に渡すと続きから取得できる。
+     * @param actId 不成約情報を取得する活動情報のID
+     * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @param after 前回最後に取得した行のキーセット。先頭から取得する場合はnull
+     * @param limit 取得する最大件数。0以下の場合は全件
+     * @param fetchSize ドライバが1回の通信で取得する行数。0以下の場合は既定値
+     * @param handler 1行ごとに呼び出すハンドラ
+     * @return DisAgrInfoKeyset 最後にハンドラへ渡した行のキーセット。1行も渡さなかった場合はnull
+     * @throws Exception 例外処理（ハンドラで発生した例外を含む）
+     * @throws SQLException 例外処理
+     */
+    public DisAgrInfoKeyset streamDisAgrInfoList(String actId, boolean isBranch, DisAgrInfoKeyset after, int limit, int fetchSize,
+            DisAgrInfoRowHandler handler) throws Exception, SQLException {
+        if (logger.isDebugEnabled()) {
+            logger.methodLog("streamDisAgrInfoList", new Object[]{actId, after}, Constant.METHOD_START);
+        }
+
+        // DBコネクション用
+        Connection conn = null;
+        // SQL文実行用
+        PreparedStatement pstmt = null;
+        // SQL実行結果取得用
+        ResultSet rset = null;
+        // 実行SQL文
+        String strSql = DIS_AGR_INFO_STREAM_SQL[isBranch ? 1 : 0][after != null ? 1 : 0];
+        // 最後にハンドラへ渡した行のキーセット
+        DisAgrInfoKeyset last = null;
+        // ハンドラへ渡した件数
+        int count = 0;
+
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
+
+        try {
+            conn = getConnection();
+
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(strSql);
+            }
+
+            // SQL文設定
+            sqlStartNanos = System.nanoTime();
+            pstmt = prepare(conn, strSql);
+            pstmt.setFetchSize(fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE);
+            // キャッシュされた文が再利用される場合があるため、上限なし（0）も必ず設定する
+            pstmt.setMaxRows(limit > 0 ? limit : 0);
+            pstmt.setString(1, actId);
+            if (after != null) {
+                pstmt.setTimestamp(2, after.getEntryDt());
+                pstmt.setTimestamp(3, after.getEntryDt());
+                pstmt.setString(4, after.getDisAgrmntNo());
+            }
+
+            // SQL文実行
+            rset = pstmt.executeQuery();
+
+            // 1行ずつハンドラへ渡す。ハンドラが false を返した場合は打ち切る
+            DisAgrInfoRowMapper.Binding binding = DisAgrInfoRowMapper.LIST.bind(strSql, rset);
+            int entryDtRawIndex = rset.findColumn("ENTRY_DT_RAW");
+            while (rset.next()) {
+                DisAgrmntInfoVO disAgrInfoVO = DisAgrInfoRowMapper.LIST.map(rset, binding);
+                last = new DisAgrInfoKeyset(rset.getTimestamp(entryDtRawIndex), disAgrInfoVO.getDisAgrmntNo());
+                count++;
+                if (!handler.handleRow(disAgrInfoVO)) {
+                    break;
+                }
+            }
+            succeeded = true;
+
+        } catch (SQLException sqle) {
+            logger.error("E0002", sqle);
+            throw sqle;
+        } catch (Exception e) {
+            logger.error("E0003", e);
+            throw e;
+        } finally {
+            // 処理時間を記録
+            long sqlNanos = recordLatency("streamDisAgrInfoList", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("streamDisAgrInfoList", strSql, new Object[]{actId, after != null ? after.getEntryDt() : null, after != null ? after.getDisAgrmntNo() : null}, count, sqlNanos, succeeded);
+            }
+            try {
+                close(conn, pstmt, rset);
+            } finally {
+                rset = null;
+                pstmt = null;
+                conn = null;
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.methodLog("streamDisAgrInfoList", new Object[]{Integer.valueOf(count), last}, Constant.METHOD_END);
+        }
+        return last;
+    }
+
+    /**
+     * 複数の活動情報の不成約情報一覧を一括で取得する。
+     * 活動情報IDを最大{@value #MAX_IN_LIST_SIZE}件ずつIN句にまとめて取得し、活動情報IDごとに振り分ける。
+     * 振り分けは大文字小文字と前後の空白を区別せずに行う。
+     * @param actIds 不成約情報を取得する活動情報のIDの集合
+     * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @return Map<String, List<DisAgrmntInfoVO>> 活動情報ID → 不成約情報を持つリスト。
+     *         指定した順序で、不成約情報がない活動情報IDは空のリストを持つ
+     * @throws Exception 例外処理
+     * @throws SQLException 例外処理
+     */
+    public Map<String, List<DisAgrmntInfoVO>> getDisAgrInfoList(Collection<String> actIds, boolean isBranch) throws Exception, SQLException {
+        if (logger.isDebugEnabled()) {
+            logger.methodLog("getDisAgrInfoList", new Object[]{actIds}, Constant.METHOD_START);
+        }
+
+        // DBコネクション用
+        Connection conn = null;
+        // SQL文実行用
+        PreparedStatement pstmt = null;
+        // SQL実行結果取得用
+        ResultSet rset = null;
+        // 活動情報ID → 不成約情報リスト
+        Map<String, List<DisAgrmntInfoVO>> disAgrInfoMap = new LinkedHashMap<String, List<DisAgrmntInfoVO>>();
+        // 照合用の活動情報ID（前後の空白を除き大文字化）→ 不成約情報リスト。
+        // DBの照合順序は大文字小文字・末尾の空白を区別しないため、返却される ACT_SFDC_ID が指定値と
+        // 完全には一致しない場合がある。照合用のキーが同じ活動情報IDは同じリストを共有する
+        Map<String, List<DisAgrmntInfoVO>> lookupMap = new HashMap<String, List<DisAgrmntInfoVO>>();
+        // 重複を除いた活動情報ID
+        List<String> idList = new ArrayList<String>();
+        for (String actId : actIds) {
+            if (actId == null || disAgrInfoMap.containsKey(actId)) {
+                continue;
+            }
+            String key = lookupKey(actId);
+            List<DisAgrmntInfoVO> list = lookupMap.get(key);
+            if (list == null) {
+                list = new ArrayList<DisAgrmntInfoVO>();
+                lookupMap.put(key, list);
+                idList.add(actId);
+            }
+            disAgrInfoMap.put(actId, list);
+        }
+        String[] ids = idList.toArray(new String[idList.size()]);
+        // 実行SQL文
+        String strSql = null;
+        // 実行中のチャンクの範囲と取得件数（スロークエリログ用）
+        int chunkFrom = 0;
+        int chunkTo = 0;
+        int rowCount = 0;
+
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
+
+        try {
+            if (ids.length > 0) {
+                conn = getConnection();
+            }
+
+            for (int from = 0; from < ids.length; from += MAX_IN_LIST_SIZE) {
+                int to = Math.min(from + MAX_IN_LIST_SIZE, ids.length);
+                chunkFrom = from;
+                chunkTo = to;
+                rowCount = 0;
+                // IN句の要素数を2のべき乗に切り上げる
+                int shape = 32 - Integer.numberOfLeadingZeros(Math.max(1, to - from) - 1);
+                int inListSize = 1 << shape;
+                strSql = DIS_AGR_INFO_LIST_IN_SQL[isBranch ? 1 : 0][shape];
+
+                // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+                if (SQL_TRACER.isTraced()) {
+                    logger.printSql(strSql);
+                }
+
+                // SQL文設定
+                sqlStartNanos = System.nanoTime();
+                pstmt = prepare(conn, strSql);
+                for (int i = 0; i < inListSize; i++) {
+                    // 端数は最後の活動情報IDを繰り返して埋める
+                    pstmt.setString(i + 1, ids[Math.min(from + i, to - 1)]);
+                }
+
+                // SQL文実行
+                rset = pstmt.executeQuery();
+
+                // 活動情報IDごとに振り分け
+                DisAgrInfoRowMapper.Binding binding = DisAgrInfoRowMapper.LIST.bind(strSql, rset);
+                int actIdIndex = rset.findColumn("ACT_SFDC_ID");
+                while (rset.next()) {
+                    List<DisAgrmntInfoVO> list = lookupMap.get(lookupKey(rset.getString(actIdIndex)));
+                    if (list != null) {
+                        list.add(DisAgrInfoRowMapper.LIST.map(rset, binding));
+                    }
+                    rowCount++;
+                }
+                rset.close();
+                rset = null;
+                pstmt.close();
+                pstmt = null;
+                long sqlNanos = recordSqlLatency(strSql, sqlStartNanos, true);
+                sqlStartNanos = NOT_STARTED;
+                if (SQL_TRACER.isSlow(sqlNanos)) {
+                    SQL_TRACER.slowQuery("getDisAgrInfoListByActIds", strSql, Arrays.copyOfRange(ids, from, to), rowCount, sqlNanos, true);
+                }
+            }
+            succeeded = true;
+
+        } catch (SQLException sqle) {
+            logger.error("E0002", sqle);
+            throw sqle;
+        } catch (Exception e) {
+            logger.error("E0003", e);
+            throw e;
+        } finally {
+            // 処理時間を記録（失敗時は実行中のSQL文も記録）
+            long sqlNanos = recordLatency("getDisAgrInfoListByActIds", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("getDisAgrInfoListByActIds", strSql, Arrays.copyOfRange(ids, chunkFrom, chunkTo), rowCount, sqlNanos,
+                    succeeded);
+            }
+            try {
+                close(conn, pstmt, rset);
+            } finally {
+                rset = null;
+                pstmt = null;
+                conn = null;
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.methodLog("getDisAgrInfoList", new Object[]{disAgrInfoMap}, Constant.METHOD_END);
+        }
+        return disAgrInfoMap;
+    }
+
+    /**
+     * 活動情報ID・不成約Noの照合用キーを返す。前後の空白を除き大文字化する。
+     * DBの照合順序（大文字小文字・末尾空白を区別しない）と同じ単位で照合するために使用する。
+     * @param actId 活動情報ID・不成約No
+     * @return String 照合用キー。nullの場合はnull
+     */
+    static String lookupKey(String actId) {
+        return actId == null ? null : actId.trim().toUpperCase(Locale.ROOT);
+    }
+
     /**
      * 不成約情報の詳細を取得する。
      * @param disAgrmntNo 不成約No
@@ -134,6 +468,25 @@ public class DisAgrInfoDAO extends DAOBase {
             logger.methodLog("getDisAgrDetailInfo", Constant.METHOD_START);
         }
 
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
+
+        // キャッシュ済みであればDBを参照しない
+        DisAgrDetailCache detailCache = getDetailCache();
+        if (detailCache != null && disAgrmntNo != null) {
+            DisAgrmntInfoVO cachedVO = detailCache.get(disAgrmntNo, isBranch);
+            if (cachedVO != null) {
+                if (logger.isDebugEnabled()) {
+                    logger.methodLog("getDisAgrDetailInfo", new Object[]{cachedVO}, Constant.METHOD_END);
+                }
+                recordLatency("getDisAgrDetailInfo", startNanos, null, NOT_STARTED, true);
+                return copyOf(cachedVO);
+            }
+        }
+
         // DBコネクション用
         Connection conn = null;
         // SQL文実行用
@@ -144,17 +497,24 @@ public class DisAgrInfoDAO extends DAOBase {
         String strSql = null;
         // 不成約情報を持つオブジェクト
         DisAgrmntInfoVO disAgrInfoVO = null;
+        // 不成約情報の活動情報ID（キャッシュの無効化用）
+        String actId = null;
+        // 読込開始時のキャッシュ無効化世代
+        long cacheEpoch = detailCache != null ? detailCache.getEpoch() : 0L;
 
         try {
             conn = getConnection();
 
             strSql = getDisAgrInfoSql(true, isBranch);
 
-            // 実行するSQL文をログに出力
-            logger.printSql(strSql);
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(strSql);
+            }
 
             // SQL文設定
-            pstmt = conn.prepareStatement(strSql);
+            sqlStartNanos = System.nanoTime();
+            pstmt = prepare(conn, strSql);
             pstmt.setString(1, disAgrmntNo);
 
             // SQL文実行
@@ -162,28 +522,10 @@ public class DisAgrInfoDAO extends DAOBase {
 
             // 該当データがあった場合はリストに設定
             if (rset.next()) {
-                disAgrInfoVO = new DisAgrmntInfoVO();
-                disAgrInfoVO.setDisAgrmntNo(rset.getString("AGRMNT_NO"));                           // 不成約No
-                disAgrInfoVO.setActSubject(rset.getString("ACT_SUBJECT"));                          // 活動件名
-                disAgrInfoVO.setHouseholdId(rset.getString("HOUSEHOLD_ID"));                        // 関連顧客ＩＤ
-                disAgrInfoVO.setTelNg(rset.getString("TEL_NG"));                                    // 連絡が取れない・面談ができない
-                disAgrInfoVO.setFrmAcquaintanceApps(rset.getString("FRM_ACQUAINTANCE_APPS"));       // 他募集人もしくは通販より契約
-                disAgrInfoVO.setUndertakeNg(rset.getString("UNDERTAKE_NG"));                        // 引受が不可能である
-                disAgrInfoVO.setCnfdncNg(rset.getString("CNFDNC_NG"));                              // 信用がない
-                disAgrInfoVO.setMemo(rset.getString("MEMO"));                                       // その他メモ
-                disAgrInfoVO.setCompeAterCmpny1(rset.getString("COMPE_ATER_CMPNY1"));               // 競合他社1
-                disAgrInfoVO.setCompeAterCmpny1Prdct(rset.getString("COMPE_ATER_CMPNY1_PRDCT"));    // 競合他社1商品
-                disAgrInfoVO.setCompeAterCmpny2(rset.getString("COMPE_ATER_CMPNY2"));               // 競合他社2
-                disAgrInfoVO.setCompeAterCmpny2Prdct(rset.getString("COMPE_ATER_CMPNY2_PRDCT"));    // 競合他社2商品
-                disAgrInfoVO.setCompeAterCmpny3(rset.getString("COMPE_ATER_CMPNY3"));               // 競合他社3
-                disAgrInfoVO.setCompeAterCmpny3Prdct(rset.getString("COMPE_ATER_CMPNY3_PRDCT"));    // 競合他社3商品
-                disAgrInfoVO.setEntryPgId(rset.getString("ENTRY_PG_ID"));                           // 登録プログラムID
-                disAgrInfoVO.setEntryDt(rset.getString("ENTRY_DT"));                                // 登録日時
-                disAgrInfoVO.setEntryBy(rset.getString("ENTRY_BY"));                                // 登録者ID
-                disAgrInfoVO.setUpdatePgId(rset.getString("UPDATE_PG_ID"));                         // 更新プログラムID
-                disAgrInfoVO.setUpdateDt(rset.getString("UPDATE_DT"));                              // 更新日時
-                disAgrInfoVO.setUpdateBy(rset.getString("UPDATE_BY"));                              // 更新者ID
+                disAgrInfoVO = DisAgrInfoRowMapper.DETAIL.map(rset, DisAgrInfoRowMapper.DETAIL.bind(strSql, rset));
+                actId = rset.getString("ACT_SFDC_ID");
             }
+            succeeded = true;
 
         } catch (SQLException sqle) {
             logger.error("E0002", sqle);
@@ -192,6 +534,11 @@ public class DisAgrInfoDAO extends DAOBase {
             logger.error("E0003", e);
             throw e;
         } finally {
+            // 処理時間を記録
+            long sqlNanos = recordLatency("getDisAgrDetailInfo", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("getDisAgrDetailInfo", strSql, new Object[]{disAgrmntNo}, disAgrInfoVO != null ? 1 : 0, sqlNanos, succeeded);
+            }
             try {
                 close(conn, pstmt, rset);
             } finally {
@@ -200,6 +547,9 @@ public class DisAgrInfoDAO extends DAOBase {
                 conn = null;
             }
         }
+        if (detailCache != null && disAgrInfoVO != null && disAgrmntNo != null) {
+            detailCache.put(disAgrmntNo, isBranch, actId, copyOf(disAgrInfoVO), cacheEpoch);
+        }
         if (logger.isDebugEnabled()) {
             logger.methodLog("getDisAgrDetailInfo", new Object[]{disAgrInfoVO}, Constant.METHOD_END);
         }
@@ -214,7 +564,7 @@ public class DisAgrInfoDAO extends DAOBase {
      * @throws Exception 例外処理
      * @throws SQLException 例外処理
      */
-    public synchronized DisAgrmntInfoVO insertDisAgrInfo(DisAgrEntryForm disAgrEntryForm, String opeId) throws Exception, SQLException {
+    public DisAgrmntInfoVO insertDisAgrInfo(DisAgrEntryForm disAgrEntryForm, String opeId) throws Exception, SQLException {
         if (logger.isDebugEnabled()) {
             logger.methodLog("insertDisAgrInfo", new Object[]{disAgrEntryForm, opeId}, Constant.METHOD_START);
         }
@@ -226,98 +576,40 @@ public class DisAgrInfoDAO extends DAOBase {
         // SQL実行結果取得用
         ResultSet rset = null;
         // 実行SQL文
-        StringBuffer strSql = new StringBuffer();
+        String strSql = getInsertReturningSql();
         // 登録した不成約No
         String disAgrNo = null;
+        // 登録した不成約情報
+        DisAgrmntInfoVO disAgrInfoVO = null;
+
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
 
         try {
             conn = getConnection();
 
-            // キー情報取得
-            pstmt = conn.prepareStatement("SELECT 'EN' + CAST(NEXT VALUE FOR " + Constant.SEQ_SCHEMA + ".SEQ_MST_CUS_AGRMNT_NO_EXT AS VARCHAR) AS AGRMNT_NO");
-            rset = pstmt.executeQuery();
-            if (rset.next()) {
-                disAgrNo = rset.getString(1);
-            }
-            pstmt.close();
-            rset.close();
-
-            /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
-            //strSql.append("insert into ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_EXT (");
-            strSql.append("insert into ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT (");
-            /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD End */
-            strSql.append("  SFDC_ID");                                                 // 成約・不成約主キー
-            strSql.append("  ,AGRMNT_NO");                                              // 不成約No
-            strSql.append("  ,ACT_SFDC_ID");                                            // 活動情報のID
-            strSql.append("  ,AGRMNT_NAGRMNT");                                         // 成約/不成約
-            strSql.append("  ,ACT_SUBJECT");                                            // 活動件名
-            strSql.append("  ,HOUSEHOLD_ID");                                           // 関連顧客ＩＤ
-            strSql.append("  ,TEL_NG");                                                 // 連絡が取れない・面談ができない
-            strSql.append("  ,CNFDNC_NG");                                              // その他
-            strSql.append("  ,FRM_ACQUAINTANCE_APPS");                                  // 他募集人もしくは通販より契約
-            strSql.append("  ,UNDERTAKE_NG");                                           // 引受が不可能である
-            strSql.append("  ,MEMO");                                                   // その他メモ
-            strSql.append("  ,COMPE_ATER_CMPNY1");                                      // 競合他社1
-            strSql.append("  ,COMPE_ATER_CMPNY1_PRDCT");                                // 競合他社1商品
-            strSql.append("  ,COMPE_ATER_CMPNY2");                                      // 競合他社2
-            strSql.append("  ,COMPE_ATER_CMPNY2_PRDCT");                                // 競合他社2商品
-            strSql.append("  ,COMPE_ATER_CMPNY3");                                      // 競合他社3
-            strSql.append("  ,COMPE_ATER_CMPNY3_PRDCT");                                // 競合他社3商品
-            strSql.append("  ,DEL_FLG");                                                // 削除フラグ
-            strSql.append("  ,ENTRY_PG_ID");                                            // 登録プログラムID
-            strSql.append("  ,ENTRY_DT");                                               // 登録日時
-            strSql.append("  ,ENTRY_BY");                                               // 登録者ID
-            strSql.append("  ,UPDATE_PG_ID");                                           // 更新プログラムID
-            strSql.append("  ,UPDATE_DT");                                              // 更新日時
-            strSql.append("  ,UPDATE_BY");                                              // 更新者ID
-            strSql.append("  ) values (");
-            strSql.append("  'EXT_AGR_' + CAST(NEXT VALUE FOR " + Constant.SEQ_SCHEMA + ".SEQ_MST_CUS_AGRMNT_ID_EXT AS VARCHAR)");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,'不成約'");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,?");
-            strSql.append("  ,'FALSE'");
-            strSql.append("  ,'CUSEXT', GETDATE(), ?");
-            strSql.append("  ,'CUSEXT', GETDATE(), ?");
-            strSql.append("  )");
-
-            // 実行するSQL文をログに出力
-            logger.printSql(strSql.toString());
+            // キー情報取得（予約済み範囲から採番。範囲を使い切った場合のみDBアクセスが発生する）
+            disAgrNo = getAgrmntNoAllocator().next(conn);
+
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(strSql);
+            }
 
             // SQL文設定
-            pstmt = conn.prepareStatement(strSql.toString());
-            pstmt.setString(1, disAgrNo);
-            pstmt.setString(2, disAgrEntryForm.getActId());
-            pstmt.setString(3, disAgrEntryForm.getActSubject());
-            pstmt.setString(4, disAgrEntryForm.getHouseholdId());
-            pstmt.setString(5, disAgrEntryForm.getTelNg());
-            pstmt.setString(6, disAgrEntryForm.getCnfdncNg());
-            pstmt.setString(7, disAgrEntryForm.getFrmAcquaintanceApps());
-            pstmt.setString(8, disAgrEntryForm.getUndertakeNg());
-            pstmt.setString(9, disAgrEntryForm.getMemo());
-            pstmt.setString(10, disAgrEntryForm.getCompeAterCmpny1());
-            pstmt.setString(11, disAgrEntryForm.getCompeAterCmpny1Prdct());
-            pstmt.setString(12, disAgrEntryForm.getCompeAterCmpny2());
-            pstmt.setString(13, disAgrEntryForm.getCompeAterCmpny2Prdct());
-            pstmt.setString(14, disAgrEntryForm.getCompeAterCmpny3());
-            pstmt.setString(15, disAgrEntryForm.getCompeAterCmpny3Prdct());
-            pstmt.setString(16, opeId);
-            pstmt.setString(17, opeId);
-
-            // 不成約情報登録
-            pstmt.executeUpdate();
+            sqlStartNanos = System.nanoTime();
+            pstmt = prepare(conn, strSql);
+            setInsertParameters(pstmt, disAgrNo, disAgrEntryForm, opeId);
+
+            // 不成約情報登録（登録した行は OUTPUT 句で同じ文の結果として受け取る）
+            rset = pstmt.executeQuery();
+            if (rset.next()) {
+                disAgrInfoVO = DisAgrInfoRowMapper.DETAIL.map(rset, DisAgrInfoRowMapper.DETAIL.bind(strSql, rset));
+            }
+            succeeded = true;
 
         } catch (SQLException sqle) {
             logger.error("E0002", sqle);
@@ -326,9 +618,15 @@ public class DisAgrInfoDAO extends DAOBase {
             logger.error("E0003", e);
             throw e;
         } finally {
+            // 処理時間を記録
+            long sqlNanos = recordLatency("insertDisAgrInfo", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("insertDisAgrInfo", strSql, new Object[]{disAgrNo, opeId}, disAgrInfoVO != null ? 1 : 0, sqlNanos, succeeded);
+            }
             try {
-                close(conn, pstmt, null);
+                close(conn, pstmt, rset);
             } finally {
+                rset = null;
                 pstmt = null;
                 conn = null;
             }
@@ -336,59 +634,300 @@ public class DisAgrInfoDAO extends DAOBase {
         if (logger.isDebugEnabled()) {
             logger.methodLog("insertDisAgrInfo", Constant.METHOD_END);
         }
-        return getDisAgrDetailInfo(disAgrNo);
+        return disAgrInfoVO;
+    }
+
+    /**
+     * 不成約情報を一括登録する。
+     * @param disAgrEntryFormList 登録する情報を持つオブジェクトのリスト
+     * @param opeId 登録者のOpeId
+     * @return DisAgrBatchResultVO 行ごとの登録結果
+     * @throws Exception 例外処理
+     * @throws SQLException 例外処理
+     */
+    public DisAgrBatchResultVO insertDisAgrInfoBatch(List<DisAgrEntryForm> disAgrEntryFormList, String opeId) throws Exception, SQLException {
+        return insertDisAgrInfoBatch(disAgrEntryFormList, opeId, BATCH_CHUNK_SIZE);
     }
 
     /**
-     * 不成約情報を更新する。
+     * 不成約情報を一括登録する。
+     * 1トランザクション内で chunkSize 件ずつJDBCバッチで登録する。
+     * バッチが失敗したチャンク、または採番・パラメータ設定で例外が発生したチャンクはセーブポイントまで戻して
+     * 1件ずつ登録し直し、失敗した行のみを結果に記録する。
+     * @param disAgrEntryFormList 登録する情報を持つオブジェクトのリスト
+     * @param opeId 登録者のOpeId
+     * @param chunkSize 1回のバッチで送信する件数
+     * @return DisAgrBatchResultVO 行ごとの登録結果
+     * @throws Exception 例外処理
+     * @throws SQLException 例外処理
+     */
+    public DisAgrBatchResultVO insertDisAgrInfoBatch(List<DisAgrEntryForm> disAgrEntryFormList, String opeId, int chunkSize) throws Exception, SQLException {
+        if (logger.isDebugEnabled()) {
+            logger.methodLog("insertDisAgrInfoBatch", new Object[]{Integer.valueOf(disAgrEntryFormList.size()), opeId}, Constant.METHOD_START);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+
+        // DBコネクション用
+        Connection conn = null;
+        // SQL文実行用
+        PreparedStatement pstmt = null;
+        // 実行SQL文
+        String strSql = INSERT_SQL;
+        // 登録結果
+        DisAgrBatchResultVO result = new DisAgrBatchResultVO(disAgrEntryFormList.size());
+        // チャンク内で採番した不成約No
+        String[] disAgrNos = new String[chunkSize];
+        // コネクションの自動コミット設定（終了時に戻す）
+        boolean autoCommit = true;
+
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
+
+        try {
+            conn = getConnection();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(strSql);
+            }
+
+            // SQL文設定
+            sqlStartNanos = System.nanoTime();
+            pstmt = prepare(conn, strSql);
+
+            int size = disAgrEntryFormList.size();
+            for (int from = 0; from < size; from += chunkSize) {
+                int to = Math.min(from + chunkSize, size);
+                Savepoint savepoint = conn.setSavepoint();
+                Arrays.fill(disAgrNos, null);
+                try {
+                    for (int i = from; i < to; i++) {
+                        disAgrNos[i - from] = getAgrmntNoAllocator().next(conn);
+                        setInsertParameters(pstmt, disAgrNos[i - from], disAgrEntryFormList.get(i), opeId);
+                        pstmt.addBatch();
+                    }
+                } catch (Exception e) {
+                    // 採番・パラメータ設定に失敗した行がある場合も、チャンクを取り消して1件ずつ登録する
+                    logger.error("E0003", e);
+                    conn.rollback(savepoint);
+                    pstmt.clearBatch();
+                    insertRowByRow(conn, pstmt, disAgrEntryFormList, from, to, disAgrNos, opeId, result);
+                    continue;
+                }
+                try {
+                    // 不成約情報登録
+                    pstmt.executeBatch();
+                    for (int i = from; i < to; i++) {
+                        result.addSuccess(i, disAgrNos[i - from]);
+                    }
+                } catch (BatchUpdateException bue) {
+                    // チャンクを取り消して1件ずつ登録し、失敗行を特定する
+                    logger.error("E0002", bue);
+                    conn.rollback(savepoint);
+                    pstmt.clearBatch();
+                    insertRowByRow(conn, pstmt, disAgrEntryFormList, from, to, disAgrNos, opeId, result);
+                }
+            }
+
+            conn.commit();
+            succeeded = true;
+
+        } catch (SQLException sqle) {
+            logger.error("E0002", sqle);
+            clearBatchQuietly(pstmt);
+            rollbackQuietly(conn);
+            throw sqle;
+        } catch (Exception e) {
+            logger.error("E0003", e);
+            clearBatchQuietly(pstmt);
+            rollbackQuietly(conn);
+            throw e;
+        } finally {
+            // 処理時間を記録
+            long sqlNanos = recordLatency("insertDisAgrInfoBatch", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("insertDisAgrInfoBatch", strSql, new Object[]{opeId}, disAgrEntryFormList.size(), sqlNanos, succeeded);
+            }
+            try {
+                if (conn != null) {
+                    conn.setAutoCommit(autoCommit);
+                }
+            } finally {
+                try {
+                    close(conn, pstmt, null);
+                } finally {
+                    pstmt = null;
+                    conn = null;
+                }
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.methodLog("insertDisAgrInfoBatch", new Object[]{result}, Constant.METHOD_END);
+        }
+        return result;
+    }
+
+    /**
+     * チャンク内の不成約情報を1件ずつ登録する。失敗した行はその行のみ取り消す。
+     * 採番・パラメータ設定・登録のいずれで失敗した場合も、その行を失敗として記録して次の行へ進む。
+     * @param conn コネクション
+     * @param pstmt 登録用SQL文
+     * @param disAgrEntryFormList 登録する情報を持つオブジェクトのリスト
+     * @param from チャンクの開始位置
+     * @param to チャンクの終了位置（この位置を含まない）
+     * @param disAgrNos チャンク内で採番した不成約No（未採番の行は null。この処理で採番する）
+     * @param opeId 登録者のOpeId
+     * @param result 登録結果
+     * @throws SQLException 例外処理
+     */
+    private void insertRowByRow(Connection conn, PreparedStatement pstmt, List<DisAgrEntryForm> disAgrEntryFormList,
+            int from, int to, String[] disAgrNos, String opeId, DisAgrBatchResultVO result) throws SQLException {
+        for (int i = from; i < to; i++) {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                if (disAgrNos[i - from] == null) {
+                    disAgrNos[i - from] = getAgrmntNoAllocator().next(conn);
+                }
+                setInsertParameters(pstmt, disAgrNos[i - from], disAgrEntryFormList.get(i), opeId);
+                pstmt.executeUpdate();
+                result.addSuccess(i, disAgrNos[i - from]);
+            } catch (SQLException sqle) {
+                conn.rollback(savepoint);
+                result.addFailure(i, sqle.getMessage());
+            } catch (Exception e) {
+                logger.error("E0003", e);
+                conn.rollback(savepoint);
+                result.addFailure(i, e.toString());
+            }
+        }
+    }
+
+    /**
+     * 登録用SQL文にパラメータを設定する。
+     * @param pstmt 登録用SQL文
+     * @param disAgrNo 不成約No
+     * @param disAgrEntryForm 登録する情報を持つオブジェクト
+     * @param opeId 登録者のOpeId
+     * @throws SQLException 例外処理
+     */
+    private void setInsertParameters(PreparedStatement pstmt, String disAgrNo, DisAgrEntryForm disAgrEntryForm, String opeId) throws SQLException {
+        pstmt.setString(1, disAgrNo);
+        pstmt.setString(2, disAgrEntryForm.getActId());
+        pstmt.setString(3, disAgrEntryForm.getActSubject());
+        pstmt.setString(4, disAgrEntryForm.getHouseholdId());
+        pstmt.setString(5, disAgrEntryForm.getTelNg());
+        pstmt.setString(6, disAgrEntryForm.getCnfdncNg());
+        pstmt.setString(7, disAgrEntryForm.getFrmAcquaintanceApps());
+        pstmt.setString(8, disAgrEntryForm.getUndertakeNg());
+        pstmt.setString(9, disAgrEntryForm.getMemo());
+        pstmt.setString(10, disAgrEntryForm.getCompeAterCmpny1());
+        pstmt.setString(11, disAgrEntryForm.getCompeAterCmpny1Prdct());
+        pstmt.setString(12, disAgrEntryForm.getCompeAterCmpny2());
+        pstmt.setString(13, disAgrEntryForm.getCompeAterCmpny2Prdct());
+        pstmt.setString(14, disAgrEntryForm.getCompeAterCmpny3());
+        pstmt.setString(15, disAgrEntryForm.getCompeAterCmpny3Prdct());
+        pstmt.setString(16, opeId);
+        pstmt.setString(17, opeId);
+    }
+
+    /**
+     * 未送信のバッチを消去する。キャッシュされた文に残った行が次の executeBatch で登録されないようにする。
+     * 消去時の例外は元の例外を優先するため無視する。
+     * @param pstmt SQL文
+     */
+    private void clearBatchQuietly(PreparedStatement pstmt) {
+        if (pstmt == null) {
+            return;
+        }
+        try {
+            pstmt.clearBatch();
+        } catch (SQLException e) {
+            logger.error("E0002", e);
+        }
+    }
+
+    /**
+     * トランザクションを取り消す。取り消し時の例外は元の例外を優先するため無視する。
+     * @param conn コネクション
+     */
+    private void rollbackQuietly(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            logger.error("E0002", e);
+        }
+    }
+
+    /**
+     * 不成約情報を更新する。更新日時による排他確認は行わない（後勝ち）。
+     * 更新は1文で行うため、行単位の整合性はDBのロックで保証される。
      * @param disAgrEntryForm 更新する情報を持つオブジェクト
      * @param opeId 更新者のOpeId
      * @return 登録した不成約情報
      * @throws Exception 例外処理
      * @throws SQLException 例外処理
      */
-    public synchronized DisAgrmntInfoVO updateDisAgrInfo(DisAgrEntryForm disAgrEntryForm, String opeId) throws Exception, SQLException {
+    public DisAgrmntInfoVO updateDisAgrInfo(DisAgrEntryForm disAgrEntryForm, String opeId) throws Exception, SQLException {
+        return updateDisAgrInfo(disAgrEntryForm, opeId, null);
+    }
+
+    /**
+     * 不成約情報を楽観排他で更新する。読込時に取得した更新日時と現在の更新日時が一致する場合のみ更新する。
+     * 他の処理（他ノードを含む）が先に更新していた場合は DisAgrConflictException をスローする。
+     * @param disAgrEntryForm 更新する情報を持つオブジェクト
+     * @param opeId 更新者のOpeId
+     * @param expectedUpdateDt 読込時の更新日時（{@link #getDisAgrUpdateDt}で取得）。nullの場合は排他確認を行わない
+     * @return 更新した不成約情報。該当する不成約情報がない場合はnull
+     * @throws DisAgrConflictException 読込後に他の処理で更新されていた場合
+     * @throws Exception 例外処理
+     * @throws SQLException 例外処理
+     */
+    public DisAgrmntInfoVO updateDisAgrInfo(DisAgrEntryForm disAgrEntryForm, String opeId, Timestamp expectedUpdateDt)
+            throws DisAgrConflictException, Exception, SQLException {
         if (logger.isDebugEnabled()) {
-            logger.methodLog("updateDisAgrInfo", new Object[]{disAgrEntryForm, opeId}, Constant.METHOD_START);
+            logger.methodLog("updateDisAgrInfo", new Object[]{disAgrEntryForm, opeId, expectedUpdateDt}, Constant.METHOD_START);
         }
 
         // DBコネクション用
         Connection conn = null;
         // SQL文実行用
         PreparedStatement pstmt = null;
+        // SQL実行結果取得用
+        ResultSet rset = null;
         // 実行SQL文
-        StringBuffer strSql = new StringBuffer();
+        String strSql = expectedUpdateDt != null ? getUpdateCheckedReturningSql() : getUpdateReturningSql();
+        // 更新した不成約情報
+        DisAgrmntInfoVO disAgrInfoVO = null;
+        // 排他エラー時の現在の更新日時
+        Timestamp currentUpdateDt = null;
+
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
 
         try {
             conn = getConnection();
 
-            /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
-            //strSql.append("update ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_EXT set ");
-            strSql.append("update ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT set ");
-            /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD End */
-            strSql.append("  ACT_SUBJECT = ?");                                             // 活動件名
-            strSql.append("  ,TEL_NG = ?");                                                 // 連絡が取れない・面談ができない
-            strSql.append("  ,CNFDNC_NG = ?");                                              // その他
-            strSql.append("  ,FRM_ACQUAINTANCE_APPS = ?");                                  // 他募集人もしくは通販より契約
-            strSql.append("  ,UNDERTAKE_NG = ?");                                           // 引受が不可能である
-            strSql.append("  ,MEMO = ?");                                                   // その他メモ
-            strSql.append("  ,COMPE_ATER_CMPNY1 = ?");                                      // 競合他社1
-            strSql.append("  ,COMPE_ATER_CMPNY1_PRDCT = ?");                                // 競合他社1商品
-            strSql.append("  ,COMPE_ATER_CMPNY2 = ?");                                      // 競合他社2
-            strSql.append("  ,COMPE_ATER_CMPNY2_PRDCT = ?");                                // 競合他社2商品
-            strSql.append("  ,COMPE_ATER_CMPNY3 = ?");                                      // 競合他社3
-            strSql.append("  ,COMPE_ATER_CMPNY3_PRDCT = ?");                                // 競合他社3商品
-            strSql.append("  ,UPDATE_PG_ID = 'CUSEXT'");                                    // 更新プログラムID
-            strSql.append("  ,UPDATE_DT = GETDATE()");                                        // 更新日時
-            strSql.append("  ,UPDATE_BY = ? ");                                             // 更新者ID
-            strSql.append(" where ");
-            strSql.append("  AGRMNT_NO = ?");         // 不成約No
-
-            // 実行するSQL文をログに出力
-            logger.printSql(strSql.toString());
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(strSql);
+            }
 
             // SQL文設定
-            pstmt = conn.prepareStatement(strSql.toString());
+            sqlStartNanos = System.nanoTime();
+            pstmt = prepare(conn, strSql);
             pstmt.setString(1, disAgrEntryForm.getActSubject());
             pstmt.setString(2, disAgrEntryForm.getTelNg());
             pstmt.setString(3, disAgrEntryForm.getCnfdncNg());
@@ -403,9 +942,23 @@ public class DisAgrInfoDAO extends DAOBase {
             pstmt.setString(12, disAgrEntryForm.getCompeAterCmpny3Prdct());
             pstmt.setString(13, opeId);
             pstmt.setString(14, disAgrEntryForm.getDisAgrmntNo());
+            if (expectedUpdateDt != null) {
+                pstmt.setTimestamp(15, expectedUpdateDt);
+            }
 
-            // 不成約情報更新
-            pstmt.executeUpdate();
+            // 不成約情報更新（更新した行は OUTPUT 句で同じ文の結果として受け取る。該当なしの場合は null）
+            rset = pstmt.executeQuery();
+            if (rset.next()) {
+                disAgrInfoVO = DisAgrInfoRowMapper.DETAIL.map(rset, DisAgrInfoRowMapper.DETAIL.bind(strSql, rset));
+            } else if (expectedUpdateDt != null) {
+                // 更新件数0件の場合、不成約情報が存在すれば他の処理で更新済み（排他エラー）
+                rset.close();
+                rset = null;
+                pstmt.close();
+                pstmt = null;
+                currentUpdateDt = selectUpdateDt(conn, disAgrEntryForm.getDisAgrmntNo());
+            }
+            succeeded = true;
 
         } catch (SQLException sqle) {
             logger.error("E0002", sqle);
@@ -414,17 +967,116 @@ public class DisAgrInfoDAO extends DAOBase {
             logger.error("E0003", e);
             throw e;
         } finally {
+            // 処理時間を記録
+            long sqlNanos = recordLatency("updateDisAgrInfo", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("updateDisAgrInfo", strSql, new Object[]{disAgrEntryForm.getDisAgrmntNo(), expectedUpdateDt}, disAgrInfoVO != null ? 1 : 0, sqlNanos, succeeded);
+            }
             try {
-                close(conn, pstmt, null);
+                close(conn, pstmt, rset);
             } finally {
+                rset = null;
                 pstmt = null;
                 conn = null;
             }
         }
+        invalidateDetailCache(disAgrEntryForm.getDisAgrmntNo());
+        if (currentUpdateDt != null) {
+            throw new DisAgrConflictException(disAgrEntryForm.getDisAgrmntNo(), expectedUpdateDt, currentUpdateDt);
+        }
         if (logger.isDebugEnabled()) {
             logger.methodLog("updateDisAgrInfo", Constant.METHOD_END);
         }
-        return getDisAgrDetailInfo(disAgrEntryForm.getDisAgrmntNo());
+        return disAgrInfoVO;
+    }
+
+    /**
+     * 不成約情報の現在の更新日時を取得する。楽観排他で更新する場合は、読込時にこの値を保持しておくこと。
+     * @param disAgrmntNo 不成約No
+     * @return Timestamp 更新日時。該当する不成約情報がない場合はnull
+     * @throws Exception 例外処理
+     * @throws SQLException 例外処理
+     */
+    public Timestamp getDisAgrUpdateDt(String disAgrmntNo) throws Exception, SQLException {
+        if (logger.isDebugEnabled()) {
+            logger.methodLog("getDisAgrUpdateDt", new Object[]{disAgrmntNo}, Constant.METHOD_START);
+        }
+
+        // DBコネクション用
+        Connection conn = null;
+        // 更新日時
+        Timestamp updateDt = null;
+
+        // 処理時間計測用
+        long startNanos = System.nanoTime();
+        // 正常終了したか
+        boolean succeeded = false;
+
+        try {
+            conn = getConnection();
+            updateDt = selectUpdateDt(conn, disAgrmntNo);
+            succeeded = true;
+        } catch (SQLException sqle) {
+            logger.error("E0002", sqle);
+            throw sqle;
+        } catch (Exception e) {
+            logger.error("E0003", e);
+            throw e;
+        } finally {
+            // 処理時間を記録
+            recordLatency("getDisAgrUpdateDt", startNanos, null, NOT_STARTED, succeeded);
+            try {
+                close(conn, null, null);
+            } finally {
+                conn = null;
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.methodLog("getDisAgrUpdateDt", new Object[]{updateDt}, Constant.METHOD_END);
+        }
+        return updateDt;
+    }
+
+    /**
+     * 渡されたコネクションで不成約情報の更新日時を取得する。
+     * @param conn DBコネクション
+     * @param disAgrmntNo 不成約No
+     * @return Timestamp 更新日時。該当する不成約情報がない場合はnull
+     * @throws SQLException 例外処理
+     */
+    private Timestamp selectUpdateDt(Connection conn, String disAgrmntNo) throws SQLException {
+        PreparedStatement pstmt = null;
+        ResultSet rset = null;
+        long sqlStartNanos = System.nanoTime();
+        boolean succeeded = false;
+        Timestamp updateDt = null;
+        try {
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(SELECT_UPDATE_DT_SQL);
+            }
+
+            pstmt = prepare(conn, SELECT_UPDATE_DT_SQL);
+            pstmt.setString(1, disAgrmntNo);
+            rset = pstmt.executeQuery();
+            updateDt = rset.next() ? rset.getTimestamp(1) : null;
+            succeeded = true;
+            return updateDt;
+        } finally {
+            long sqlNanos = recordSqlLatency(SELECT_UPDATE_DT_SQL, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("selectUpdateDt", SELECT_UPDATE_DT_SQL, new Object[]{disAgrmntNo}, updateDt != null ? 1 : 0, sqlNanos, succeeded);
+            }
+            try {
+                if (rset != null) {
+                    rset.close();
+                }
+            } finally {
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            }
+        }
     }
 
     /**
@@ -443,24 +1095,32 @@ public class DisAgrInfoDAO extends DAOBase {
         // SQL文実行用
         PreparedStatement pstmt = null;
         // 実行SQL文
-        StringBuffer strSql = new StringBuffer();
+        String strSql = DELETE_SQL;
+        // 削除件数
+        int rowCount = 0;
+
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
 
         try {
             conn = getConnection();
 
-            /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
-            //strSql.append("delete from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_EXT where AGRMNT_NO = ?");
-            strSql.append("delete from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT where AGRMNT_NO = ?");
-            /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD End */
-            // 実行するSQL文をログに出力
-            logger.printSql(strSql.toString());
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(strSql);
+            }
 
             // SQL文設定
-            pstmt = conn.prepareStatement(strSql.toString());
+            sqlStartNanos = System.nanoTime();
+            pstmt = prepare(conn, strSql);
             pstmt.setString(1, disAgrId);
 
             // 不成約情報削除
-            pstmt.executeUpdate();
+            rowCount = pstmt.executeUpdate();
+            succeeded = true;
 
         } catch (SQLException sqle) {
             logger.error("E0002", sqle);
@@ -469,6 +1129,11 @@ public class DisAgrInfoDAO extends DAOBase {
             logger.error("E0003", e);
             throw e;
         } finally {
+            // 処理時間を記録
+            long sqlNanos = recordLatency("deleteDisAgrInfo", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("deleteDisAgrInfo", strSql, new Object[]{disAgrId}, rowCount, sqlNanos, succeeded);
+            }
             try {
                 close(conn, pstmt, null);
             } finally {
@@ -476,6 +1141,7 @@ public class DisAgrInfoDAO extends DAOBase {
                 conn = null;
             }
         }
+        invalidateDetailCache(disAgrId);
         if (logger.isDebugEnabled()) {
             logger.methodLog("deleteDisAgrInfo", Constant.METHOD_END);
         }
@@ -483,6 +1149,10 @@ public class DisAgrInfoDAO extends DAOBase {
 
     /**
      * 渡された活動情報IDに関連する不成約情報を削除する。
+     * 詳細キャッシュは削除実行時に無効化し、呼出し元のトランザクション中であれば終了後（コミット・ロールバック後）にも
+     * 再度無効化する。コミット前に他のコネクションが読込んだ削除前の情報がキャッシュに残らないようにするため。
+     * コネクションが{@link DisAgrConnectionPool}のものでない場合は終了を検知できないため、呼出し元がコミット後に
+     * {@link DisAgrDetailCache#invalidateByActId(String)} を呼び出すこと。
      * @param actId 削除する不成約情報の活動ID
      * @param conn コネクション
      * @throws Exception 例外処理
@@ -496,23 +1166,43 @@ public class DisAgrInfoDAO extends DAOBase {
         // SQL文実行用
         PreparedStatement pstmt = null;
         // 実行SQL文
-        StringBuffer strSql = new StringBuffer();
+        String strSql = DELETE_ALL_SQL;
+        // 削除件数
+        int rowCount = 0;
+
+        // 処理時間計測用（処理全体・SQL文ごとの開始時刻）
+        long startNanos = System.nanoTime();
+        long sqlStartNanos = NOT_STARTED;
+        // 正常終了したか
+        boolean succeeded = false;
 
         try {
 
-            /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
-            //strSql.append("delete from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_EXT where ACT_SFDC_ID = ?");
-            strSql.append("delete from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT where ACT_SFDC_ID = ?");
-            /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
-            // 実行するSQL文をログに出力
-            logger.printSql(strSql.toString());
+            // 実行するSQL文をログに出力（トレース有効時、サンプリング対象の場合のみ）
+            if (SQL_TRACER.isTraced()) {
+                logger.printSql(strSql);
+            }
 
             // SQL文設定
-            pstmt = conn.prepareStatement(strSql.toString());
+            sqlStartNanos = System.nanoTime();
+            pstmt = prepare(conn, strSql);
             pstmt.setString(1, actId);
 
             // 不成約情報削除
-            pstmt.executeUpdate();
+            rowCount = pstmt.executeUpdate();
+            succeeded = true;
+
+            // トランザクション終了後に詳細キャッシュを再度無効化する
+            final DisAgrDetailCache detailCache = getDetailCache();
+            if (detailCache != null) {
+                final String deletedActId = actId;
+                DisAgrConnectionPool.afterCompletion(conn, new Runnable() {
+                    @Override
+                    public void run() {
+                        detailCache.invalidateByActId(deletedActId);
+                    }
+                });
+            }
 
         } catch (SQLException sqle) {
             logger.error("E0002", sqle);
@@ -521,6 +1211,11 @@ public class DisAgrInfoDAO extends DAOBase {
             logger.error("E0003", e);
             throw e;
         } finally {
+            // 処理時間を記録
+            long sqlNanos = recordLatency("deleteAllDisAgrInfo", startNanos, strSql, sqlStartNanos, succeeded);
+            if (SQL_TRACER.isSlow(sqlNanos)) {
+                SQL_TRACER.slowQuery("deleteAllDisAgrInfo", strSql, new Object[]{actId}, rowCount, sqlNanos, succeeded);
+            }
             try {
                 close(null, pstmt, null);
             } finally {
@@ -528,27 +1223,273 @@ public class DisAgrInfoDAO extends DAOBase {
                 conn = null;
             }
         }
+        if (getDetailCache() != null) {
+            getDetailCache().invalidateByActId(actId);
+        }
         if (logger.isDebugEnabled()) {
             logger.methodLog("deleteAllDisAgrInfo", Constant.METHOD_END);
         }
     }
 
+    /**
+     * 処理時間を記録する。失敗した処理はエラー件数として記録し、処理時間の分布には含めない。
+     * @param operation DAO処理名
+     * @param startNanos 処理の開始時刻
+     * @param strSql 実行したSQL文。SQL文単位で記録しない場合はnull
+     * @param sqlStartNanos SQL文の実行開始時刻。実行していない場合は NOT_STARTED
+     * @param succeeded 正常終了したか
+     * @return long SQL文の実行時間（ナノ秒）。SQL文を実行していない場合は -1
+     */
+    private static long recordLatency(String operation, long startNanos, String strSql, long sqlStartNanos, boolean succeeded) {
+        LATENCY.histogram("dao", operation).record(System.nanoTime() - startNanos, succeeded);
+        if (strSql == null) {
+            return -1L;
+        }
+        return recordSqlLatency(strSql, sqlStartNanos, succeeded);
+    }
+
+    /**
+     * SQL文単位の処理時間（文の準備から結果の読込まで）を記録する。
+     * @param strSql 実行したSQL文
+     * @param sqlStartNanos SQL文の実行開始時刻。実行していない場合は NOT_STARTED
+     * @param succeeded 正常終了したか
+     * @return long SQL文の実行時間（ナノ秒）。SQL文を実行していない場合は -1
+     */
+    private static long recordSqlLatency(String strSql, long sqlStartNanos, boolean succeeded) {
+        if (sqlStartNanos == NOT_STARTED) {
+            return -1L;
+        }
+        LatencyHistogram histogram = SQL_LATENCY.get(strSql);
+        if (histogram == null) {
+            histogram = LATENCY.histogram("sql", sqlName(strSql));
+            SQL_LATENCY.putIfAbsent(strSql, histogram);
+        }
+        long elapsedNanos = System.nanoTime() - sqlStartNanos;
+        histogram.record(elapsedNanos, succeeded);
+        return elapsedNanos;
+    }
+
+    /**
+     * 処理時間の表示名を作成する。空白を詰めたSQL文の先頭に、文を区別するためのハッシュ値を付ける。
+     * @param strSql SQL文
+     * @return String 表示名
+     */
+    private static String sqlName(String strSql) {
+        String name = strSql.replaceAll("\\s+", " ").trim();
+        if (name.length() > SQL_NAME_LENGTH) {
+            name = name.substring(0, SQL_NAME_LENGTH) + "...";
+        }
+        return name + " #" + Integer.toHexString(strSql.hashCode());
+    }
+
+    /**
+     * 登録した行を返す登録用SQLを取得する。
+     * @return String 登録用SQL
+     */
+    protected String getInsertReturningSql() {
+        return INSERT_RETURNING_SQL;
+    }
+
+    /**
+     * 更新した行を返す更新用SQLを取得する。
+     * @return String 更新用SQL
+     */
+    protected String getUpdateReturningSql() {
+        return UPDATE_RETURNING_SQL;
+    }
+
+    /**
+     * 更新日時で排他確認を行い、更新した行を返す更新用SQLを取得する。
+     * @return String 更新用SQL
+     */
+    protected String getUpdateCheckedReturningSql() {
+        return UPDATE_CHECKED_RETURNING_SQL;
+    }
+
+    /**
+     * 不成約情報詳細キャッシュを取得する。
+     * @return DisAgrDetailCache 不成約情報詳細キャッシュ。キャッシュしない場合はnull
+     */
+    public DisAgrDetailCache getDetailCache() {
+        return DETAIL_CACHE;
+    }
+
+    /**
+     * SQLトレース・スロークエリログを取得する。
+     * @return DisAgrSqlTracer SQLトレース（統計値は getMetrics() で参照できる）
+     */
+    public DisAgrSqlTracer getSqlTracer() {
+        return SQL_TRACER;
+    }
+
+    /**
+     * 不成約Noに該当する詳細キャッシュを無効化する。
+     * @param disAgrmntNo 不成約No
+     */
+    private void invalidateDetailCache(String disAgrmntNo) {
+        if (getDetailCache() != null && disAgrmntNo != null) {
+            getDetailCache().invalidate(disAgrmntNo);
+        }
+    }
+
+    /**
+     * 不成約情報詳細キャッシュを作成する。
+     * @return DisAgrDetailCache 不成約情報詳細キャッシュ。件数上限が0以下の場合はnull
+     */
+    private static DisAgrDetailCache createDetailCache() {
+        int maxSize = Integer.getInteger("cusext.disAgrDetailCache.maxSize", 10000).intValue();
+        long ttlSeconds = Long.getLong("cusext.disAgrDetailCache.ttlSeconds", 300L).longValue();
+        if (maxSize <= 0) {
+            return null;
+        }
+        return new DisAgrDetailCache(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 不成約情報詳細を複製する。キャッシュ中の情報を呼出し元の変更から保護するために使用する。
+     * @param src 複製元
+     * @return DisAgrmntInfoVO 複製
+     */
+    private static DisAgrmntInfoVO copyOf(DisAgrmntInfoVO src) {
+        DisAgrmntInfoVO dest = new DisAgrmntInfoVO();
+        dest.setDisAgrmntNo(src.getDisAgrmntNo());
+        dest.setActSubject(src.getActSubject());
+        dest.setHouseholdId(src.getHouseholdId());
+        dest.setTelNg(src.getTelNg());
+        dest.setFrmAcquaintanceApps(src.getFrmAcquaintanceApps());
+        dest.setUndertakeNg(src.getUndertakeNg());
+        dest.setCnfdncNg(src.getCnfdncNg());
+        dest.setMemo(src.getMemo());
+        dest.setCompeAterCmpny1(src.getCompeAterCmpny1());
+        dest.setCompeAterCmpny1Prdct(src.getCompeAterCmpny1Prdct());
+        dest.setCompeAterCmpny2(src.getCompeAterCmpny2());
+        dest.setCompeAterCmpny2Prdct(src.getCompeAterCmpny2Prdct());
+        dest.setCompeAterCmpny3(src.getCompeAterCmpny3());
+        dest.setCompeAterCmpny3Prdct(src.getCompeAterCmpny3Prdct());
+        dest.setEntryPgId(src.getEntryPgId());
+        dest.setEntryDt(src.getEntryDt());
+        dest.setEntryBy(src.getEntryBy());
+        dest.setUpdatePgId(src.getUpdatePgId());
+        dest.setUpdateDt(src.getUpdateDt());
+        dest.setUpdateBy(src.getUpdateBy());
+        return dest;
+    }
+
+    /**
+     * DBコネクションを取得する。DisAgrConnectionPool が設定されていればプールから、
+     * 設定されていなければ DAOBase から取得する。
+     * @return Connection DBコネクション
+     * @throws Exception 例外処理
+     */
+    @Override
+    protected Connection getConnection() throws Exception {
+        DisAgrConnectionPool pool = DisAgrConnectionPool.getInstalled();
+        if (pool != null) {
+            return pool.getConnection();
+        }
+        return super.getConnection();
+    }
+
+    /**
+     * SQL文を準備する。実行中のスレッドにDB処理の期限が設定されている場合は、残り時間を
+     * 文のタイムアウト（秒単位に切り上げ）として設定する。
+     * @param conn コネクション
+     * @param strSql SQL文
+     * @return PreparedStatement 準備した文
+     * @throws SQLException 期限を過ぎている場合（SQLTimeoutException）、または準備に失敗した場合
+     */
+    private static PreparedStatement prepare(Connection conn, String strSql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(strSql);
+        Long deadline = QUERY_DEADLINE.get();
+        if (deadline != null) {
+            long remainingNanos = deadline.longValue() - System.nanoTime();
+            if (remainingNanos <= 0) {
+                pstmt.close();
+                throw new SQLTimeoutException("DAO call deadline passed before executing the statement");
+            }
+            long seconds = (remainingNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+            pstmt.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, seconds));
+        }
+        return pstmt;
+    }
+
+    /**
+     * 実行中のスレッドのDB処理の期限を設定する。以降に準備する文には残り時間がタイムアウトとして設定される。
+     * ドライバによっては実行中のスレッドへの割込みで処理が中断されないため、非同期DAOのタイムアウトに合わせて使用する。
+     * @param deadlineNanos 期限（System.nanoTime 基準）
+     */
+    static void setQueryDeadline(long deadlineNanos) {
+        QUERY_DEADLINE.set(Long.valueOf(deadlineNanos));
+    }
+
+    /**
+     * 実行中のスレッドのDB処理の期限を解除する。
+     */
+    static void clearQueryDeadline() {
+        QUERY_DEADLINE.remove();
+    }
+
+    /**
+     * 不成約No採番クラスを取得する。
+     * @return AgrmntNoAllocator 不成約No採番クラス
+     */
+    protected AgrmntNoAllocator getAgrmntNoAllocator() {
+        return AGRMNT_NO_ALLOCATOR;
+    }
+
+    /**
+     * 不成約情報を取得するSQL分を取得する。
+     * @param isDetail 不成約情報詳細の取得有無。true-不成約情報詳細、false-不成約情報リスト
+     * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @return String 取得用SQL
+     */
+    String getDisAgrInfoSql(boolean isDetail, boolean isBranch) {
+        return DIS_AGR_INFO_SQL[sqlShape(isDetail, isBranch)];
+    }
+
+    /**
+     * 取得用SQLの配列インデックスを求める。
+     * @param isDetail 不成約情報詳細の取得有無
+     * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @return int {@link #DIS_AGR_INFO_SQL}のインデックス
+     */
+    static int sqlShape(boolean isDetail, boolean isBranch) {
+        return (isDetail ? 2 : 0) + (isBranch ? 1 : 0);
+    }
+
+    /**
+     * 複数活動一括取得用SQLをすべての要素数について作成。
+     * @return String[][] 複数活動一括取得用SQL
+     */
+    private static String[][] buildDisAgrInfoListInSql() {
+        int shapes = Integer.numberOfTrailingZeros(MAX_IN_LIST_SIZE) + 1;
+        String[][] sqls = new String[2][shapes];
+        for (int i = 0; i < shapes; i++) {
+            sqls[0][i] = buildDisAgrInfoSql(false, false, 1 << i, STREAM_NONE);
+            sqls[1][i] = buildDisAgrInfoSql(false, true, 1 << i, STREAM_NONE);
+        }
+        return sqls;
+    }
+
     /**
      * 不成約情報を取得するSQL分を作成。
      * @param isDetail 不成約情報詳細の取得有無。true-不成約情報詳細、false-不成約情報リスト
      * @param isBranch true - 支社マLeads、false - AG本部Leads
+     * @param inListSize 不成約情報リストを複数活動分取得する場合のIN句の要素数。0の場合は1活動分を取得する
+     * @param streamMode 不成約情報リストの逐次取得区分。逐次取得の場合は (登録日時, 不成約No) 順に並べ、
+     *        キーセット用に書式変換前の登録日時も取得する
      * @return String 取得用SQL
      */
-    private String getDisAgrInfoSql(boolean isDetail, boolean isBranch) {
-        StringBuffer sqlSb = new StringBuffer();
+    private static String buildDisAgrInfoSql(boolean isDetail, boolean isBranch, int inListSize, int streamMode) {
+        StringBuilder sqlSb = new StringBuilder();
         sqlSb.append("select ");
         sqlSb.append("  AGRMNT_NO ");                                                           // 不成約No
         sqlSb.append("  ,COMPE_ATER_CMPNY1 ");                                                  // 競合他社1
         sqlSb.append("  ,COMPE_ATER_CMPNY1_PRDCT ");                                            // 競合他社1商品
         sqlSb.append("  ,MEMO ");                                                               // その他メモ
         if (isDetail) {
-            sqlSb.append("  ,FORMAT(AGR.ENTRY_DT, 'yyyy/MM/dd HH:mm') AS ENTRY_DT ");        // 登録日時
-            sqlSb.append("  ,FORMAT(AGR.UPDATE_DT, 'yyyy/MM/dd HH:mm') AS UPDATE_DT ");      // 更新日時
+            sqlSb.append(dateColumn("AGR.ENTRY_DT", "yyyy/MM/dd HH:mm", "ENTRY_DT"));            // 登録日時
+            sqlSb.append(dateColumn("AGR.UPDATE_DT", "yyyy/MM/dd HH:mm", "UPDATE_DT"));          // 更新日時
             sqlSb.append("  ,ACT.ACT_SUBJECT ");                                                // 活動件名
             sqlSb.append("  ,AGR.HOUSEHOLD_ID ");                                               // 関連顧客ＩＤ
             sqlSb.append("  ,TEL_NG ");                                                         // 連絡が取れない・面談ができない
@@ -563,9 +1504,16 @@ public class DisAgrInfoDAO extends DAOBase {
             sqlSb.append("  ,AGR.ENTRY_BY ");                                                   // 登録者ID
             sqlSb.append("  ,AGR.UPDATE_PG_ID ");                                               // 更新プログラムID
             sqlSb.append("  ,AGR.UPDATE_BY ");                                                  // 更新者ID
+            sqlSb.append("  ,AGR.ACT_SFDC_ID ");                                                // 活動情報のID
         } else {
-            sqlSb.append("  ,FORMAT(AGR.ENTRY_DT, 'yyyy/MM/dd') AS ENTRY_DT ");                // 登録日時
-            sqlSb.append("  ,FORMAT(AGR.UPDATE_DT, 'yyyy/MM/dd') AS UPDATE_DT ");              // 更新日時
+            sqlSb.append(dateColumn("AGR.ENTRY_DT", "yyyy/MM/dd", "ENTRY_DT"));                  // 登録日時
+            sqlSb.append(dateColumn("AGR.UPDATE_DT", "yyyy/MM/dd", "UPDATE_DT"));                // 更新日時
+            if (inListSize > 0) {
+                sqlSb.append("  ,AGR.ACT_SFDC_ID ");                                            // 活動情報のID
+            }
+            if (streamMode != STREAM_NONE) {
+                sqlSb.append("  ,AGR.ENTRY_DT AS ENTRY_DT_RAW ");                               // 登録日時（キーセット用）
+            }
         }
         sqlSb.append("from ");
 
@@ -592,10 +1540,216 @@ public class DisAgrInfoDAO extends DAOBase {
             sqlSb.append("  AND AGRMNT_NO = ?");
         } else {
             // 活動情報キーと紐付く情報取得
-            sqlSb.append("  AND ACT_SFDC_ID = ?");
+            if (inListSize > 0) {
+                sqlSb.append("  AND ACT_SFDC_ID IN (?");
+                for (int i = 1; i < inListSize; i++) {
+                    sqlSb.append(",?");
+                }
+                sqlSb.append(")");
+            } else {
+                sqlSb.append("  AND ACT_SFDC_ID = ?");
+            }
             sqlSb.append("  AND AGR.AGRMNT_NAGRMNT = '不成約'");
+            if (streamMode == STREAM_AFTER_KEYSET) {
+                // 前回最後に取得した (登録日時, 不成約No) より後から取得
+                // ENTRY_DT は DATETIME のため、パラメータも DATETIME に変換して比較する（更新SQLの排他確認と同じ理由）
+                sqlSb.append("  AND (AGR.ENTRY_DT > CAST(? AS DATETIME) OR (AGR.ENTRY_DT = CAST(? AS DATETIME) AND AGRMNT_NO > ?))");
+            }
+        }
+        if (streamMode != STREAM_NONE) {
+            sqlSb.append(" order by AGR.ENTRY_DT, AGRMNT_NO");
+        } else {
+            sqlSb.append(" order by AGR.ENTRY_DT");
+        }
+
+        return sqlSb.toString();
+    }
+
+    /**
+     * 日時列の選択項目を作成。FORMAT関数はCLRで実装されており全行で実行されるとDBのCPU負荷が高いため、
+     * 既定では日時のまま取得し、書式変換は DisAgrInfoRowMapper が行う（書式はマッパーの定義と同じ）。
+     * @param column 日時列
+     * @param pattern 書式（FORMAT_DATES_IN_DB の場合のみ使用）
+     * @param alias 列の別名
+     * @return String 選択項目
+     */
+    private static String dateColumn(String column, String pattern, String alias) {
+        if (FORMAT_DATES_IN_DB) {
+            return "  ,FORMAT(" + column + ", '" + pattern + "') AS " + alias + " ";
+        }
+        return "  ," + column + " AS " + alias + " ";
+    }
+
+    /**
+     * 登録・更新した行を返す OUTPUT 句を作成。
+     * 活動件名は活動情報ではなく、不成約情報に登録した値を返す。
+     * @return String OUTPUT 句
+     */
+    private static String buildOutputClause() {
+        StringBuilder sqlSb = new StringBuilder();
+        sqlSb.append(" OUTPUT ");
+        sqlSb.append("  INSERTED.AGRMNT_NO ");                                                  // 不成約No
+        sqlSb.append("  ,INSERTED.COMPE_ATER_CMPNY1 ");                                         // 競合他社1
+        sqlSb.append("  ,INSERTED.COMPE_ATER_CMPNY1_PRDCT ");                                   // 競合他社1商品
+        sqlSb.append("  ,INSERTED.MEMO ");                                                      // その他メモ
+        sqlSb.append(dateColumn("INSERTED.ENTRY_DT", "yyyy/MM/dd HH:mm", "ENTRY_DT"));          // 登録日時
+        sqlSb.append(dateColumn("INSERTED.UPDATE_DT", "yyyy/MM/dd HH:mm", "UPDATE_DT"));        // 更新日時
+        sqlSb.append("  ,INSERTED.ACT_SUBJECT ");                                               // 活動件名
+        sqlSb.append("  ,INSERTED.HOUSEHOLD_ID ");                                              // 関連顧客ＩＤ
+        sqlSb.append("  ,INSERTED.TEL_NG ");                                                    // 連絡が取れない・面談ができない
+        sqlSb.append("  ,INSERTED.CNFDNC_NG ");                                                 // その他
+        sqlSb.append("  ,INSERTED.FRM_ACQUAINTANCE_APPS ");                                     // 他募集人もしくは通販より契約
+        sqlSb.append("  ,INSERTED.UNDERTAKE_NG ");                                              // 引受が不可能である
+        sqlSb.append("  ,INSERTED.COMPE_ATER_CMPNY2 ");                                         // 競合他社2
+        sqlSb.append("  ,INSERTED.COMPE_ATER_CMPNY2_PRDCT ");                                   // 競合他社2商品
+        sqlSb.append("  ,INSERTED.COMPE_ATER_CMPNY3 ");                                         // 競合他社3
+        sqlSb.append("  ,INSERTED.COMPE_ATER_CMPNY3_PRDCT ");                                   // 競合他社3商品
+        sqlSb.append("  ,INSERTED.ENTRY_PG_ID ");                                               // 登録プログラムID
+        sqlSb.append("  ,INSERTED.ENTRY_BY ");                                                  // 登録者ID
+        sqlSb.append("  ,INSERTED.UPDATE_PG_ID ");                                              // 更新プログラムID
+        sqlSb.append("  ,INSERTED.UPDATE_BY ");                                                 // 更新者ID
+        return sqlSb.toString();
+    }
+
+    /**
+     * 不成約情報を登録するSQL分を作成。
+     * @param isReturning 登録した行を OUTPUT 句で返すかどうか
+     * @return String 登録用SQL
+     */
+    private static String buildInsertSql(boolean isReturning) {
+        StringBuilder sqlSb = new StringBuilder();
+        /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
+        //sqlSb.append("insert into ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_EXT (");
+        sqlSb.append("insert into ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT (");
+        /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD End */
+        sqlSb.append("  SFDC_ID");                                                 // 成約・不成約主キー
+        sqlSb.append("  ,AGRMNT_NO");                                              // 不成約No
+        sqlSb.append("  ,ACT_SFDC_ID");                                            // 活動情報のID
+        sqlSb.append("  ,AGRMNT_NAGRMNT");                                         // 成約/不成約
+        sqlSb.append("  ,ACT_SUBJECT");                                            // 活動件名
+        sqlSb.append("  ,HOUSEHOLD_ID");                                           // 関連顧客ＩＤ
+        sqlSb.append("  ,TEL_NG");                                                 // 連絡が取れない・面談ができない
+        sqlSb.append("  ,CNFDNC_NG");                                              // その他
+        sqlSb.append("  ,FRM_ACQUAINTANCE_APPS");                                  // 他募集人もしくは通販より契約
+        sqlSb.append("  ,UNDERTAKE_NG");                                           // 引受が不可能である
+        sqlSb.append("  ,MEMO");                                                   // その他メモ
+        sqlSb.append("  ,COMPE_ATER_CMPNY1");                                      // 競合他社1
+        sqlSb.append("  ,COMPE_ATER_CMPNY1_PRDCT");                                // 競合他社1商品
+        sqlSb.append("  ,COMPE_ATER_CMPNY2");                                      // 競合他社2
+        sqlSb.append("  ,COMPE_ATER_CMPNY2_PRDCT");                                // 競合他社2商品
+        sqlSb.append("  ,COMPE_ATER_CMPNY3");                                      // 競合他社3
+        sqlSb.append("  ,COMPE_ATER_CMPNY3_PRDCT");                                // 競合他社3商品
+        sqlSb.append("  ,DEL_FLG");                                                // 削除フラグ
+        sqlSb.append("  ,ENTRY_PG_ID");                                            // 登録プログラムID
+        sqlSb.append("  ,ENTRY_DT");                                               // 登録日時
+        sqlSb.append("  ,ENTRY_BY");                                               // 登録者ID
+        sqlSb.append("  ,UPDATE_PG_ID");                                           // 更新プログラムID
+        sqlSb.append("  ,UPDATE_DT");                                              // 更新日時
+        sqlSb.append("  ,UPDATE_BY");                                              // 更新者ID
+        sqlSb.append("  )");
+        if (isReturning) {
+            sqlSb.append(OUTPUT_CLAUSE);
         }
-        sqlSb.append(" order by AGR.ENTRY_DT");
+        sqlSb.append(" values (");
+        sqlSb.append("  'EXT_AGR_' + CAST(NEXT VALUE FOR " + Constant.SEQ_SCHEMA + ".SEQ_MST_CUS_AGRMNT_ID_EXT AS VARCHAR)");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,'不成約'");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,?");
+        sqlSb.append("  ,'FALSE'");
+        sqlSb.append("  ,'CUSEXT', GETDATE(), ?");
+        sqlSb.append("  ,'CUSEXT', GETDATE(), ?");
+        sqlSb.append("  )");
+
+        return sqlSb.toString();
+    }
+
+    /**
+     * 不成約情報を更新するSQL分を作成。更新した行は OUTPUT 句で返す。
+     * @param checkUpdateDt 更新日時による排他確認の有無。true の場合は15番目のパラメータに読込時の更新日時を設定する
+     * @return String 更新用SQL
+     */
+    private static String buildUpdateSql(boolean checkUpdateDt) {
+        StringBuilder sqlSb = new StringBuilder();
+        /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
+        //sqlSb.append("update ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_EXT set ");
+        sqlSb.append("update ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT set ");
+        /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD End */
+        sqlSb.append("  ACT_SUBJECT = ?");                                             // 活動件名
+        sqlSb.append("  ,TEL_NG = ?");                                                 // 連絡が取れない・面談ができない
+        sqlSb.append("  ,CNFDNC_NG = ?");                                              // その他
+        sqlSb.append("  ,FRM_ACQUAINTANCE_APPS = ?");                                  // 他募集人もしくは通販より契約
+        sqlSb.append("  ,UNDERTAKE_NG = ?");                                           // 引受が不可能である
+        sqlSb.append("  ,MEMO = ?");                                                   // その他メモ
+        sqlSb.append("  ,COMPE_ATER_CMPNY1 = ?");                                      // 競合他社1
+        sqlSb.append("  ,COMPE_ATER_CMPNY1_PRDCT = ?");                                // 競合他社1商品
+        sqlSb.append("  ,COMPE_ATER_CMPNY2 = ?");                                      // 競合他社2
+        sqlSb.append("  ,COMPE_ATER_CMPNY2_PRDCT = ?");                                // 競合他社2商品
+        sqlSb.append("  ,COMPE_ATER_CMPNY3 = ?");                                      // 競合他社3
+        sqlSb.append("  ,COMPE_ATER_CMPNY3_PRDCT = ?");                                // 競合他社3商品
+        sqlSb.append("  ,UPDATE_PG_ID = 'CUSEXT'");                                    // 更新プログラムID
+        // 更新日時は楽観排他の版として使うため、同じ時刻に更新された場合でも必ず前回より進める
+        sqlSb.append("  ,UPDATE_DT = CASE WHEN GETDATE() > UPDATE_DT THEN GETDATE() ELSE DATEADD(millisecond, 3, UPDATE_DT) END"); // 更新日時
+        sqlSb.append("  ,UPDATE_BY = ? ");                                             // 更新者ID
+        sqlSb.append(OUTPUT_CLAUSE);
+        sqlSb.append(" where ");
+        sqlSb.append("  AGRMNT_NO = ?");         // 不成約No
+        if (checkUpdateDt) {
+            // UPDATE_DT は DATETIME（1/300秒単位）。Timestamp は datetime2 として送られ、互換性レベル130以上では
+            // .003/.007 秒などの値が一致しなくなるため、DATETIME に変換してから比較する
+            sqlSb.append("  AND UPDATE_DT = CAST(? AS DATETIME)"); // 読込時の更新日時
+        }
+
+        return sqlSb.toString();
+    }
+
+    /**
+     * 不成約情報の更新日時を取得するSQL分を作成。
+     * @return String 更新日時取得用SQL
+     */
+    private static String buildSelectUpdateDtSql() {
+        StringBuilder sqlSb = new StringBuilder();
+        sqlSb.append("select UPDATE_DT from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT");
+        sqlSb.append(" where AGRMNT_NO = ?");
+        return sqlSb.toString();
+    }
+
+    /**
+     * 不成約Noで不成約情報を削除するSQL分を作成。
+     * @return String 削除用SQL
+     */
+    private static String buildDeleteSql() {
+        StringBuilder sqlSb = new StringBuilder();
+        /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
+        //sqlSb.append("delete from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_EXT where AGRMNT_NO = ?");
+        sqlSb.append("delete from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT where AGRMNT_NO = ?");
+        /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD End */
+
+        return sqlSb.toString();
+    }
+
+    /**
+     * 活動情報IDで不成約情報を削除するSQL分を作成。
+     * @return String 削除用SQL
+     */
+    private static String buildDeleteAllSql() {
+        StringBuilder sqlSb = new StringBuilder();
+        /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
+        //sqlSb.append("delete from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_EXT where ACT_SFDC_ID = ?");
+        sqlSb.append("delete from ").append(Constant.TABLE_SCHEMA).append(".").append("T_MST_CUS_LDS_AGRMNT_INFO_DT where ACT_SFDC_ID = ?");
+        /** 2016/05/18 王　新 ADA IAライン対応Phase2　1.1 CUSEXTでのデータ登録先変更 ADD Begin */
 
         return sqlSb.toString();
     }
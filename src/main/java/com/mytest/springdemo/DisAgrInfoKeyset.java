@@ -0,0 +1,42 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.Timestamp;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報キーセット</p>
+ * <p>概要： 不成約情報一覧の逐次取得で、最後に取得した行の (登録日時, 不成約No) を保持する。
+ * 次回の取得に渡すと、その行の続きから取得する。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrInfoKeyset {
+
+    // 登録日時
+    private final Timestamp entryDt;
+    // 不成約No
+    private final String disAgrmntNo;
+
+    /**
+     * コンストラクタ。
+     * @param entryDt 登録日時
+     * @param disAgrmntNo 不成約No
+     */
+    public DisAgrInfoKeyset(Timestamp entryDt, String disAgrmntNo) {
+        this.entryDt = entryDt;
+        this.disAgrmntNo = disAgrmntNo;
+    }
+
+    public Timestamp getEntryDt() {
+        return entryDt;
+    }
+
+    public String getDisAgrmntNo() {
+        return disAgrmntNo;
+    }
+
+    @Override
+    public String toString() {
+        return "DisAgrInfoKeyset[entryDt=" + entryDt + ", disAgrmntNo=" + disAgrmntNo + "]";
+    }
+}
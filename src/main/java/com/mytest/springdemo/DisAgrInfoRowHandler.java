@@ -0,0 +1,21 @@
+package jp.co.alico.cusext.dao;
+
+import jp.co.alico.cusext.vo.DisAgrmntInfoVO;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報行ハンドラ</p>
+ * <p>概要： 不成約情報一覧の逐次取得で、1行ごとに呼び出される。</p>
+ *
+ * @version 1.0.0
+ */
+public interface DisAgrInfoRowHandler {
+
+    /**
+     * 不成約情報を1行処理する。
+     * @param disAgrInfoVO 不成約情報を持つオブジェクト
+     * @return boolean 続けて次の行を取得する場合はtrue、打ち切る場合はfalse
+     * @throws Exception 例外処理
+     */
+    boolean handleRow(DisAgrmntInfoVO disAgrInfoVO) throws Exception;
+}
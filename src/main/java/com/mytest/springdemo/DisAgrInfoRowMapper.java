@@ -0,0 +1,177 @@
+package jp.co.alico.cusext.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import jp.co.alico.cusext.vo.DisAgrmntInfoVO;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： 不成約情報行マッパー</p>
+ * <p>概要： SQL実行結果の1行を列番号で DisAgrmntInfoVO に変換する。
+ * 列名から列番号への解決は SQL文ごとに初回の1回だけ行い、以降は解決済みの列番号で取得するため、
+ * 行ごと・列ごとにドライバで列名を検索するコストが発生しない。
+ * 一覧・詳細（登録・更新の OUTPUT 句を含む）は取得する列が異なるだけで、変換処理は共通とする。</p>
+ * <p>登録日時・更新日時が日時型で返された場合は、一覧は yyyy/MM/dd、詳細は yyyy/MM/dd HH:mm の
+ * 文字列にアプリケーション側で変換する（SQLの FORMAT 関数で変換済みの文字列であればそのまま設定する）。</p>
+ *
+ * @version 1.0.0
+ */
+final class DisAgrInfoRowMapper {
+
+    // 列の識別子（COLUMN_NAMES のインデックス）
+    private static final int AGRMNT_NO = 0;
+    private static final int ACT_SUBJECT = 1;
+    private static final int HOUSEHOLD_ID = 2;
+    private static final int TEL_NG = 3;
+    private static final int FRM_ACQUAINTANCE_APPS = 4;
+    private static final int UNDERTAKE_NG = 5;
+    private static final int CNFDNC_NG = 6;
+    private static final int MEMO = 7;
+    private static final int COMPE_ATER_CMPNY1 = 8;
+    private static final int COMPE_ATER_CMPNY1_PRDCT = 9;
+    private static final int COMPE_ATER_CMPNY2 = 10;
+    private static final int COMPE_ATER_CMPNY2_PRDCT = 11;
+    private static final int COMPE_ATER_CMPNY3 = 12;
+    private static final int COMPE_ATER_CMPNY3_PRDCT = 13;
+    private static final int ENTRY_PG_ID = 14;
+    private static final int ENTRY_DT = 15;
+    private static final int ENTRY_BY = 16;
+    private static final int UPDATE_PG_ID = 17;
+    private static final int UPDATE_DT = 18;
+    private static final int UPDATE_BY = 19;
+
+    // 列名
+    private static final String[] COLUMN_NAMES = {
+        "AGRMNT_NO", "ACT_SUBJECT", "HOUSEHOLD_ID", "TEL_NG", "FRM_ACQUAINTANCE_APPS",
+        "UNDERTAKE_NG", "CNFDNC_NG", "MEMO", "COMPE_ATER_CMPNY1", "COMPE_ATER_CMPNY1_PRDCT",
+        "COMPE_ATER_CMPNY2", "COMPE_ATER_CMPNY2_PRDCT", "COMPE_ATER_CMPNY3", "COMPE_ATER_CMPNY3_PRDCT", "ENTRY_PG_ID",
+        "ENTRY_DT", "ENTRY_BY", "UPDATE_PG_ID", "UPDATE_DT", "UPDATE_BY",
+    };
+
+    // 日時の書式（DateTimeFormatter はスレッドセーフのため共有する）
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
+
+    /** 不成約情報一覧（一覧・複数活動一括・逐次取得） */
+    static final DisAgrInfoRowMapper LIST = new DisAgrInfoRowMapper(DATE_FORMAT, new int[]{
+        AGRMNT_NO, COMPE_ATER_CMPNY1, COMPE_ATER_CMPNY1_PRDCT, MEMO, ENTRY_DT, UPDATE_DT,
+    });
+
+    /** 不成約情報詳細（詳細取得・登録・更新の OUTPUT 句） */
+    static final DisAgrInfoRowMapper DETAIL = new DisAgrInfoRowMapper(DATE_TIME_FORMAT, new int[]{
+        AGRMNT_NO, ACT_SUBJECT, HOUSEHOLD_ID, TEL_NG, FRM_ACQUAINTANCE_APPS,
+        UNDERTAKE_NG, CNFDNC_NG, MEMO, COMPE_ATER_CMPNY1, COMPE_ATER_CMPNY1_PRDCT,
+        COMPE_ATER_CMPNY2, COMPE_ATER_CMPNY2_PRDCT, COMPE_ATER_CMPNY3, COMPE_ATER_CMPNY3_PRDCT, ENTRY_PG_ID,
+        ENTRY_DT, ENTRY_BY, UPDATE_PG_ID, UPDATE_DT, UPDATE_BY,
+    });
+
+    // 日時列の書式
+    private final DateTimeFormatter dateFormat;
+    // 変換対象の列
+    private final int[] columns;
+    // SQL文 → 解決済みの列番号
+    private final ConcurrentMap<String, Binding> bindingsBySql = new ConcurrentHashMap<String, Binding>();
+
+    private DisAgrInfoRowMapper(DateTimeFormatter dateFormat, int[] columns) {
+        this.dateFormat = dateFormat;
+        this.columns = columns;
+    }
+
+    /**
+     * SQL文の実行結果に対する列番号を取得する。SQL文ごとに初回のみ列名から解決する。
+     * @param sql 実行したSQL文
+     * @param rset SQL実行結果
+     * @return Binding 列番号
+     * @throws SQLException 変換対象の列が実行結果にない場合
+     */
+    Binding bind(String sql, ResultSet rset) throws SQLException {
+        Binding binding = bindingsBySql.get(sql);
+        if (binding == null) {
+            ResultSetMetaData metaData = rset.getMetaData();
+            int[] ordinals = new int[columns.length];
+            boolean[] temporal = new boolean[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                ordinals[i] = rset.findColumn(COLUMN_NAMES[columns[i]]);
+                int type = metaData.getColumnType(ordinals[i]);
+                temporal[i] = type == Types.TIMESTAMP || type == Types.DATE;
+            }
+            binding = new Binding(ordinals, temporal);
+            bindingsBySql.putIfAbsent(sql, binding);
+        }
+        return binding;
+    }
+
+    /**
+     * 現在の行を不成約情報に変換する。
+     * @param rset SQL実行結果
+     * @param binding {@link #bind} で取得した列番号
+     * @return DisAgrmntInfoVO 不成約情報を持つオブジェクト
+     * @throws SQLException 例外処理
+     */
+    DisAgrmntInfoVO map(ResultSet rset, Binding binding) throws SQLException {
+        DisAgrmntInfoVO disAgrInfoVO = new DisAgrmntInfoVO();
+        for (int i = 0; i < columns.length; i++) {
+            String value;
+            if (binding.temporal[i]) {
+                Timestamp timestamp = rset.getTimestamp(binding.ordinals[i]);
+                value = timestamp == null ? null : dateFormat.format(timestamp.toLocalDateTime());
+            } else {
+                value = rset.getString(binding.ordinals[i]);
+            }
+            set(disAgrInfoVO, columns[i], value);
+        }
+        return disAgrInfoVO;
+    }
+
+    /**
+     * 列の値を不成約情報に設定する。
+     * @param disAgrInfoVO 不成約情報を持つオブジェクト
+     * @param column 列の識別子
+     * @param value 値
+     */
+    private static void set(DisAgrmntInfoVO disAgrInfoVO, int column, String value) {
+        switch (column) {
+        case AGRMNT_NO: disAgrInfoVO.setDisAgrmntNo(value); break;                          // 不成約No
+        case ACT_SUBJECT: disAgrInfoVO.setActSubject(value); break;                         // 活動件名
+        case HOUSEHOLD_ID: disAgrInfoVO.setHouseholdId(value); break;                       // 関連顧客ＩＤ
+        case TEL_NG: disAgrInfoVO.setTelNg(value); break;                                   // 連絡が取れない・面談ができない
+        case FRM_ACQUAINTANCE_APPS: disAgrInfoVO.setFrmAcquaintanceApps(value); break;      // 他募集人もしくは通販より契約
+        case UNDERTAKE_NG: disAgrInfoVO.setUndertakeNg(value); break;                       // 引受が不可能である
+        case CNFDNC_NG: disAgrInfoVO.setCnfdncNg(value); break;                             // 信用がない
+        case MEMO: disAgrInfoVO.setMemo(value); break;                                      // その他メモ
+        case COMPE_ATER_CMPNY1: disAgrInfoVO.setCompeAterCmpny1(value); break;              // 競合他社1
+        case COMPE_ATER_CMPNY1_PRDCT: disAgrInfoVO.setCompeAterCmpny1Prdct(value); break;   // 競合他社1商品
+        case COMPE_ATER_CMPNY2: disAgrInfoVO.setCompeAterCmpny2(value); break;              // 競合他社2
+        case COMPE_ATER_CMPNY2_PRDCT: disAgrInfoVO.setCompeAterCmpny2Prdct(value); break;   // 競合他社2商品
+        case COMPE_ATER_CMPNY3: disAgrInfoVO.setCompeAterCmpny3(value); break;              // 競合他社3
+        case COMPE_ATER_CMPNY3_PRDCT: disAgrInfoVO.setCompeAterCmpny3Prdct(value); break;   // 競合他社3商品
+        case ENTRY_PG_ID: disAgrInfoVO.setEntryPgId(value); break;                          // 登録プログラムID
+        case ENTRY_DT: disAgrInfoVO.setEntryDt(value); break;                               // 登録日時
+        case ENTRY_BY: disAgrInfoVO.setEntryBy(value); break;                               // 登録者ID
+        case UPDATE_PG_ID: disAgrInfoVO.setUpdatePgId(value); break;                        // 更新プログラムID
+        case UPDATE_DT: disAgrInfoVO.setUpdateDt(value); break;                             // 更新日時
+        case UPDATE_BY: disAgrInfoVO.setUpdateBy(value); break;                             // 更新者ID
+        default: throw new IllegalArgumentException("unknown column: " + column);
+        }
+    }
+
+    /**
+     * SQL文ごとに解決した列番号と、日時型で返される列かどうか。
+     */
+    static final class Binding {
+        final int[] ordinals;
+        final boolean[] temporal;
+
+        Binding(int[] ordinals, boolean[] temporal) {
+            this.ordinals = ordinals;
+            this.temporal = temporal;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package jp.co.alico.cusext.dao;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： SQLトレース・スロークエリログ</p>
+ * <p>概要： DAOが実行するSQL文のログ出力を制御する。</p>
+ * <ul>
+ * <li>トレース：SQL文のログ出力（LoggerUtil.printSql）を、サンプリング率の割合の実行に限って行う。
+ * 既定は無効で、無効時の判定はフィールド参照1回のみ。</li>
+ * <li>スロークエリログ：実行時間がしきい値以上のSQL文について、処理名・SQL文・パラメータ（マスク済み）・件数・実行時間を出力する。
+ * 出力は専用スレッドで行い、呼出し元のスレッドでは上限付きのキューへ積むだけとする（満杯の場合は破棄して件数を数える）。
+ * 出力先は java.util.logging のロガー {@value #SLOW_LOGGER_NAME}（WARNING）。</li>
+ * </ul>
+ * <p>設定はシステムプロパティ cusext.sqlTrace.* で変更できる（{@link Config}）。</p>
+ *
+ * @version 1.0.0
+ */
+public class DisAgrSqlTracer {
+
+    /** スロークエリログの出力先ロガー名 */
+    public static final String SLOW_LOGGER_NAME = "jp.co.alico.cusext.dao.slowSql";
+
+    // スロークエリログに出力するパラメータの最大件数（IN句など）
+    private static final int MAX_LOGGED_PARAMS = 10;
+
+    // DAOが共有するトレース（設定はシステムプロパティから読込む）
+    private static final DisAgrSqlTracer SHARED = new DisAgrSqlTracer(new Config());
+
+    // トレースするか（サンプリング率が0より大きい場合）
+    private final boolean traceEnabled;
+    // サンプリング率（0～1）
+    private final double sampleRate;
+    // スロークエリのしきい値（ナノ秒）。0以下の場合はスロークエリログを出力しない
+    private final long slowThresholdNanos;
+    // パラメータをマスクするか
+    private final boolean redactParams;
+    // 出力待ちのスロークエリ
+    private final BlockingQueue<SlowQuery> queue;
+    // 出力先
+    private final Logger slowLogger = Logger.getLogger(SLOW_LOGGER_NAME);
+    // 出力スレッド（最初のスロークエリで開始する）
+    private volatile Thread writer;
+
+    // 統計
+    private final LongAdder slowCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * コンストラクタ。
+     * @param config 設定
+     */
+    public DisAgrSqlTracer(Config config) {
+        this.sampleRate = Math.min(1.0, Math.max(0.0, config.sampleRate));
+        this.traceEnabled = sampleRate > 0.0;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.slowMillis);
+        this.redactParams = config.redactParams;
+        this.queue = new ArrayBlockingQueue<SlowQuery>(Math.max(1, config.queueSize));
+    }
+
+    /**
+     * DAOが共有するトレースを取得する。
+     * @return DisAgrSqlTracer 共有のトレース
+     */
+    public static DisAgrSqlTracer shared() {
+        return SHARED;
+    }
+
+    /**
+     * 今回のSQL文をトレース（ログ出力）するかを判定する。
+     * @return boolean トレースする場合はtrue
+     */
+    public boolean isTraced() {
+        return traceEnabled && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * 実行時間がスロークエリのしきい値以上かを判定する。
+     * パラメータの配列はこの判定が true の場合のみ作成すること。
+     * @param elapsedNanos SQL文の実行時間（ナノ秒）。実行していない場合は負数
+     * @return boolean スロークエリの場合はtrue
+     */
+    public boolean isSlow(long elapsedNanos) {
+        return slowThresholdNanos > 0 && elapsedNanos >= slowThresholdNanos;
+    }
+
+    /**
+     * スロークエリログの出力を依頼する。ログの組立て・出力は出力スレッドで行う。
+     * @param operation 処理名
+     * @param strSql 実行したSQL文
+     * @param params バインドしたパラメータ（出力時にマスクする）
+     * @param rowCount 取得・更新した件数
+     * @param elapsedNanos SQL文の実行時間（ナノ秒）
+     * @param succeeded 正常終了したか
+     */
+    public void slowQuery(String operation, String strSql, Object[] params, int rowCount, long elapsedNanos, boolean succeeded) {
+        slowCount.increment();
+        ensureWriter();
+        if (!queue.offer(new SlowQuery(System.currentTimeMillis(), operation, strSql, params, rowCount, elapsedNanos, succeeded))) {
+            droppedCount.increment();
+        }
+    }
+
+    /**
+     * 監視用の統計値を取得する。
+     * @return Map 統計名 → 値
+     */
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<String, Number>();
+        metrics.put("sampleRate", Double.valueOf(sampleRate));
+        metrics.put("slowThresholdMillis", Long.valueOf(TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos)));
+        metrics.put("slowQueries", Long.valueOf(slowCount.sum()));
+        metrics.put("slowDropped", Long.valueOf(droppedCount.sum()));
+        metrics.put("slowQueued", Integer.valueOf(queue.size()));
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "DisAgrSqlTracer" + getMetrics();
+    }
+
+    /**
+     * 出力スレッドを開始する（未開始の場合のみ）。
+     */
+    private void ensureWriter() {
+        if (writer != null) {
+            return;
+        }
+        synchronized (this) {
+            if (writer == null) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeLoop();
+                    }
+                }, "cusext-slow-sql");
+                thread.setDaemon(true);
+                thread.start();
+                writer = thread;
+            }
+        }
+    }
+
+    /**
+     * キューのスロークエリを順に出力する。
+     */
+    private void writeLoop() {
+        while (true) {
+            SlowQuery slowQuery;
+            try {
+                slowQuery = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                slowLogger.log(Level.WARNING, format(slowQuery));
+            } catch (RuntimeException e) {
+                // ログ出力の失敗で出力スレッドを止めない
+            }
+        }
+    }
+
+    /**
+     * スロークエリログの1行を組み立てる。
+     * @param q スロークエリ
+     * @return String ログ
+     */
+    String format(SlowQuery q) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("slow sql ").append(q.operation)
+            .append(" elapsed=").append(TimeUnit.NANOSECONDS.toMicros(q.elapsedNanos) / 1000.0).append("ms")
+            .append(" rows=").append(q.rowCount)
+            .append(q.succeeded ? "" : " failed")
+            .append(" at=").append(new Date(q.timestamp))
+            .append(" params=[");
+        if (q.params != null) {
+            int logged = Math.min(q.params.length, MAX_LOGGED_PARAMS);
+            for (int i = 0; i < logged; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(redact(q.params[i]));
+            }
+            if (q.params.length > logged) {
+                sb.append(", ... (").append(q.params.length - logged).append(" more)");
+            }
+        }
+        sb.append("] sql=").append(q.strSql.replaceAll("\\s+", " ").trim());
+        return sb.toString();
+    }
+
+    /**
+     * パラメータをマスクする。文字列は先頭2文字（5文字以上の場合のみ）と文字数のみ、日時・数値はそのまま、その他は型名のみ出力する。
+     * @param param パラメータ
+     * @return String 出力する値
+     */
+    String redact(Object param) {
+        if (param == null) {
+            return "null";
+        }
+        if (param instanceof String) {
+            String s = (String) param;
+            if (!redactParams) {
+                return "'" + s + "'";
+            }
+            // 短い値は先頭2文字で値が推測できるため、文字数のみ出力する
+            return "'" + (s.length() > 4 ? s.substring(0, 2) : "") + "***'(" + s.length() + ")";
+        }
+        if (param instanceof Number || param instanceof Date || param instanceof Boolean) {
+            return String.valueOf(param);
+        }
+        return "<" + param.getClass().getSimpleName() + ">";
+    }
+
+    /**
+     * SQLトレースの設定。既定値はシステムプロパティ cusext.sqlTrace.* で変更できる。
+     */
+    public static class Config {
+        /** トレースするSQL文の割合（0～1）。0の場合はトレースしない */
+        public double sampleRate = Double.parseDouble(System.getProperty("cusext.sqlTrace.sampleRate", "0"));
+        /** スロークエリのしきい値（ミリ秒）。0以下の場合はスロークエリログを出力しない */
+        public long slowMillis = Long.getLong("cusext.sqlTrace.slowMillis", 1000L).longValue();
+        /** 出力待ちにできるスロークエリの上限 */
+        public int queueSize = Integer.getInteger("cusext.sqlTrace.queueSize", 1000).intValue();
+        /** パラメータをマスクするか。開発環境で値を確認する場合のみ false にする */
+        public boolean redactParams = !"false".equals(System.getProperty("cusext.sqlTrace.redactParams"));
+    }
+
+    /**
+     * 出力待ちのスロークエリ。
+     */
+    static final class SlowQuery {
+        final long timestamp;
+        final String operation;
+        final String strSql;
+        final Object[] params;
+        final int rowCount;
+        final long elapsedNanos;
+        final boolean succeeded;
+
+        SlowQuery(long timestamp, String operation, String strSql, Object[] params, int rowCount, long elapsedNanos,
+                boolean succeeded) {
+            this.timestamp = timestamp;
+            this.operation = operation;
+            this.strSql = strSql;
+            this.params = params;
+            this.rowCount = rowCount;
+            this.elapsedNanos = elapsedNanos;
+            this.succeeded = succeeded;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package jp.co.alico.cusext.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>システム名： CUSEXT</p>
+ * <p>業務名： PreparedStatementキャッシュ付きコネクション</p>
+ * <p>概要： 物理コネクション単位でPreparedStatementをSQL文ごとにキャッシュする。
+ * DAOが{@code prepareStatement(String)}で取得した文を{@code close()}しても物理的には閉じず、
+ * 同じSQL文の次回実行時に再利用するため、ドライバでの再解析・再プラン作成が発生しない。
+ * キャッシュは最大件数を超えると最も長く使われていない文から閉じる。
+ * コネクションを閉じるとキャッシュ中の文もすべて閉じる。</p>
+ * <p>コネクションプールが保持する物理コネクションに対して適用すること。
+ * 1リクエストごとに破棄されるコネクションに適用しても効果はない。</p>
+ *
+ * @version 1.0.0
+ */
+public final class StatementCachingConnection implements InvocationHandler {
+
+    // 物理コネクション
+    private final Connection physical;
+    // SQL文 → キャッシュ済みの文（アクセス順）
+    private final LinkedHashMap<String, CachedStatement> cache;
+    // キャッシュ統計
+    private long hits;
+    private long misses;
+
+    private StatementCachingConnection(Connection physical, final int maxStatements) {
+        this.physical = physical;
+        this.cache = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= maxStatements) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 物理コネクションをキャッシュ付きコネクションで包む。
+     * @param physical 物理コネクション
+     * @param maxStatements キャッシュする文の最大件数
+     * @return Connection キャッシュ付きコネクション
+     */
+    public static Connection wrap(Connection physical, int maxStatements) {
+        return (Connection) Proxy.newProxyInstance(StatementCachingConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new StatementCachingConnection(physical, maxStatements));
+    }
+
+    /**
+     * キャッシュ付きコネクションであればキャッシュのヒット数・ミス数を返す。
+     * @param conn コネクション
+     * @return long[] {ヒット数, ミス数}。キャッシュ付きでない場合はnull
+     */
+    public static long[] getStats(Connection conn) {
+        if (!Proxy.isProxyClass(conn.getClass())) {
+            return null;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(conn);
+        if (!(handler instanceof StatementCachingConnection)) {
+            return null;
+        }
+        StatementCachingConnection caching = (StatementCachingConnection) handler;
+        synchronized (caching) {
+            return new long[]{caching.hits, caching.misses};
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if ("prepareStatement".equals(name) && args != null && args.length == 1) {
+            return prepare((String) args[0]);
+        }
+        if ("close".equals(name) && (args == null || args.length == 0)) {
+            closeAll();
+        }
+        if ("unwrap".equals(name) && Connection.class.equals(args[0])) {
+            return physical;
+        }
+        try {
+            return method.invoke(physical, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * キャッシュから文を取り出す。未キャッシュ、または同じ文が使用中の場合は新しく作成する。
+     * @param sql SQL文
+     * @return PreparedStatement 論理的な文
+     * @throws SQLException 例外処理
+     */
+    private synchronized PreparedStatement prepare(String sql) throws SQLException {
+        CachedStatement cached = cache.get(sql);
+        if (cached != null && !cached.inUse && !cached.statement.isClosed()) {
+            hits++;
+            cached.inUse = true;
+            return cached.logical;
+        }
+        misses++;
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (cached != null && cached.inUse) {
+            // 同じSQL文を同時に2つ使う場合、2つ目はキャッシュしない
+            return statement;
+        }
+        cached = new CachedStatement(statement);
+        cached.inUse = true;
+        cache.put(sql, cached);
+        return cached.logical;
+    }
+
+    /**
+     * キャッシュ中の文をすべて閉じる。
+     */
+    private synchronized void closeAll() {
+        List<CachedStatement> statements = new ArrayList<CachedStatement>(cache.values());
+        cache.clear();
+        for (Iterator<CachedStatement> it = statements.iterator(); it.hasNext();) {
+            it.next().closeQuietly();
+        }
+    }
+
+    /**
+     * キャッシュされた物理的な文と、DAOへ渡す論理的な文の組。
+     */
+    private final class CachedStatement implements InvocationHandler {
+        final PreparedStatement statement;
+        final PreparedStatement logical;
+        boolean inUse;
+        boolean evicted;
+        // 貸出中に設定された最大行数・フェッチサイズ・タイムアウトと追加されたバッチ（返却時に既定値へ戻す）
+        boolean maxRowsSet;
+        boolean fetchSizeSet;
+        boolean queryTimeoutSet;
+        boolean batchAdded;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.logical = (PreparedStatement) Proxy.newProxyInstance(StatementCachingConnection.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                release();
+                return null;
+            }
+            if ("setMaxRows".equals(name)) {
+                maxRowsSet = true;
+            } else if ("setFetchSize".equals(name)) {
+                fetchSizeSet = true;
+            } else if ("setQueryTimeout".equals(name)) {
+                queryTimeoutSet = true;
+            } else if ("addBatch".equals(name)) {
+                batchAdded = true;
+            }
+            if ("isClosed".equals(name)) {
+                synchronized (StatementCachingConnection.this) {
+                    return Boolean.valueOf(!inUse || statement.isClosed());
+                }
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * DAOからのclose。キャッシュ中であればパラメータを消去し、貸出中に文ごとの設定（最大行数・フェッチサイズ・
+         * タイムアウト）が変更されていれば既定値に戻して返却する。addBatch された文はバッチも消去する。
+         * 追い出し済みであれば閉じる。
+         * 設定を戻さないと、次に同じSQL文を使う呼び出しへ前回の最大行数などが持ち越される。
+         * バッチを消去しないと、例外で executeBatch まで到達しなかった行が次の executeBatch で登録される。
+         * 設定の変更はドライバによってはDBとの通信を伴うため、変更されていない設定は戻さない。
+         * 戻せなかった文は閉じ、次回の取り出し時に作り直させる。
+         */
+        private void release() throws SQLException {
+            synchronized (StatementCachingConnection.this) {
+                if (!inUse) {
+                    return;
+                }
+                if (evicted) {
+                    inUse = false;
+                    statement.close();
+                    return;
+                }
+            }
+            boolean reset = false;
+            try {
+                statement.clearParameters();
+                statement.clearWarnings();
+                if (batchAdded) {
+                    statement.clearBatch();
+                    batchAdded = false;
+                }
+                if (maxRowsSet) {
+                    statement.setMaxRows(0);
+                    maxRowsSet = false;
+                }
+                if (fetchSizeSet) {
+                    statement.setFetchSize(0);
+                    fetchSizeSet = false;
+                }
+                if (queryTimeoutSet) {
+                    statement.setQueryTimeout(0);
+                    queryTimeoutSet = false;
+                }
+                reset = true;
+            } finally {
+                synchronized (StatementCachingConnection.this) {
+                    inUse = false;
+                    if (!reset || evicted) {
+                        closeQuietly();
+                    }
+                }
+            }
+        }
+
+        /**
+         * キャッシュから追い出す。使用中の場合は返却時に閉じる。
+         */
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // 閉じる際の例外は無視する
+            }
+        }
+    }
+}
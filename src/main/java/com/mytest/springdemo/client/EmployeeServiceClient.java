@@ -0,0 +1,313 @@
+package com.mytest.springdemo.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Client for the employee service at {@code microservices.employee.url}.
+ * <p>
+ * Requests go over a pooled set of keep-alive connections, so steady traffic
+ * does not pay a TCP handshake per call. Lookups are answered from a local
+ * cache with a fixed TTL. Concurrent lookups of the same id share one request,
+ * and {@link #getEmployees(Collection)} fetches every uncached id with as few
+ * batch requests as {@code batchSize} allows.
+ * <p>
+ * Unknown ids resolve to {@code null} and are not cached. Returned employees
+ * are copies, so callers may modify them.
+ */
+@Component
+public class EmployeeServiceClient implements DisposableBean {
+
+    private final String baseUrl;
+    private final long cacheTtlNanos;
+    private final int cacheMaxSize;
+    private final int batchSize;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+
+    private final ConcurrentHashMap<Integer, CachedEmployee> cache = new ConcurrentHashMap<Integer, CachedEmployee>();
+    private final ConcurrentHashMap<Integer, CompletableFuture<Employee>> inFlight =
+            new ConcurrentHashMap<Integer, CompletableFuture<Employee>>();
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    @Autowired
+    public EmployeeServiceClient(EmployeeServiceProperties properties) {
+        if (properties.getUrl() == null) {
+            throw new IllegalArgumentException("microservices.employee.url is not set");
+        }
+        this.baseUrl = properties.getUrl().endsWith("/")
+                ? properties.getUrl().substring(0, properties.getUrl().length() - 1) : properties.getUrl();
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(properties.getCacheTtlMillis());
+        this.cacheMaxSize = properties.getCacheMaxSize();
+        this.batchSize = Math.max(1, properties.getBatchSize());
+
+        // every request targets the same host, so the whole pool is available to that route
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConnections());
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeoutMillis())
+                .setSocketTimeout(properties.getReadTimeoutMillis())
+                .setConnectionRequestTimeout(properties.getConnectionRequestTimeoutMillis())
+                .build();
+        httpClient = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getIdleConnectionTimeoutSeconds(), TimeUnit.SECONDS)
+                .build();
+        restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    /**
+     * Returns the employee with the given id, or {@code null} if the service
+     * does not know it.
+     */
+    public Employee getEmployee(int id) {
+        Integer key = Integer.valueOf(id);
+        Employee cached = lookup(key);
+        if (cached != null) {
+            return copy(cached);
+        }
+        CompletableFuture<Employee> mine = new CompletableFuture<Employee>();
+        CompletableFuture<Employee> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return copy(join(existing));
+        }
+        try {
+            requests.increment();
+            Employee employee = found(restTemplate.getForObject(baseUrl + "/employee/{id}", Employee.class, key));
+            store(key, employee);
+            mine.complete(employee);
+            return copy(employee);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Returns the known employees among {@code ids}, keyed by id in the order
+     * given. Cached ids are answered locally, ids another caller is already
+     * fetching are waited for, and the rest go out in batch requests.
+     */
+    public Map<Integer, Employee> getEmployees(Collection<Integer> ids) {
+        Map<Integer, Employee> result = new LinkedHashMap<Integer, Employee>();
+        Map<Integer, CompletableFuture<Employee>> owned = new LinkedHashMap<Integer, CompletableFuture<Employee>>();
+        Map<Integer, CompletableFuture<Employee>> waiting = new LinkedHashMap<Integer, CompletableFuture<Employee>>();
+        for (Integer id : ids) {
+            if (result.containsKey(id) || owned.containsKey(id) || waiting.containsKey(id)) {
+                continue;
+            }
+            Employee cached = lookup(id);
+            if (cached != null) {
+                result.put(id, copy(cached));
+                continue;
+            }
+            CompletableFuture<Employee> mine = new CompletableFuture<Employee>();
+            CompletableFuture<Employee> existing = inFlight.putIfAbsent(id, mine);
+            if (existing != null) {
+                coalesced.increment();
+                waiting.put(id, existing);
+            } else {
+                owned.put(id, mine);
+            }
+            // keep the caller's order; filled in below
+            result.put(id, null);
+        }
+
+        try {
+            fetchBatches(owned);
+        } catch (RuntimeException e) {
+            // callers waiting on ids this batch owned must not block forever
+            for (CompletableFuture<Employee> future : owned.values()) {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (Map.Entry<Integer, CompletableFuture<Employee>> entry : owned.entrySet()) {
+                inFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<Integer, CompletableFuture<Employee>> entry : owned.entrySet()) {
+            result.put(entry.getKey(), copy(join(entry.getValue())));
+        }
+        for (Map.Entry<Integer, CompletableFuture<Employee>> entry : waiting.entrySet()) {
+            result.put(entry.getKey(), copy(join(entry.getValue())));
+        }
+        for (Iterator<Employee> it = result.values().iterator(); it.hasNext();) {
+            if (it.next() == null) {
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the cached entry for {@code id}, e.g. after the caller changed it.
+     */
+    public void invalidate(int id) {
+        cache.remove(Integer.valueOf(id));
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    /**
+     * Cache, request and connection pool counters for monitoring.
+     */
+    public Map<String, Number> getMetrics() {
+        PoolStats pool = connectionManager.getTotalStats();
+        Map<String, Number> metrics = new LinkedHashMap<String, Number>();
+        metrics.put("cacheSize", Integer.valueOf(cache.size()));
+        metrics.put("cacheHits", Long.valueOf(cacheHits.sum()));
+        metrics.put("cacheMisses", Long.valueOf(cacheMisses.sum()));
+        metrics.put("coalesced", Long.valueOf(coalesced.sum()));
+        metrics.put("requests", Long.valueOf(requests.sum()));
+        metrics.put("connectionsLeased", Integer.valueOf(pool.getLeased()));
+        metrics.put("connectionsAvailable", Integer.valueOf(pool.getAvailable()));
+        metrics.put("connectionsPending", Integer.valueOf(pool.getPending()));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        httpClient.close();
+    }
+
+    private void fetchBatches(Map<Integer, CompletableFuture<Employee>> owned) {
+        List<Integer> pending = new ArrayList<Integer>(owned.keySet());
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<Integer> chunk = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            StringBuilder idList = new StringBuilder();
+            for (Integer id : chunk) {
+                if (idList.length() > 0) {
+                    idList.append(',');
+                }
+                idList.append(id);
+            }
+            requests.increment();
+            Employee[] employees = restTemplate.getForObject(baseUrl + "/employee/list?ids={ids}", Employee[].class,
+                    idList.toString());
+
+            Map<Integer, Employee> byId = new LinkedHashMap<Integer, Employee>();
+            if (employees != null) {
+                for (Employee employee : employees) {
+                    if (found(employee) != null) {
+                        byId.put(Integer.valueOf(employee.getEmpId()), employee);
+                    }
+                }
+            }
+            for (Integer id : chunk) {
+                Employee employee = byId.get(id);
+                store(id, employee);
+                owned.get(id).complete(employee);
+            }
+        }
+    }
+
+    private Employee lookup(Integer id) {
+        CachedEmployee cached = cache.get(id);
+        if (cached != null) {
+            if (System.nanoTime() - cached.expiresAt < 0) {
+                cacheHits.increment();
+                return cached.employee;
+            }
+            cache.remove(id, cached);
+        }
+        cacheMisses.increment();
+        return null;
+    }
+
+    private void store(Integer id, Employee employee) {
+        if (employee == null || cacheTtlNanos <= 0) {
+            return;
+        }
+        if (cache.size() >= cacheMaxSize) {
+            purgeExpired();
+            if (cache.size() >= cacheMaxSize) {
+                return;
+            }
+        }
+        cache.put(id, new CachedEmployee(employee, System.nanoTime() + cacheTtlNanos));
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        for (Iterator<CachedEmployee> it = cache.values().iterator(); it.hasNext();) {
+            if (now - it.next().expiresAt >= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The employee service answers unknown ids with an empty employee.
+     */
+    private static Employee found(Employee employee) {
+        return employee == null || employee.getEmpId() == null ? null : employee;
+    }
+
+    private static Employee join(CompletableFuture<Employee> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Employee copy(Employee employee) {
+        if (employee == null) {
+            return null;
+        }
+        return new Employee(employee.getEmpId(), employee.getName(), employee.getDesignation(), employee.getSalary());
+    }
+
+    private static final class CachedEmployee {
+        final Employee employee;
+        final long expiresAt;
+
+        CachedEmployee(Employee employee, long expiresAt) {
+            this.employee = employee;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
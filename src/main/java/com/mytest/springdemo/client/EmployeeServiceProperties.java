@@ -0,0 +1,101 @@
+package com.mytest.springdemo.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for {@link EmployeeServiceClient}, bound from
+ * {@code microservices.employee.*} in application.yml.
+ */
+@Component
+@ConfigurationProperties(prefix = "microservices.employee")
+public class EmployeeServiceProperties {
+
+    private String url;
+
+    // connection pool and timeouts
+    private int maxConnections = 50;
+    private int connectTimeoutMillis = 1000;
+    private int readTimeoutMillis = 3000;
+    private int connectionRequestTimeoutMillis = 1000;
+    private int idleConnectionTimeoutSeconds = 30;
+
+    // local response cache; a ttl of 0 disables it
+    private long cacheTtlMillis = 30000;
+    private int cacheMaxSize = 10000;
+
+    // ids per batch lookup request
+    private int batchSize = 100;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public int getConnectionRequestTimeoutMillis() {
+        return connectionRequestTimeoutMillis;
+    }
+
+    public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+        this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+    }
+
+    public int getIdleConnectionTimeoutSeconds() {
+        return idleConnectionTimeoutSeconds;
+    }
+
+    public void setIdleConnectionTimeoutSeconds(int idleConnectionTimeoutSeconds) {
+        this.idleConnectionTimeoutSeconds = idleConnectionTimeoutSeconds;
+    }
+
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
+    public void setCacheTtlMillis(long cacheTtlMillis) {
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(int cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
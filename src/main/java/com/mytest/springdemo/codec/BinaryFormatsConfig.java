@@ -0,0 +1,23 @@
+package com.mytest.springdemo.codec;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Adds CBOR and Smile to the message converters, so request bodies and the
+ * other Jackson-rendered responses negotiate them as well. The converters
+ * are appended after the defaults: a client that accepts anything still gets
+ * JSON.
+ */
+@Configuration
+public class BinaryFormatsConfig extends WebMvcConfigurerAdapter {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2CborHttpMessageConverter());
+        converters.add(new MappingJackson2SmileHttpMessageConverter());
+    }
+}
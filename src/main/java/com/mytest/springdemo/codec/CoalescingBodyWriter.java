@@ -0,0 +1,92 @@
+package com.mytest.springdemo.codec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.mytest.springdemo.support.SingleFlight;
+
+/**
+ * Single-flight front for serializing response bodies. When many requests
+ * miss the body cache for the same employee (or the full list) in the same
+ * format and repository version at once, only one of them serializes and the
+ * rest share its bytes. Serializing is the expensive part of a cache miss;
+ * the lookup itself is a map read and not worth coalescing on its own.
+ */
+@Component
+public class CoalescingBodyWriter {
+
+    /**
+     * Produces one body; typically looks the employee up, serializes it and
+     * files it in the body cache.
+     */
+    public interface BodyWriter {
+        byte[] write() throws IOException;
+    }
+
+    private final SingleFlight<BodyKey, byte[]> writes = new SingleFlight<BodyKey, byte[]>();
+
+    /**
+     * Runs {@code writer}, or waits for a concurrent run for the same key.
+     *
+     * @param id the employee id, or null for the full list
+     */
+    public byte[] write(EmployeeFormat format, Integer id, long version, final BodyWriter writer) throws IOException {
+        try {
+            return writes.execute(new BodyKey(format, id, version), new Supplier<byte[]>() {
+                @Override
+                public byte[] get() {
+                    try {
+                        return writer.write();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public long getExecutedCount() {
+        return writes.getExecutedCount();
+    }
+
+    public long getCoalescedCount() {
+        return writes.getCoalescedCount();
+    }
+
+    public int getInFlightCount() {
+        return writes.getInFlightCount();
+    }
+
+    private static final class BodyKey {
+        final EmployeeFormat format;
+        final Integer id;
+        final long version;
+
+        BodyKey(EmployeeFormat format, Integer id, long version) {
+            this.format = format;
+            this.id = id;
+            this.version = version;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = format.hashCode() * 31 + (id == null ? 0 : id.hashCode());
+            return h * 31 + (int) (version ^ (version >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BodyKey)) {
+                return false;
+            }
+            BodyKey other = (BodyKey) obj;
+            return format == other.format && version == other.version
+                    && (id == null ? other.id == null : id.equals(other.id));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.mytest.springdemo.codec;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Encoders and decoders for {@link Employee} and {@code Employee[]} in every
+ * {@link EmployeeFormat}. Readers and writers are built once and are
+ * thread-safe.
+ * <p>
+ * Protobuf needs a schema and has no top-level arrays, so a list travels as
+ * an {@code EmployeeList} message with a repeated {@code employees} field.
+ */
+@Component
+public class EmployeeCodecs {
+
+    private static final String EMPLOYEE_MESSAGE = "message Employee {\n"
+            + "  optional string empId = 1;\n"
+            + "  optional string name = 2;\n"
+            + "  optional string designation = 3;\n"
+            + "  optional double salary = 4;\n"
+            + "}\n";
+
+    // the loader uses the first message of a schema as its root type
+    private static final String EMPLOYEE_LIST_MESSAGE = "message EmployeeList {\n"
+            + "  repeated Employee employees = 1;\n"
+            + "}\n";
+
+    private final ObjectWriter[] employeeWriters = new ObjectWriter[EmployeeFormat.values().length];
+    private final ObjectWriter[] listWriters = new ObjectWriter[EmployeeFormat.values().length];
+    private final ObjectReader[] employeeReaders = new ObjectReader[EmployeeFormat.values().length];
+    private final ObjectReader[] listReaders = new ObjectReader[EmployeeFormat.values().length];
+
+    @Autowired
+    public EmployeeCodecs(ObjectMapper jsonMapper) throws IOException {
+        register(EmployeeFormat.JSON, jsonMapper);
+        register(EmployeeFormat.CBOR, new ObjectMapper(new CBORFactory()));
+        register(EmployeeFormat.SMILE, new ObjectMapper(new SmileFactory()));
+
+        ProtobufMapper protobufMapper = new ProtobufMapper();
+        ProtobufSchema employeeSchema = ProtobufSchemaLoader.std.parse(EMPLOYEE_MESSAGE);
+        ProtobufSchema listSchema = ProtobufSchemaLoader.std.parse(EMPLOYEE_LIST_MESSAGE + EMPLOYEE_MESSAGE);
+        int p = EmployeeFormat.PROTOBUF.ordinal();
+        employeeWriters[p] = protobufMapper.writerFor(Employee.class).with(employeeSchema);
+        listWriters[p] = protobufMapper.writerFor(EmployeeList.class).with(listSchema);
+        employeeReaders[p] = protobufMapper.readerFor(Employee.class).with(employeeSchema);
+        listReaders[p] = protobufMapper.readerFor(EmployeeList.class).with(listSchema);
+    }
+
+    public byte[] writeEmployee(EmployeeFormat format, Employee employee) throws IOException {
+        return employeeWriters[format.ordinal()].writeValueAsBytes(employee);
+    }
+
+    public byte[] writeEmployees(EmployeeFormat format, Employee[] employees) throws IOException {
+        if (format == EmployeeFormat.PROTOBUF) {
+            return listWriters[format.ordinal()].writeValueAsBytes(new EmployeeList(employees));
+        }
+        return listWriters[format.ordinal()].writeValueAsBytes(employees);
+    }
+
+    public Employee readEmployee(EmployeeFormat format, byte[] body) throws IOException {
+        return employeeReaders[format.ordinal()].readValue(body);
+    }
+
+    public Employee[] readEmployees(EmployeeFormat format, byte[] body) throws IOException {
+        if (format == EmployeeFormat.PROTOBUF) {
+            EmployeeList list = listReaders[format.ordinal()].readValue(body);
+            return list.getEmployees() == null ? new Employee[0] : list.getEmployees();
+        }
+        return listReaders[format.ordinal()].readValue(body);
+    }
+
+    private void register(EmployeeFormat format, ObjectMapper mapper) {
+        int i = format.ordinal();
+        employeeWriters[i] = mapper.writerFor(Employee.class);
+        listWriters[i] = mapper.writerFor(Employee[].class);
+        employeeReaders[i] = mapper.readerFor(Employee.class);
+        listReaders[i] = mapper.readerFor(Employee[].class);
+    }
+
+    /**
+     * Protobuf envelope for a list of employees.
+     */
+    public static class EmployeeList {
+        private Employee[] employees;
+
+        public EmployeeList() {
+        }
+
+        public EmployeeList(Employee[] employees) {
+            this.employees = employees;
+        }
+
+        public Employee[] getEmployees() {
+            return employees;
+        }
+
+        public void setEmployees(Employee[] employees) {
+            this.employees = employees;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mytest.springdemo.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Wire formats offered for {@code Employee} payloads. JSON is the default;
+ * the others are binary encodings for service-to-service callers that ask
+ * for them explicitly in {@code Accept}.
+ */
+public enum EmployeeFormat {
+
+    JSON(MediaType.APPLICATION_JSON_UTF8, ""),
+    CBOR(new MediaType("application", "cbor"), "-cbor"),
+    SMILE(new MediaType("application", "x-jackson-smile"), "-smile"),
+    PROTOBUF(new MediaType("application", "x-protobuf"), "-protobuf");
+
+    private final MediaType mediaType;
+
+    // appended to ETags so each representation validates separately
+    private final String etagSuffix;
+
+    EmployeeFormat(MediaType mediaType, String etagSuffix) {
+        this.mediaType = mediaType;
+        this.etagSuffix = etagSuffix;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getEtagSuffix() {
+        return etagSuffix;
+    }
+
+    /**
+     * Picks the format for an {@code Accept} header. The highest-quality
+     * binary type the client names wins. Anything else, including a missing
+     * header, wildcards and types that are not offered, gets JSON as before.
+     */
+    public static EmployeeFormat negotiate(List<MediaType> accept) {
+        if (accept == null || accept.isEmpty()) {
+            return JSON;
+        }
+        List<MediaType> sorted = new ArrayList<MediaType>(accept);
+        MediaType.sortBySpecificityAndQuality(sorted);
+        for (MediaType requested : sorted) {
+            if (requested.isWildcardType() || requested.isWildcardSubtype()) {
+                return JSON;
+            }
+            for (EmployeeFormat format : values()) {
+                if (format.mediaType.isCompatibleWith(requested)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,323 @@
+package com.mytest.springdemo.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Reads employees one record at a time from an NDJSON or CSV stream, so a
+ * payload of any size is parsed with a fixed amount of memory: one read
+ * buffer and one line of at most {@code maxLineLength} characters.
+ * <p>
+ * Each call to {@link #next()} moves to the next non-blank line. A line that
+ * cannot be parsed does not end the stream; it is reported through
+ * {@link #getError()} and reading continues with the following line.
+ * <p>
+ * CSV lines are split on commas, with RFC 4180 quoting inside a line. If the
+ * first line names all four columns ({@code empId}, {@code name},
+ * {@code designation}, {@code salary} in any order, case-insensitive, other
+ * columns ignored) it is used as the header. Otherwise the columns are taken
+ * in that order. A first line that names {@code empId} and some but not all
+ * of the other columns is rejected as an incomplete header.
+ * <p>
+ * A byte order mark at the start of the stream is skipped.
+ */
+public class EmployeeRowReader {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final String[] DEFAULT_COLUMNS = {"empid", "name", "designation", "salary"};
+
+    private final Reader in;
+    private final Format format;
+    private final ObjectReader employeeReader;
+    private final int maxLineLength;
+
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private boolean lineTooLong;
+    private long lineNumber;
+
+    // CSV column positions of empId, name, designation and salary; -1 if absent
+    private int[] columns;
+
+    private Employee employee;
+    private String error;
+
+    public EmployeeRowReader(InputStream in, Charset charset, Format format, ObjectReader employeeReader,
+            int maxLineLength) {
+        this.in = new InputStreamReader(in, charset);
+        this.format = format;
+        this.employeeReader = employeeReader;
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false at the end of the stream
+     * @throws IllegalArgumentException if the first CSV line is an incomplete
+     *         header; no record has been returned at that point
+     */
+    public boolean next() throws IOException {
+        while (readLine()) {
+            employee = null;
+            error = null;
+            if (lineTooLong) {
+                error = "line longer than " + maxLineLength + " characters";
+                if (columns == null) {
+                    // only the first line can be the header
+                    columns = new int[] {0, 1, 2, 3};
+                }
+                return true;
+            }
+            if (isBlank(line)) {
+                continue;
+            }
+            if (format == Format.NDJSON) {
+                parseJson();
+                return true;
+            }
+            if (columns == null) {
+                List<String> fields = splitCsv();
+                int[] named = fields == null ? null : headerColumns(fields);
+                if (named != null && isHeader(named)) {
+                    columns = named;
+                    continue;
+                }
+                if (named != null && named[0] >= 0 && nameCount(named) > 1) {
+                    throw new IllegalArgumentException("CSV header must name empId, name, designation and salary: "
+                            + line);
+                }
+                columns = new int[] {0, 1, 2, 3};
+            }
+            parseCsv();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The employee of the current record, or null if it was rejected.
+     */
+    public Employee getEmployee() {
+        return employee;
+    }
+
+    /**
+     * Why the current record was rejected, or null if it parsed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * 1-based line number of the current record.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void parseJson() {
+        try {
+            employee = employeeReader.readValue(line.toString());
+            if (employee == null) {
+                error = "not an employee object";
+            }
+        } catch (JsonProcessingException e) {
+            error = "invalid JSON: " + e.getOriginalMessage();
+        } catch (IOException e) {
+            error = "invalid JSON: " + e.getMessage();
+        }
+    }
+
+    private void parseCsv() {
+        List<String> fields = splitCsv();
+        if (fields == null) {
+            error = "unterminated quoted field";
+            return;
+        }
+        Employee parsed = new Employee();
+        parsed.setEmpId(field(fields, columns[0]));
+        parsed.setName(field(fields, columns[1]));
+        parsed.setDesignation(field(fields, columns[2]));
+        String salary = field(fields, columns[3]);
+        if (salary != null && !salary.trim().isEmpty()) {
+            try {
+                parsed.setSalary(Double.parseDouble(salary.trim()));
+            } catch (NumberFormatException e) {
+                error = "salary is not a number: " + salary;
+                return;
+            }
+        }
+        employee = parsed;
+    }
+
+    /**
+     * Splits the current line into fields. A field may be quoted, with
+     * {@code ""} standing for a quote inside it.
+     *
+     * @return the fields, or null if a quoted field is not closed on this line
+     */
+    private List<String> splitCsv() {
+        List<String> fields = new ArrayList<String>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < length && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String field(List<String> fields, int column) {
+        if (column < 0 || column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column);
+        return value.isEmpty() ? null : value;
+    }
+
+    private static boolean isHeader(int[] positions) {
+        return nameCount(positions) == positions.length;
+    }
+
+    private static int nameCount(int[] positions) {
+        int count = 0;
+        for (int position : positions) {
+            if (position >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int[] headerColumns(List<String> fields) {
+        int[] positions = {-1, -1, -1, -1};
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).trim();
+            for (int c = 0; c < DEFAULT_COLUMNS.length; c++) {
+                if (DEFAULT_COLUMNS[c].equalsIgnoreCase(name)) {
+                    positions[c] = i;
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Reads the next line into {@link #line} without its terminator. Past
+     * {@code maxLineLength} characters the rest of the line is skipped and
+     * {@link #lineTooLong} is set.
+     *
+     * @return false if the stream has no more lines
+     */
+    private boolean readLine() throws IOException {
+        line.setLength(0);
+        lineTooLong = false;
+        boolean any = false;
+        while (true) {
+            if (position == limit) {
+                if (eof || !fill()) {
+                    if (any) {
+                        endLine();
+                    }
+                    return any;
+                }
+            }
+            any = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            int end = position;
+            if (!lineTooLong) {
+                if (line.length() + end - start > maxLineLength) {
+                    lineTooLong = true;
+                    line.setLength(0);
+                } else {
+                    line.append(buffer, start, end - start);
+                }
+            }
+            if (position < limit) {
+                // consume the newline
+                position++;
+                endLine();
+                return true;
+            }
+        }
+    }
+
+    private void endLine() {
+        if (lineNumber == 0 && line.length() > 0 && line.charAt(0) == '\uFEFF') {
+            line.deleteCharAt(0);
+        }
+        lineNumber++;
+        int last = line.length() - 1;
+        if (last >= 0 && line.charAt(last) == '\r') {
+            line.setLength(last);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        while (read == 0) {
+            read = in.read(buffer, 0, buffer.length);
+        }
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private static boolean isBlank(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,17 @@
+package com.mytest.springdemo.codec;
+
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * Reads and writes {@code application/cbor} with Jackson. Spring 4.3 ships
+ * no CBOR converter; it arrives with Spring 5.
+ */
+public class MappingJackson2CborHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public MappingJackson2CborHttpMessageConverter() {
+        super(new ObjectMapper(new CBORFactory()), EmployeeFormat.CBOR.getMediaType());
+    }
+}
@@ -0,0 +1,17 @@
+package com.mytest.springdemo.codec;
+
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Reads and writes {@code application/x-jackson-smile} with Jackson. Spring
+ * 4.3 has no Smile converter; it arrives with Spring 5.
+ */
+public class MappingJackson2SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public MappingJackson2SmileHttpMessageConverter() {
+        super(new ObjectMapper(new SmileFactory()), EmployeeFormat.SMILE.getMediaType());
+    }
+}
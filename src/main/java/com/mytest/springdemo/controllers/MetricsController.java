@@ -0,0 +1,71 @@
+package com.mytest.springdemo.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.mytest.springdemo.codec.CoalescingBodyWriter;
+import com.mytest.springdemo.support.LatencyRegistry;
+
+import jp.co.alico.cusext.dao.DisAgrConnectionPool;
+import jp.co.alico.cusext.dao.DisAgrInfoAsyncDAO;
+import jp.co.alico.cusext.dao.DisAgrSqlTracer;
+
+/**
+ * Operational counters of the employee endpoints as a JSON object, the
+ * latency histograms of every endpoint, DAO operation and SQL statement, and
+ * the counters of the DAO connection pool, async DAO and SQL tracer. The pool
+ * and async DAO appear once they have been installed.
+ */
+@RestController
+public class MetricsController {
+
+    @Autowired
+    private CoalescingBodyWriter bodyWriter;
+
+    @RequestMapping(value = "/metrics", method = RequestMethod.GET)
+    public Map<String, Object> metrics() {
+
+        Map<String, Object> bodyWrites = new LinkedHashMap<String, Object>();
+        bodyWrites.put("executed", bodyWriter.getExecutedCount());
+        bodyWrites.put("coalesced", bodyWriter.getCoalescedCount());
+        bodyWrites.put("inFlight", bodyWriter.getInFlightCount());
+
+        Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+        metrics.put("employeeBodyWrites", bodyWrites);
+        metrics.put("latency", LatencyRegistry.shared().getMetrics());
+        metrics.put("dao", daoMetrics());
+        return metrics;
+    }
+
+    private static Map<String, Object> daoMetrics() {
+
+        Map<String, Object> dao = new LinkedHashMap<String, Object>();
+        DisAgrConnectionPool pool = DisAgrConnectionPool.getInstalled();
+        if (pool != null) {
+            dao.put("pool", pool.getMetrics());
+        }
+        DisAgrInfoAsyncDAO asyncDao = DisAgrInfoAsyncDAO.getInstalled();
+        if (asyncDao != null) {
+            dao.put("async", asyncDao.getMetrics());
+        }
+        dao.put("sqlTrace", DisAgrSqlTracer.shared().getMetrics());
+        return dao;
+    }
+
+    /**
+     * Starts a new latency measurement interval, e.g. before a load test.
+     */
+    @RequestMapping(value = "/metrics/latency", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> resetLatency() {
+
+        LatencyRegistry.shared().reset();
+        return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+    }
+}
@@ -1,56 +1,537 @@
 package com.mytest.springdemo.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mytest.springdemo.codec.CoalescingBodyWriter;
+import com.mytest.springdemo.codec.EmployeeCodecs;
+import com.mytest.springdemo.codec.EmployeeFormat;
+import com.mytest.springdemo.codec.EmployeeRowReader;
+import com.mytest.springdemo.model.DesignationStats;
 import com.mytest.springdemo.model.Employee;
+import com.mytest.springdemo.model.EmployeePage;
+import com.mytest.springdemo.model.EmployeeSearchPage;
+import com.mytest.springdemo.model.ImportSummary;
+import com.mytest.springdemo.repository.EmployeeImporter;
+import com.mytest.springdemo.repository.EmployeeRepository;
+import com.mytest.springdemo.support.StripedLruCache;
 
 @RestController
 public class TestController {
 
+    public static final String NDJSON = "application/x-ndjson";
+
+    public static final String CSV = "text/csv";
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int DEFAULT_SEARCH_LIMIT = 100;
+
+    // records read and written per page of the NDJSON stream, flushed after each
+    private static final int STREAM_PAGE_SIZE = 256;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private CoalescingBodyWriter bodyWriter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EmployeeCodecs employeeCodecs;
+
+    @Autowired
+    private EmployeeImporter employeeImporter;
+
+    @Value("${employee.http.cache-control:no-cache}")
+    private String cacheControl;
+
+    // serialized single-employee bodies kept per format, least recently used first out
+    @Value("${employee.http.body-cache.max-entries:10000}")
+    private int bodyCacheMaxEntries;
+
+    private ObjectWriter employeeWriter;
+
+    // serialized GET bodies of the current repository version, per format
+    private volatile BodyCache bodyCache = new BodyCache(-1L, 1);
+
+    @PostConstruct
+    public void init() {
+        employeeWriter = objectMapper.writerFor(Employee.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
     @RequestMapping(value = "/employee/{id}", method = RequestMethod.GET)
-    public Employee firstPage(@PathVariable Integer id) {
-
-        Employee emp = new Employee();
-        if (id==1){
-            emp.setName("emp1");
-            emp.setDesignation("manager");
-            emp.setEmpId("1");
-            emp.setSalary(3000);
-        }else if(id==2){
-            emp.setName("emp2");
-            emp.setDesignation("individual contributor");
-            emp.setEmpId("2");
-            emp.setSalary(2000);
-        }
-
-        return emp;
-    }
-
-    @RequestMapping(value = "/employee/list", method = RequestMethod.GET)
-    public Employee[] firstPage() {
-
-        Employee emp[] = new Employee[3]; 
-        
-        emp[0]= new Employee();
-        
-        emp[0].setName("emp1");
-        emp[0].setDesignation("manager");
-        emp[0].setEmpId("1");
-        emp[0].setSalary(3000);
-        emp[1]= new Employee();
-        emp[1].setName("emp2");
-        emp[1].setDesignation("individual contributor");
-        emp[1].setEmpId("2");
-        emp[1].setSalary(2000);
-        emp[2] = new Employee();
-        emp[2].setName("emp3");
-        emp[2].setDesignation("individual contributor");
-        emp[2].setEmpId("3");
-        emp[2].setSalary(2000);
-
-        return emp;
+    public ResponseEntity<byte[]> firstPage(@PathVariable final Integer id, @RequestHeader HttpHeaders requestHeaders)
+            throws IOException {
+
+        final EmployeeFormat format = EmployeeFormat.negotiate(requestHeaders.getAccept());
+        final long version = employeeRepository.version();
+        HttpHeaders headers = cacheHeaders("\"emp-" + id + "-" + version + format.getEtagSuffix() + "\"", format);
+        if (isNotModified(requestHeaders, headers)) {
+            return new ResponseEntity<byte[]>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        final FormatCache cache = bodyCache(version).of(format);
+        byte[] body = cache.byId.get(id);
+        if (body == null) {
+            // concurrent requests for the same id share one serialization
+            body = bodyWriter.write(format, id, version, new CoalescingBodyWriter.BodyWriter() {
+                @Override
+                public byte[] write() throws IOException {
+                    Employee emp = employeeRepository.findById(id);
+                    if (emp == null) {
+                        // unknown ids have always answered with an empty employee
+                        return employeeCodecs.writeEmployee(format, new Employee());
+                    }
+                    byte[] written = employeeCodecs.writeEmployee(format, emp);
+                    cacheBody(version, cache, id, written);
+                    return written;
+                }
+            });
+        }
+        return new ResponseEntity<byte[]>(body, headers, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/employee/list", method = RequestMethod.GET, params = {"!limit", "!ids"})
+    public ResponseEntity<byte[]> firstPage(@RequestHeader HttpHeaders requestHeaders) throws IOException {
+
+        final EmployeeFormat format = EmployeeFormat.negotiate(requestHeaders.getAccept());
+        final long version = employeeRepository.version();
+        HttpHeaders headers = cacheHeaders("\"list-" + version + format.getEtagSuffix() + "\"", format);
+        if (isNotModified(requestHeaders, headers)) {
+            return new ResponseEntity<byte[]>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        final FormatCache cache = bodyCache(version).of(format);
+        byte[] body = cache.list;
+        if (body == null) {
+            body = bodyWriter.write(format, null, version, new CoalescingBodyWriter.BodyWriter() {
+                @Override
+                public byte[] write() throws IOException {
+                    byte[] written = employeeCodecs.writeEmployees(format, employeeRepository.findAll());
+                    cacheBody(version, cache, null, written);
+                    return written;
+                }
+            });
+        }
+        return new ResponseEntity<byte[]>(body, headers, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/employee/list", method = RequestMethod.GET, params = {"limit", "!ids"})
+    public ResponseEntity<EmployeePage> listPage(@RequestParam("limit") int limit,
+            @RequestParam(value = "after", required = false) Integer after) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return new ResponseEntity<EmployeePage>(HttpStatus.BAD_REQUEST);
+        }
+        Employee[] employees = employeeRepository.findPage(after, limit);
+        Integer nextCursor = null;
+        if (employees.length == limit) {
+            nextCursor = Integer.valueOf(employees[employees.length - 1].getEmpId());
+        }
+        return new ResponseEntity<EmployeePage>(new EmployeePage(employees, nextCursor), HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/employee/list", method = RequestMethod.GET, params = {"ids", "!limit"})
+    public ResponseEntity<Employee[]> listByIds(@RequestParam("ids") List<Integer> ids) {
+
+        if (ids.size() > MAX_PAGE_SIZE) {
+            return new ResponseEntity<Employee[]>(HttpStatus.BAD_REQUEST);
+        }
+        // unknown ids are left out rather than answered with empty employees
+        List<Employee> employees = new ArrayList<Employee>(ids.size());
+        for (Integer id : ids) {
+            Employee emp = id == null ? null : employeeRepository.findById(id);
+            if (emp != null) {
+                employees.add(emp);
+            }
+        }
+        return new ResponseEntity<Employee[]>(employees.toArray(new Employee[employees.size()]), HttpStatus.OK);
+    }
+
+    /**
+     * Employees with the given designation, ordered by id.
+     */
+    @RequestMapping(value = "/employee/search", method = RequestMethod.GET,
+            params = {"designation", "!minSalary", "!maxSalary", "!namePrefix"})
+    public ResponseEntity<EmployeeSearchPage> searchByDesignation(@RequestParam("designation") String designation,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_SEARCH_LIMIT) int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return new ResponseEntity<EmployeeSearchPage>(HttpStatus.BAD_REQUEST);
+        }
+        Integer afterId;
+        try {
+            afterId = cursor == null ? null : Integer.valueOf(cursor);
+        } catch (NumberFormatException e) {
+            return new ResponseEntity<EmployeeSearchPage>(HttpStatus.BAD_REQUEST);
+        }
+        Employee[] employees = employeeRepository.findByDesignation(designation, afterId, limit);
+        String nextCursor = null;
+        if (employees.length == limit) {
+            nextCursor = employees[employees.length - 1].getEmpId();
+        }
+        return new ResponseEntity<EmployeeSearchPage>(new EmployeeSearchPage(employees, nextCursor), HttpStatus.OK);
+    }
+
+    /**
+     * Employees earning between {@code minSalary} and {@code maxSalary}
+     * inclusive, ordered by salary and then id.
+     */
+    @RequestMapping(value = "/employee/search", method = RequestMethod.GET,
+            params = {"minSalary", "maxSalary", "!designation", "!namePrefix"})
+    public ResponseEntity<EmployeeSearchPage> searchBySalary(@RequestParam("minSalary") double minSalary,
+            @RequestParam("maxSalary") double maxSalary,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_SEARCH_LIMIT) int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE || !isValidSalary(minSalary) || !isValidSalary(maxSalary)
+                || minSalary > maxSalary) {
+            return new ResponseEntity<EmployeeSearchPage>(HttpStatus.BAD_REQUEST);
+        }
+        Integer afterId = null;
+        Double afterSalary = null;
+        if (cursor != null) {
+            try {
+                afterId = cursorId(cursor);
+                afterSalary = Double.valueOf(cursorValue(cursor));
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<EmployeeSearchPage>(HttpStatus.BAD_REQUEST);
+            }
+        }
+        Employee[] employees = employeeRepository.findBySalaryRange(minSalary, maxSalary, afterSalary, afterId, limit);
+        String nextCursor = null;
+        if (employees.length == limit) {
+            Employee last = employees[employees.length - 1];
+            nextCursor = cursor(last.getEmpId(), String.valueOf(last.getSalary()));
+        }
+        return new ResponseEntity<EmployeeSearchPage>(new EmployeeSearchPage(employees, nextCursor), HttpStatus.OK);
+    }
+
+    /**
+     * Employees whose name starts with {@code namePrefix}, ignoring case,
+     * ordered by name and then id.
+     */
+    @RequestMapping(value = "/employee/search", method = RequestMethod.GET,
+            params = {"namePrefix", "!designation", "!minSalary", "!maxSalary"})
+    public ResponseEntity<EmployeeSearchPage> searchByNamePrefix(@RequestParam("namePrefix") String namePrefix,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_SEARCH_LIMIT) int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return new ResponseEntity<EmployeeSearchPage>(HttpStatus.BAD_REQUEST);
+        }
+        Integer afterId = null;
+        String afterName = null;
+        if (cursor != null) {
+            try {
+                afterId = cursorId(cursor);
+                afterName = cursorValue(cursor);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<EmployeeSearchPage>(HttpStatus.BAD_REQUEST);
+            }
+        }
+        Employee[] employees = employeeRepository.findByNamePrefix(namePrefix, afterName, afterId, limit);
+        String nextCursor = null;
+        if (employees.length == limit) {
+            Employee last = employees[employees.length - 1];
+            nextCursor = cursor(last.getEmpId(), last.getName());
+        }
+        return new ResponseEntity<EmployeeSearchPage>(new EmployeeSearchPage(employees, nextCursor), HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/employee/list", method = RequestMethod.GET, params = {"!limit", "!ids"},
+            produces = NDJSON)
+    public StreamingResponseBody streamList() {
+
+        return new StreamingResponseBody() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                writeNdjson(out);
+            }
+        };
+    }
+
+    @RequestMapping(value = "/employee", method = RequestMethod.POST)
+    public ResponseEntity<Employee> createEmployee(@RequestBody Employee employee) {
+
+        if (!isValidId(employee.getEmpId()) || !isValidSalary(employee.getSalary())) {
+            return new ResponseEntity<Employee>(HttpStatus.BAD_REQUEST);
+        }
+        if (!employeeRepository.create(employee)) {
+            return new ResponseEntity<Employee>(HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<Employee>(employeeRepository.findById(EmployeeRepository.parseId(employee.getEmpId())), HttpStatus.CREATED);
+    }
+
+    @RequestMapping(value = "/employee/{id}", method = RequestMethod.PUT)
+    public ResponseEntity<Employee> updateEmployee(@PathVariable Integer id, @RequestBody Employee employee) {
+
+        if (!isValidSalary(employee.getSalary())) {
+            return new ResponseEntity<Employee>(HttpStatus.BAD_REQUEST);
+        }
+        employee.setEmpId(String.valueOf(id));
+        if (employeeRepository.update(employee) == null) {
+            return new ResponseEntity<Employee>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<Employee>(employeeRepository.findById(id), HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/employee/{id}", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> deleteEmployee(@PathVariable Integer id) {
+
+        if (employeeRepository.delete(id) == null) {
+            return new ResponseEntity<Void>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+    }
+
+    /**
+     * Loads employees from an NDJSON or CSV body. The body is parsed as it
+     * arrives and applied in batches, so a million records can be sent in one
+     * request without being held in memory. With {@code mode=upsert} (the
+     * default) records replace existing employees; with {@code mode=insert}
+     * records whose id exists are rejected. Invalid records are skipped and
+     * reported in the summary rather than failing the request.
+     */
+    @RequestMapping(value = "/employee/import", method = RequestMethod.POST, consumes = {NDJSON, CSV})
+    public ResponseEntity<ImportSummary> importEmployees(InputStream body, @RequestHeader HttpHeaders requestHeaders,
+            @RequestParam(value = "mode", defaultValue = "upsert") String mode) throws IOException {
+
+        boolean replace;
+        if ("upsert".equals(mode)) {
+            replace = true;
+        } else if ("insert".equals(mode)) {
+            replace = false;
+        } else {
+            return new ResponseEntity<ImportSummary>(HttpStatus.BAD_REQUEST);
+        }
+        MediaType contentType = requestHeaders.getContentType();
+        EmployeeRowReader.Format format = MediaType.valueOf(CSV).isCompatibleWith(contentType)
+                ? EmployeeRowReader.Format.CSV : EmployeeRowReader.Format.NDJSON;
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        try {
+            return new ResponseEntity<ImportSummary>(employeeImporter.importFrom(body, charset, format, replace),
+                    HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<ImportSummary>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Headcount and salary statistics per designation. Served from aggregates
+     * maintained on every write, so the cost does not grow with the number of
+     * employees.
+     */
+    @RequestMapping(value = "/employee/stats/designation", method = RequestMethod.GET)
+    public ResponseEntity<DesignationStats[]> designationStats() {
+
+        return new ResponseEntity<DesignationStats[]>(employeeRepository.designationStats(), HttpStatus.OK);
+    }
+
+    /**
+     * Recomputes the designation statistics from every employee, reports the
+     * designations whose maintained aggregates disagreed, and continues from
+     * the recomputed values.
+     */
+    @RequestMapping(value = "/employee/stats/designation/recompute", method = RequestMethod.POST)
+    public ResponseEntity<Map<String, Object>> recomputeDesignationStats() {
+
+        List<String> differing = employeeRepository.recomputeDesignationStats();
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("consistent", differing.isEmpty());
+        result.put("differing", differing);
+        result.put("designations", employeeRepository.designationStats());
+        return new ResponseEntity<Map<String, Object>>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Writes every employee in id order, one page of
+     * {@link #STREAM_PAGE_SIZE} at a time, so only one page is held in
+     * memory. Like the keyset pages, the stream is not a point-in-time copy:
+     * employees written while it runs may or may not be included, but none
+     * is written twice.
+     */
+    private void writeNdjson(OutputStream out) throws IOException {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        try {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            Integer after = null;
+            Employee[] page;
+            do {
+                page = employeeRepository.findPage(after, STREAM_PAGE_SIZE);
+                for (Employee employee : page) {
+                    employeeWriter.writeValue(gen, employee);
+                    gen.writeRaw('\n');
+                }
+                gen.flush();
+                if (page.length > 0) {
+                    after = Integer.valueOf(page[page.length - 1].getEmpId());
+                }
+            } while (page.length == STREAM_PAGE_SIZE);
+        } finally {
+            gen.close();
+        }
+    }
+
+    /**
+     * Validators and caching policy for a GET response. Both are derived from
+     * the repository version, so any write invalidates every cached copy.
+     * Each format has its own ETag, and shared caches must key on Accept.
+     */
+    private HttpHeaders cacheHeaders(String etag, EmployeeFormat format) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setLastModified(employeeRepository.lastModified());
+        headers.setCacheControl(cacheControl);
+        headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        headers.setContentType(format.getMediaType());
+        return headers;
+    }
+
+    /**
+     * If-None-Match wins over If-Modified-Since when both are sent (RFC 7232).
+     */
+    private static boolean isNotModified(HttpHeaders request, HttpHeaders response) {
+        List<String> ifNoneMatch = request.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            String etag = response.getETag();
+            for (String candidate : ifNoneMatch) {
+                if (candidate.equals("*") || stripWeak(candidate).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = request.getIfModifiedSince();
+        // HTTP dates carry whole seconds only
+        return ifModifiedSince >= 0 && response.getLastModified() / 1000 * 1000 <= ifModifiedSince;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private BodyCache bodyCache(long version) {
+        BodyCache cache = bodyCache;
+        if (cache.version < version) {
+            cache = new BodyCache(version, bodyCacheMaxEntries);
+            bodyCache = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Keeps a serialized body for its version. The version is checked again
+     * after serializing: if a write landed meanwhile, the body may hold newer
+     * data than the version it would be filed under, so it is not kept.
+     */
+    private void cacheBody(long version, FormatCache cache, Integer id, byte[] body) {
+        if (version != employeeRepository.version()) {
+            return;
+        }
+        if (id == null) {
+            cache.list = body;
+        } else {
+            cache.byId.put(id, body);
+        }
+    }
+
+    /**
+     * Search cursors made of the last employee's id and sort value, as
+     * {@code id:value}. The id comes first because names may contain colons.
+     */
+    private static String cursor(String empId, String value) {
+        return empId + ":" + value;
+    }
+
+    private static Integer cursorId(String cursor) {
+        int colon = cursor.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("malformed cursor: " + cursor);
+        }
+        return Integer.valueOf(cursor.substring(0, colon));
+    }
+
+    private static String cursorValue(String cursor) {
+        return cursor.substring(cursor.indexOf(':') + 1);
+    }
+
+    private static boolean isValidId(String empId) {
+        try {
+            EmployeeRepository.parseId(empId);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isValidSalary(double salary) {
+        return !Double.isNaN(salary) && !Double.isInfinite(salary);
+    }
+
+    private static final class BodyCache {
+        final long version;
+        final int maxEntries;
+        final AtomicReferenceArray<FormatCache> formats = new AtomicReferenceArray<FormatCache>(EmployeeFormat.values().length);
+
+        BodyCache(long version, int maxEntries) {
+            this.version = version;
+            this.maxEntries = maxEntries;
+        }
+
+        // formats nobody asked for cost nothing
+        FormatCache of(EmployeeFormat format) {
+            FormatCache cache = formats.get(format.ordinal());
+            if (cache == null) {
+                formats.compareAndSet(format.ordinal(), null, new FormatCache(maxEntries));
+                cache = formats.get(format.ordinal());
+            }
+            return cache;
+        }
+    }
+
+    private static final class FormatCache {
+        // bounded so that a scan over many ids cannot hold a body for every employee
+        final StripedLruCache<Integer, byte[]> byId;
+        volatile byte[] list;
+
+        FormatCache(int maxEntries) {
+            byId = new StripedLruCache<Integer, byte[]>(Math.max(1, maxEntries));
+        }
     }
 }
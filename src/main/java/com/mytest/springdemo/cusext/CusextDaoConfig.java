@@ -0,0 +1,53 @@
+package com.mytest.springdemo.cusext;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+
+import jp.co.alico.cusext.dao.DisAgrConnectionPool;
+import jp.co.alico.cusext.dao.DisAgrInfoAsyncDAO;
+import jp.co.alico.cusext.dao.DisAgrInfoDAO;
+
+/**
+ * Creates the CUSEXT connection pool and async DAO and installs them, so
+ * every {@link DisAgrInfoDAO} draws its connections from the pool and
+ * {@code /metrics} reports both. Active only when
+ * {@code cusext.datasource.class-name} is set; without it the DAO keeps
+ * using the container connection of the CUSEXT framework. Both are
+ * uninstalled and shut down with the application context.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cusext.datasource", name = "class-name")
+@EnableConfigurationProperties(CusextDaoProperties.class)
+public class CusextDaoConfig {
+
+    @Bean(destroyMethod = "close")
+    public DisAgrConnectionPool disAgrConnectionPool(CusextDaoProperties properties) throws ClassNotFoundException {
+        DisAgrConnectionPool pool = new DisAgrConnectionPool(driverDataSource(properties.getDatasource()),
+                properties.getPool().toConfig());
+        DisAgrConnectionPool.install(pool);
+        return pool;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public DisAgrInfoAsyncDAO disAgrInfoAsyncDAO(DisAgrConnectionPool pool, CusextDaoProperties properties) {
+        DisAgrInfoAsyncDAO asyncDao = new DisAgrInfoAsyncDAO(new DisAgrInfoDAO(), properties.getAsync().toConfig());
+        DisAgrInfoAsyncDAO.install(asyncDao);
+        return asyncDao;
+    }
+
+    private static DataSource driverDataSource(CusextDaoProperties.DataSource properties) throws ClassNotFoundException {
+        Class<?> type = ClassUtils.forName(properties.getClassName(), CusextDaoConfig.class.getClassLoader());
+        DataSource source = (DataSource) BeanUtils.instantiateClass(type);
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(source);
+        wrapper.setPropertyValues(properties.getProperties());
+        return source;
+    }
+}
@@ -0,0 +1,219 @@
+package com.mytest.springdemo.cusext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import jp.co.alico.cusext.dao.DisAgrConnectionPool;
+import jp.co.alico.cusext.dao.DisAgrInfoAsyncDAO;
+
+/**
+ * Settings for {@link CusextDaoConfig}, bound from {@code cusext.*}. The
+ * pool and async defaults are those of {@link DisAgrConnectionPool.Config}
+ * and {@link DisAgrInfoAsyncDAO.Config}, so the {@code cusext.pool.*} and
+ * {@code cusext.disAgrAsync.*} system properties still apply when a value is
+ * not set here.
+ */
+@ConfigurationProperties(prefix = "cusext")
+public class CusextDaoProperties {
+
+    private final DataSource datasource = new DataSource();
+
+    private final Pool pool = new Pool();
+
+    private final Async async = new Async();
+
+    public DataSource getDatasource() {
+        return datasource;
+    }
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    /**
+     * The driver's {@link javax.sql.DataSource} the pool draws physical
+     * connections from, e.g. {@code com.microsoft.sqlserver.jdbc.SQLServerDataSource}
+     * with {@code properties.URL}, {@code properties.user} and
+     * {@code properties.password}. Each property is set as a bean property.
+     */
+    public static class DataSource {
+
+        private String className;
+
+        private Map<String, String> properties = new LinkedHashMap<String, String>();
+
+        public String getClassName() {
+            return className;
+        }
+
+        public void setClassName(String className) {
+            this.className = className;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        public void setProperties(Map<String, String> properties) {
+            this.properties = properties;
+        }
+    }
+
+    public static class Pool {
+
+        private final DisAgrConnectionPool.Config defaults = new DisAgrConnectionPool.Config();
+
+        private int maxSize = defaults.maxSize;
+        private int minIdle = defaults.minIdle;
+        private long acquireTimeoutMillis = defaults.acquireTimeoutMillis;
+        private long idleTimeoutMillis = defaults.idleTimeoutMillis;
+        private long validationIntervalMillis = defaults.validationIntervalMillis;
+        private int validationTimeoutSeconds = defaults.validationTimeoutSeconds;
+        private long leakDetectionMillis = defaults.leakDetectionMillis;
+        private double leakTraceSampleRate = defaults.leakTraceSampleRate;
+        private int maxStatements = defaults.maxStatements;
+        private long housekeepingIntervalMillis = defaults.housekeepingIntervalMillis;
+
+        public DisAgrConnectionPool.Config toConfig() {
+            DisAgrConnectionPool.Config config = new DisAgrConnectionPool.Config();
+            config.maxSize = maxSize;
+            config.minIdle = minIdle;
+            config.acquireTimeoutMillis = acquireTimeoutMillis;
+            config.idleTimeoutMillis = idleTimeoutMillis;
+            config.validationIntervalMillis = validationIntervalMillis;
+            config.validationTimeoutSeconds = validationTimeoutSeconds;
+            config.leakDetectionMillis = leakDetectionMillis;
+            config.leakTraceSampleRate = leakTraceSampleRate;
+            config.maxStatements = maxStatements;
+            config.housekeepingIntervalMillis = housekeepingIntervalMillis;
+            return config;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMinIdle() {
+            return minIdle;
+        }
+
+        public void setMinIdle(int minIdle) {
+            this.minIdle = minIdle;
+        }
+
+        public long getAcquireTimeoutMillis() {
+            return acquireTimeoutMillis;
+        }
+
+        public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+            this.acquireTimeoutMillis = acquireTimeoutMillis;
+        }
+
+        public long getIdleTimeoutMillis() {
+            return idleTimeoutMillis;
+        }
+
+        public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+        }
+
+        public long getValidationIntervalMillis() {
+            return validationIntervalMillis;
+        }
+
+        public void setValidationIntervalMillis(long validationIntervalMillis) {
+            this.validationIntervalMillis = validationIntervalMillis;
+        }
+
+        public int getValidationTimeoutSeconds() {
+            return validationTimeoutSeconds;
+        }
+
+        public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+        }
+
+        public long getLeakDetectionMillis() {
+            return leakDetectionMillis;
+        }
+
+        public void setLeakDetectionMillis(long leakDetectionMillis) {
+            this.leakDetectionMillis = leakDetectionMillis;
+        }
+
+        public double getLeakTraceSampleRate() {
+            return leakTraceSampleRate;
+        }
+
+        public void setLeakTraceSampleRate(double leakTraceSampleRate) {
+            this.leakTraceSampleRate = leakTraceSampleRate;
+        }
+
+        public int getMaxStatements() {
+            return maxStatements;
+        }
+
+        public void setMaxStatements(int maxStatements) {
+            this.maxStatements = maxStatements;
+        }
+
+        public long getHousekeepingIntervalMillis() {
+            return housekeepingIntervalMillis;
+        }
+
+        public void setHousekeepingIntervalMillis(long housekeepingIntervalMillis) {
+            this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+        }
+    }
+
+    public static class Async {
+
+        private final DisAgrInfoAsyncDAO.Config defaults = new DisAgrInfoAsyncDAO.Config();
+
+        private int threads = defaults.threads;
+        private int queueSize = defaults.queueSize;
+        private long timeoutMillis = defaults.timeoutMillis;
+
+        public DisAgrInfoAsyncDAO.Config toConfig() {
+            DisAgrInfoAsyncDAO.Config config = new DisAgrInfoAsyncDAO.Config();
+            config.threads = threads;
+            config.queueSize = queueSize;
+            config.timeoutMillis = timeoutMillis;
+            return config;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mytest.springdemo.model;
+
+/**
+ * Headcount and salary statistics of the employees sharing one designation.
+ */
+public class DesignationStats {
+    private String designation;
+    private long count;
+    private double sum;
+    private double min;
+    private double max;
+    private double mean;
+
+    public DesignationStats() {
+    }
+
+    public DesignationStats(String designation, long count, double sum, double min, double max) {
+        this.designation = designation;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.mean = count == 0 ? 0 : sum / count;
+    }
+
+    public String getDesignation() {
+        return designation;
+    }
+
+    public void setDesignation(String designation) {
+        this.designation = designation;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public void setSum(double sum) {
+        this.sum = sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.mytest.springdemo.model;
+
+public class EmployeePage {
+    private Employee[] employees;
+    private Integer nextCursor;
+
+    public EmployeePage() {
+    }
+
+    public EmployeePage(Employee[] employees, Integer nextCursor) {
+        this.employees = employees;
+        this.nextCursor = nextCursor;
+    }
+
+    public Employee[] getEmployees() {
+        return employees;
+    }
+
+    public void setEmployees(Employee[] employees) {
+        this.employees = employees;
+    }
+
+    /**
+     * Id to pass as {@code after} to fetch the next page, or null when this is
+     * the last page.
+     */
+    public Integer getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Integer nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.mytest.springdemo.model;
+
+public class EmployeeSearchPage {
+    private Employee[] employees;
+    private String nextCursor;
+
+    public EmployeeSearchPage() {
+    }
+
+    public EmployeeSearchPage(Employee[] employees, String nextCursor) {
+        this.employees = employees;
+        this.nextCursor = nextCursor;
+    }
+
+    public Employee[] getEmployees() {
+        return employees;
+    }
+
+    public void setEmployees(Employee[] employees) {
+        this.employees = employees;
+    }
+
+    /**
+     * Opaque value to pass as {@code cursor} with the same query to fetch the
+     * next page, or null when this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+}
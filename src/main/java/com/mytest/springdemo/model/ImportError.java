@@ -0,0 +1,34 @@
+package com.mytest.springdemo.model;
+
+/**
+ * A record of a bulk import that was rejected, and why.
+ */
+public class ImportError {
+    private long line;
+    private String reason;
+
+    public ImportError() {
+    }
+
+    public ImportError(long line, String reason) {
+        this.line = line;
+        this.reason = reason;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.mytest.springdemo.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many records were stored and rejected, how
+ * fast they were applied, and the first rejected records with their reasons.
+ */
+public class ImportSummary {
+    private long records;
+    private long accepted;
+    private long rejected;
+    private long batches;
+    private long elapsedMillis;
+    private long recordsPerSecond;
+    private List<ImportError> errors;
+    private boolean errorsTruncated;
+
+    public ImportSummary() {
+    }
+
+    public ImportSummary(long accepted, long rejected, long batches, long elapsedMillis, List<ImportError> errors,
+            boolean errorsTruncated) {
+        this.records = accepted + rejected;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.batches = batches;
+        this.elapsedMillis = elapsedMillis;
+        this.recordsPerSecond = elapsedMillis == 0 ? records * 1000 : records * 1000 / elapsedMillis;
+        this.errors = errors;
+        this.errorsTruncated = errorsTruncated;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public void setRecords(long records) {
+        this.records = records;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(long accepted) {
+        this.accepted = accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public void setBatches(long batches) {
+        this.batches = batches;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public void setRecordsPerSecond(long recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+    }
+
+    public List<ImportError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ImportError> errors) {
+        this.errors = errors;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public void setErrorsTruncated(boolean errorsTruncated) {
+        this.errorsTruncated = errorsTruncated;
+    }
+
+}
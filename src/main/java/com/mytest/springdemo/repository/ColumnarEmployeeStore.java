@@ -0,0 +1,331 @@
+package com.mytest.springdemo.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Column-oriented {@link EmployeeStore} for large datasets. Each employee
+ * occupies one slot across parallel arrays: the id and salary as primitives,
+ * the designation as an int code into a dictionary of distinct designations,
+ * and the name as a String reference. Ids map to slots through an
+ * open-addressing int-to-int table, so no {@code Integer}, map entry or
+ * {@code Employee} object is kept per employee.
+ * <p>
+ * {@link Employee} objects are created only when read, so every lookup
+ * returns a fresh copy. Slots stay dense: deleting an employee moves the last
+ * slot into the hole. Dictionary codes are never reclaimed, which is fine for
+ * the small number of distinct designations. Reads share a lock and writes
+ * take it exclusively.
+ * <p>
+ * The store itself retains several times less than {@link MapEmployeeStore},
+ * but {@link EmployeeRepository} keeps its aggregates and indexes on top of
+ * either, so the whole repository shrinks by much less; see
+ * {@code EmployeeStoreFootprintBenchmark} for the figures.
+ */
+public class ColumnarEmployeeStore implements EmployeeStore {
+
+    private static final int NO_DESIGNATION = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int[] ids;
+    private double[] salaries;
+    private int[] designations;
+    private String[] names;
+    private int size;
+
+    private final IdIndex index;
+
+    private final Map<String, Integer> designationCodes = new HashMap<String, Integer>();
+    private final List<String> designationValues = new ArrayList<String>();
+
+    public ColumnarEmployeeStore() {
+        this(1024);
+    }
+
+    public ColumnarEmployeeStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        ids = new int[capacity];
+        salaries = new double[capacity];
+        designations = new int[capacity];
+        names = new String[capacity];
+        index = new IdIndex(capacity);
+    }
+
+    @Override
+    public Employee get(int id) {
+        lock.readLock().lock();
+        try {
+            int slot = index.get(id);
+            return slot == IdIndex.FREE ? null : materialize(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        lock.readLock().lock();
+        try {
+            return index.get(id) != IdIndex.FREE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Employee put(int id, Employee employee) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.get(id);
+            if (slot == IdIndex.FREE) {
+                append(id, employee);
+                return null;
+            }
+            Employee previous = materialize(slot);
+            write(slot, id, employee);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Employee putIfAbsent(int id, Employee employee) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.get(id);
+            if (slot != IdIndex.FREE) {
+                return materialize(slot);
+            }
+            append(id, employee);
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Employee replace(int id, Employee employee) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.get(id);
+            if (slot == IdIndex.FREE) {
+                return null;
+            }
+            Employee previous = materialize(slot);
+            write(slot, id, employee);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Employee remove(int id) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.get(id);
+            if (slot == IdIndex.FREE) {
+                return null;
+            }
+            Employee previous = materialize(slot);
+            index.remove(id);
+            int last = --size;
+            if (slot != last) {
+                ids[slot] = ids[last];
+                salaries[slot] = salaries[last];
+                designations[slot] = designations[last];
+                names[slot] = names[last];
+                index.put(ids[slot], slot);
+            }
+            names[last] = null;
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Employee[] toArray() {
+        lock.readLock().lock();
+        try {
+            Employee[] employees = new Employee[size];
+            for (int slot = 0; slot < size; slot++) {
+                employees[slot] = materialize(slot);
+            }
+            return employees;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of distinct designations seen so far.
+     */
+    public int designationCount() {
+        lock.readLock().lock();
+        try {
+            return designationValues.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void append(int id, Employee employee) {
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            salaries = Arrays.copyOf(salaries, capacity);
+            designations = Arrays.copyOf(designations, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        int slot = size++;
+        write(slot, id, employee);
+        index.put(id, slot);
+    }
+
+    private void write(int slot, int id, Employee employee) {
+        ids[slot] = id;
+        salaries[slot] = employee.getSalary();
+        designations[slot] = encode(employee.getDesignation());
+        names[slot] = employee.getName();
+    }
+
+    private Employee materialize(int slot) {
+        int code = designations[slot];
+        return new Employee(String.valueOf(ids[slot]), names[slot],
+                code == NO_DESIGNATION ? null : designationValues.get(code), salaries[slot]);
+    }
+
+    private int encode(String designation) {
+        if (designation == null) {
+            return NO_DESIGNATION;
+        }
+        Integer code = designationCodes.get(designation);
+        if (code == null) {
+            code = designationValues.size();
+            designationValues.add(designation);
+            designationCodes.put(designation, code);
+        }
+        return code;
+    }
+
+    /**
+     * Open-addressing map from id to slot with linear probing. Removal shifts
+     * the following entries back instead of leaving tombstones, so lookups
+     * never slow down after many deletes.
+     */
+    private static final class IdIndex {
+        static final int FREE = -1;
+
+        // kept at or below 2/3 full
+        private int[] keys;
+        private int[] slots;
+        private int mask;
+        private int count;
+
+        IdIndex(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 3 / 2) - 1) << 1;
+            allocate(capacity);
+        }
+
+        int get(int key) {
+            int i = hash(key) & mask;
+            while (slots[i] != FREE) {
+                if (keys[i] == key) {
+                    return slots[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return FREE;
+        }
+
+        void put(int key, int slot) {
+            if ((count + 1) * 3 > slots.length * 2) {
+                grow();
+            }
+            int i = hash(key) & mask;
+            while (slots[i] != FREE) {
+                if (keys[i] == key) {
+                    slots[i] = slot;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            slots[i] = slot;
+            count++;
+        }
+
+        void remove(int key) {
+            int i = hash(key) & mask;
+            while (slots[i] != FREE && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (slots[i] == FREE) {
+                return;
+            }
+            slots[i] = FREE;
+            count--;
+            // move back every following entry whose home position no longer
+            // lies between the hole and where it sits
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (slots[j] == FREE) {
+                    return;
+                }
+                int home = hash(keys[j]) & mask;
+                boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!stays) {
+                    keys[i] = keys[j];
+                    slots[i] = slots[j];
+                    slots[j] = FREE;
+                    i = j;
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldSlots = slots;
+            allocate(oldSlots.length * 2);
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != FREE) {
+                    put(oldKeys[i], oldSlots[i]);
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            slots = new int[capacity];
+            Arrays.fill(slots, FREE);
+            mask = capacity - 1;
+            count = 0;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
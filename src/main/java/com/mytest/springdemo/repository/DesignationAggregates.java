@@ -0,0 +1,304 @@
+package com.mytest.springdemo.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.mytest.springdemo.model.DesignationStats;
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Count, salary sum, min and max per designation, kept up to date one write
+ * at a time so a read costs O(designations) rather than O(employees).
+ * <p>
+ * Sums are exact {@link BigDecimal}s, so removing an employee undoes adding
+ * it without floating-point drift and a recompute can be compared for
+ * equality. Min and max survive removals because each designation keeps its
+ * salaries as a sorted multiset. Employees without a designation are counted
+ * under {@code ""}.
+ * <p>
+ * Each designation is split into {@value #STRIPES} stripes chosen by employee
+ * id, each with its own lock, count, sum and salaries, so writes to a large
+ * designation are spread over several monitors instead of queuing on one. A
+ * read locks the stripes one after the other and merges them; min and max
+ * are found only then. The price is that a read costs O(stripes) per
+ * designation and is not an atomic snapshot: a write that lands while the
+ * stripes are being merged may be partly reflected, as it may be with any
+ * read that overlaps a write.
+ * <p>
+ * Concurrent writes to the same id may apply their removal and addition in
+ * either order. Both go to the stripe of that id, where a salary whose count
+ * is briefly negative is not taken for the min or max. The aggregates are
+ * exact once those writes have returned.
+ */
+final class DesignationAggregates {
+
+    private static final String NONE = "";
+
+    // stripes per designation (a power of two)
+    static final int STRIPES = 16;
+
+    // ranges at or below this size are aggregated by a single fork-join task
+    private static final int RECOMPUTE_THRESHOLD = 4096;
+
+    private static final Comparator<DesignationStats> BY_DESIGNATION = new Comparator<DesignationStats>() {
+        @Override
+        public int compare(DesignationStats a, DesignationStats b) {
+            return a.getDesignation().compareTo(b.getDesignation());
+        }
+    };
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+
+    /**
+     * Applies one write to the employee with id {@code id}: {@code removed}
+     * is the employee that was replaced or deleted, {@code added} the one now
+     * stored. Either may be null.
+     */
+    void apply(int id, Employee removed, Employee added) {
+        if (removed != null) {
+            bucket(removed.getDesignation()).stripe(id).remove(removed.getSalary());
+        }
+        if (added != null) {
+            bucket(added.getDesignation()).stripe(id).add(added.getSalary());
+        }
+    }
+
+    /**
+     * Current statistics of every designation with at least one employee,
+     * ordered by designation.
+     */
+    DesignationStats[] snapshot() {
+        List<DesignationStats> stats = new ArrayList<DesignationStats>(buckets.size());
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            DesignationStats s = entry.getValue().toStats(entry.getKey());
+            if (s != null) {
+                stats.add(s);
+            }
+        }
+        DesignationStats[] sorted = stats.toArray(new DesignationStats[stats.size()]);
+        Arrays.sort(sorted, BY_DESIGNATION);
+        return sorted;
+    }
+
+    /**
+     * Designations whose aggregates differ from {@code other}, in no
+     * particular order.
+     */
+    List<String> differences(DesignationAggregates other) {
+        List<String> differing = new ArrayList<String>();
+        Map<String, DesignationStats> mine = byDesignation(snapshot());
+        Map<String, DesignationStats> theirs = byDesignation(other.snapshot());
+        for (Map.Entry<String, DesignationStats> entry : mine.entrySet()) {
+            if (!sameStats(entry.getValue(), theirs.remove(entry.getKey()))) {
+                differing.add(entry.getKey());
+            }
+        }
+        differing.addAll(theirs.keySet());
+        return differing;
+    }
+
+    /**
+     * Builds the aggregates from scratch, splitting {@code employees} across
+     * the common fork-join pool.
+     */
+    static DesignationAggregates compute(Employee[] employees) {
+        DesignationAggregates aggregates = new DesignationAggregates();
+        aggregates.buckets.putAll(ForkJoinPool.commonPool().invoke(new ComputeTask(employees, 0, employees.length)));
+        return aggregates;
+    }
+
+    private Bucket bucket(String designation) {
+        String key = designation == null ? NONE : designation;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            Bucket created = new Bucket();
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    private static Map<String, DesignationStats> byDesignation(DesignationStats[] stats) {
+        Map<String, DesignationStats> map = new HashMap<String, DesignationStats>();
+        for (DesignationStats s : stats) {
+            map.put(s.getDesignation(), s);
+        }
+        return map;
+    }
+
+    private static boolean sameStats(DesignationStats a, DesignationStats b) {
+        return b != null && a.getCount() == b.getCount() && a.getSum() == b.getSum()
+                && a.getMin() == b.getMin() && a.getMax() == b.getMax();
+    }
+
+    /**
+     * Aggregates of one designation, as one {@link Stripe} per id stripe.
+     * Empty buckets are kept rather than removed, so a writer never updates a
+     * bucket that is no longer mapped.
+     */
+    private static final class Bucket {
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        Bucket() {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        Stripe stripe(int id) {
+            int h = id * 0x9E3779B9;
+            return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        }
+
+        void merge(Bucket other) {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i].merge(other.stripes[i]);
+            }
+        }
+
+        DesignationStats toStats(String designation) {
+            long count = 0;
+            BigDecimal sum = BigDecimal.ZERO;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    count += stripe.count;
+                    sum = sum.add(stripe.sum);
+                    Double low = stripe.lowest();
+                    if (low != null) {
+                        min = Math.min(min, low.doubleValue());
+                        max = Math.max(max, stripe.highest().doubleValue());
+                    }
+                }
+            }
+            if (count <= 0 || min > max) {
+                return null;
+            }
+            return new DesignationStats(designation, count, sum.doubleValue(), min, max);
+        }
+    }
+
+    /**
+     * Aggregates of the employees of one designation whose ids fall in one
+     * stripe.
+     */
+    private static final class Stripe {
+        private long count;
+        private BigDecimal sum = BigDecimal.ZERO;
+        // salary -> number of employees earning it
+        private final TreeMap<Double, Integer> salaries = new TreeMap<Double, Integer>();
+
+        synchronized void add(double salary) {
+            count++;
+            sum = sum.add(new BigDecimal(salary));
+            adjust(salary, 1);
+        }
+
+        synchronized void remove(double salary) {
+            count--;
+            sum = sum.subtract(new BigDecimal(salary));
+            adjust(salary, -1);
+        }
+
+        synchronized void merge(Stripe other) {
+            count += other.count;
+            sum = sum.add(other.sum);
+            for (Map.Entry<Double, Integer> entry : other.salaries.entrySet()) {
+                adjust(entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * Two writes to the same id may apply out of order, so a salary can be
+         * removed before its addition lands and its count briefly go negative.
+         */
+        private void adjust(double salary, int delta) {
+            Integer n = salaries.get(salary);
+            int updated = (n == null ? 0 : n) + delta;
+            if (updated == 0) {
+                salaries.remove(salary);
+            } else {
+                salaries.put(salary, updated);
+            }
+        }
+
+        /**
+         * Lowest salary with a positive count, or null. Skips salaries whose
+         * removal has landed before their addition.
+         */
+        Double lowest() {
+            for (Map.Entry<Double, Integer> entry : salaries.entrySet()) {
+                if (entry.getValue().intValue() > 0) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+
+        Double highest() {
+            for (Map.Entry<Double, Integer> entry : salaries.descendingMap().entrySet()) {
+                if (entry.getValue().intValue() > 0) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class ComputeTask extends RecursiveTask<Map<String, Bucket>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Employee[] employees;
+        private final int from;
+        private final int to;
+
+        ComputeTask(Employee[] employees, int from, int to) {
+            this.employees = employees;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<String, Bucket> compute() {
+            if (to - from <= RECOMPUTE_THRESHOLD) {
+                Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+                for (int i = from; i < to; i++) {
+                    String key = employees[i].getDesignation() == null ? NONE : employees[i].getDesignation();
+                    Bucket bucket = buckets.get(key);
+                    if (bucket == null) {
+                        bucket = new Bucket();
+                        buckets.put(key, bucket);
+                    }
+                    bucket.stripe(EmployeeRepository.parseId(employees[i].getEmpId())).add(employees[i].getSalary());
+                }
+                return buckets;
+            }
+            int mid = (from + to) >>> 1;
+            ComputeTask left = new ComputeTask(employees, from, mid);
+            left.fork();
+            Map<String, Bucket> right = new ComputeTask(employees, mid, to).compute();
+            Map<String, Bucket> merged = left.join();
+            for (Map.Entry<String, Bucket> entry : right.entrySet()) {
+                Bucket bucket = merged.get(entry.getKey());
+                if (bucket == null) {
+                    merged.put(entry.getKey(), entry.getValue());
+                } else {
+                    bucket.merge(entry.getValue());
+                }
+            }
+            return merged;
+        }
+    }
+}
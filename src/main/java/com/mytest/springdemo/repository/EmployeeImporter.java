@@ -0,0 +1,152 @@
+package com.mytest.springdemo.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mytest.springdemo.codec.EmployeeRowReader;
+import com.mytest.springdemo.model.Employee;
+import com.mytest.springdemo.model.ImportError;
+import com.mytest.springdemo.model.ImportSummary;
+
+/**
+ * Loads employees from an NDJSON or CSV stream into the
+ * {@link EmployeeRepository}.
+ * <p>
+ * Records are parsed one at a time and applied in batches of
+ * {@code employee.import.batch-size} with {@link EmployeeRepository#saveAll},
+ * so the repository version moves once per batch. The stream is read on the
+ * calling thread, and the next record is read only after the previous batch
+ * has been applied. A slow repository therefore slows the reading of the
+ * request body instead of building up a backlog, and memory stays at one
+ * batch however large the payload is.
+ * <p>
+ * Invalid records are counted and skipped. Only the first
+ * {@link #MAX_REPORTED_ERRORS} are described in the summary.
+ */
+@Component
+public class EmployeeImporter {
+
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private final EmployeeRepository employeeRepository;
+    private final ObjectReader employeeReader;
+    private final int batchSize;
+    private final int maxLineLength;
+
+    @Autowired
+    public EmployeeImporter(EmployeeRepository employeeRepository, ObjectMapper objectMapper,
+            @Value("${employee.import.batch-size:1000}") int batchSize,
+            @Value("${employee.import.max-line-length:8192}") int maxLineLength) {
+        this.employeeRepository = employeeRepository;
+        this.employeeReader = objectMapper.readerFor(Employee.class);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxLineLength = Math.max(64, maxLineLength);
+    }
+
+    /**
+     * Reads {@code in} to the end and stores every valid record.
+     *
+     * @param replace whether records replace existing employees with the same
+     *        id; if false they are rejected instead
+     * @throws IllegalArgumentException if the CSV header is incomplete;
+     *         nothing has been stored at that point
+     */
+    public ImportSummary importFrom(InputStream in, Charset charset, EmployeeRowReader.Format format,
+            boolean replace) throws IOException {
+
+        long start = System.nanoTime();
+        EmployeeRowReader reader = new EmployeeRowReader(in, charset, format, employeeReader, maxLineLength);
+        Batch batch = new Batch(batchSize);
+        Result result = new Result();
+        while (reader.next()) {
+            String error = reader.getError();
+            if (error == null) {
+                error = validate(reader.getEmployee());
+            }
+            if (error != null) {
+                result.reject(reader.getLineNumber(), error);
+                continue;
+            }
+            batch.add(reader.getEmployee(), reader.getLineNumber());
+            if (batch.size == batchSize) {
+                apply(batch, replace, result);
+            }
+        }
+        if (batch.size > 0) {
+            apply(batch, replace, result);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        return new ImportSummary(result.accepted, result.rejected, result.batches, elapsedMillis, result.errors,
+                result.rejected > result.errors.size());
+    }
+
+    private void apply(Batch batch, boolean replace, Result result) {
+        boolean[] saved = employeeRepository.saveAll(batch.employees, replace);
+        for (int i = 0; i < saved.length; i++) {
+            if (saved[i]) {
+                result.accepted++;
+            } else {
+                result.reject(batch.lines[i], "empId already exists: " + batch.employees.get(i).getEmpId());
+            }
+        }
+        result.batches++;
+        batch.clear();
+    }
+
+    private static String validate(Employee employee) {
+        try {
+            EmployeeRepository.parseId(employee.getEmpId());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        if (Double.isNaN(employee.getSalary()) || Double.isInfinite(employee.getSalary())) {
+            return "salary must be a finite number: " + employee.getSalary();
+        }
+        return null;
+    }
+
+    private static final class Batch {
+        final List<Employee> employees;
+        // line number of each employee, for rejections found while applying
+        final long[] lines;
+        int size;
+
+        Batch(int capacity) {
+            employees = new ArrayList<Employee>(capacity);
+            lines = new long[capacity];
+        }
+
+        void add(Employee employee, long line) {
+            employees.add(employee);
+            lines[size++] = line;
+        }
+
+        void clear() {
+            employees.clear();
+            size = 0;
+        }
+    }
+
+    private static final class Result {
+        long accepted;
+        long rejected;
+        long batches;
+        final List<ImportError> errors = new ArrayList<ImportError>();
+
+        void reject(long line, String reason) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportError(line, reason));
+            }
+        }
+    }
+}
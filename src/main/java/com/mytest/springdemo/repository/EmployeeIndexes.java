@@ -0,0 +1,285 @@
+package com.mytest.springdemo.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiFunction;
+
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Secondary indexes over the stored employees, kept up to date one write at a
+ * time: all ids in id order, ids per designation, (salary, id) in salary order
+ * and (lower-cased name, id) in name order. A query walks only the matching part of an index,
+ * so its cost grows with the page it returns rather than with the number of
+ * employees.
+ * <p>
+ * Index entries only point at ids. Every hit is read back from the
+ * {@link EmployeeStore} and kept only if the stored employee still matches
+ * the entry. An employee whose write is in progress may be missing from a
+ * page, but a returned employee always matches the query as stored.
+ * <p>
+ * Entries are counted rather than present or absent, as in
+ * {@link DesignationAggregates}. Concurrent writes to the same id may apply
+ * their removal before their addition, and an entry is live only while its
+ * count is positive. Employees without a designation are indexed under
+ * {@code ""}; employees without a name are not in the name index.
+ * <p>
+ * The id, designation and salary indexes hold one entry per employee each,
+ * so they are {@link SortedKeyIndex}es over primitive keys rather than skip
+ * lists of boxed ones. The name index keeps its keys as strings anyway and
+ * stays a skip list.
+ */
+final class EmployeeIndexes {
+
+    private static final String NONE = "";
+
+    private static final Integer ONE = Integer.valueOf(1);
+
+    private static final Integer MINUS_ONE = Integer.valueOf(-1);
+
+    // adds counts and drops the entry when they cancel out
+    private static final BiFunction<Integer, Integer, Integer> SUM = new BiFunction<Integer, Integer, Integer>() {
+        @Override
+        public Integer apply(Integer a, Integer b) {
+            int sum = a.intValue() + b.intValue();
+            return sum == 0 ? null : Integer.valueOf(sum);
+        }
+    };
+
+    // ids are scanned this many at a time, outside the index lock
+    private static final int SCAN_BATCH = 256;
+
+    private final SortedKeyIndex byId = new SortedKeyIndex();
+
+    private final ConcurrentHashMap<String, SortedKeyIndex> byDesignation = new ConcurrentHashMap<String, SortedKeyIndex>();
+
+    // (sortable salary, id)
+    private final SortedKeyIndex bySalary = new SortedKeyIndex();
+
+    private final ConcurrentSkipListMap<NameKey, Integer> byName = new ConcurrentSkipListMap<NameKey, Integer>();
+
+    /**
+     * Applies one write to the employee with id {@code id}: {@code removed}
+     * is the employee that was replaced or deleted, {@code added} the one now
+     * stored. Either may be null. Indexes whose key did not change are not
+     * touched.
+     */
+    void apply(int id, Employee removed, Employee added) {
+        if (removed == null && added != null) {
+            byId.add(id, 0, 1);
+        } else if (removed != null && added == null) {
+            byId.add(id, 0, -1);
+        }
+
+        String oldDesignation = removed == null ? null : designationKey(removed);
+        String newDesignation = added == null ? null : designationKey(added);
+        if (oldDesignation == null || !oldDesignation.equals(newDesignation)) {
+            if (oldDesignation != null) {
+                designationIds(oldDesignation).add(id, 0, -1);
+            }
+            if (newDesignation != null) {
+                designationIds(newDesignation).add(id, 0, 1);
+            }
+        }
+
+        if (removed == null || added == null || Double.compare(removed.getSalary(), added.getSalary()) != 0) {
+            if (removed != null) {
+                bySalary.add(SortedKeyIndex.sortable(removed.getSalary()), id, -1);
+            }
+            if (added != null) {
+                bySalary.add(SortedKeyIndex.sortable(added.getSalary()), id, 1);
+            }
+        }
+
+        String oldName = removed == null ? null : nameKey(removed.getName());
+        String newName = added == null ? null : nameKey(added.getName());
+        if (oldName == null || !oldName.equals(newName)) {
+            if (oldName != null) {
+                byName.merge(new NameKey(oldName, id), MINUS_ONE, SUM);
+            }
+            if (newName != null) {
+                byName.merge(new NameKey(newName, id), ONE, SUM);
+            }
+        }
+    }
+
+    /**
+     * Up to {@code limit} employees with an id greater than {@code afterId}
+     * (from the first if null), ordered by id.
+     */
+    Employee[] findPage(EmployeeStore store, Integer afterId, int limit) {
+        return pageById(byId, store, null, afterId, limit);
+    }
+
+    /**
+     * Up to {@code limit} employees with the given designation and an id
+     * greater than {@code afterId} (from the first if null), ordered by id.
+     */
+    Employee[] findByDesignation(EmployeeStore store, String designation, Integer afterId, int limit) {
+        String key = designation == null ? NONE : designation;
+        SortedKeyIndex ids = byDesignation.get(key);
+        if (ids == null) {
+            return new Employee[0];
+        }
+        return pageById(ids, store, key, afterId, limit);
+    }
+
+    /**
+     * Up to {@code limit} employees earning between {@code min} and
+     * {@code max} inclusive, ordered by salary and then id. Paging resumes
+     * after the employee given by {@code afterSalary} and {@code afterId}, if
+     * both are set.
+     */
+    Employee[] findBySalary(EmployeeStore store, double min, double max, Double afterSalary, Integer afterId,
+            int limit) {
+        long lowSalary = SortedKeyIndex.sortable(min);
+        int lowId = Integer.MIN_VALUE;
+        long highSalary = SortedKeyIndex.sortable(max);
+        boolean lowInclusive = true;
+        if (afterSalary != null && afterId != null) {
+            // the cursor is at or past the start of the range unless its salary is below min
+            long salary = SortedKeyIndex.sortable(afterSalary.doubleValue());
+            if (salary >= lowSalary) {
+                lowSalary = salary;
+                lowId = afterId.intValue();
+                lowInclusive = false;
+            }
+        }
+        if (lowSalary > highSalary || limit <= 0) {
+            return new Employee[0];
+        }
+        long[] salaries = new long[Math.min(limit, SCAN_BATCH)];
+        int[] ids = new int[salaries.length];
+        List<Employee> page = new ArrayList<Employee>(Math.min(limit, 256));
+        for (;;) {
+            int found = bySalary.scan(lowSalary, lowId, lowInclusive, highSalary, Integer.MAX_VALUE, salaries, ids);
+            for (int i = 0; i < found; i++) {
+                Employee employee = store.get(ids[i]);
+                if (employee != null && SortedKeyIndex.sortable(employee.getSalary()) == salaries[i]) {
+                    page.add(employee);
+                    if (page.size() == limit) {
+                        return page.toArray(new Employee[page.size()]);
+                    }
+                }
+            }
+            if (found < salaries.length) {
+                return page.toArray(new Employee[page.size()]);
+            }
+            lowSalary = salaries[found - 1];
+            lowId = ids[found - 1];
+            lowInclusive = false;
+        }
+    }
+
+    /**
+     * Up to {@code limit} employees whose name starts with {@code prefix},
+     * ignoring case, ordered by lower-cased name and then id. Paging resumes
+     * after the employee given by {@code afterName} and {@code afterId}, if
+     * both are set.
+     */
+    Employee[] findByNamePrefix(EmployeeStore store, String prefix, String afterName, Integer afterId, int limit) {
+        String normalized = nameKey(prefix);
+        NameKey low = new NameKey(normalized, Integer.MIN_VALUE);
+        boolean lowInclusive = true;
+        if (afterName != null && afterId != null) {
+            NameKey after = new NameKey(nameKey(afterName), afterId.intValue());
+            if (after.compareTo(low) >= 0) {
+                low = after;
+                lowInclusive = false;
+            }
+        }
+        List<Employee> page = new ArrayList<Employee>(Math.min(limit, 256));
+        for (Map.Entry<NameKey, Integer> entry : byName.tailMap(low, lowInclusive).entrySet()) {
+            NameKey key = entry.getKey();
+            if (!key.name.startsWith(normalized)) {
+                // names are sorted, so no later one has the prefix either
+                break;
+            }
+            if (entry.getValue().intValue() <= 0) {
+                continue;
+            }
+            Employee employee = store.get(key.id);
+            if (employee != null && key.name.equals(nameKey(employee.getName()))) {
+                page.add(employee);
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return page.toArray(new Employee[page.size()]);
+    }
+
+    /**
+     * Up to {@code limit} employees from an id-ordered index, after
+     * {@code afterId} if set. With a {@code designation}, only employees
+     * still stored with it are returned.
+     */
+    private static Employee[] pageById(SortedKeyIndex index, EmployeeStore store, String designation, Integer afterId,
+            int limit) {
+        if (limit <= 0) {
+            return new Employee[0];
+        }
+        long from = afterId == null ? Integer.MIN_VALUE : afterId.intValue();
+        boolean fromInclusive = afterId == null;
+        long[] ids = new long[Math.min(limit, SCAN_BATCH)];
+        int[] unused = new int[ids.length];
+        List<Employee> page = new ArrayList<Employee>(Math.min(limit, 256));
+        for (;;) {
+            int found = index.scan(from, 0, fromInclusive, Integer.MAX_VALUE, 0, ids, unused);
+            for (int i = 0; i < found; i++) {
+                Employee employee = store.get((int) ids[i]);
+                if (employee != null && (designation == null || designation.equals(designationKey(employee)))) {
+                    page.add(employee);
+                    if (page.size() == limit) {
+                        return page.toArray(new Employee[page.size()]);
+                    }
+                }
+            }
+            if (found < ids.length) {
+                return page.toArray(new Employee[page.size()]);
+            }
+            from = ids[found - 1];
+            fromInclusive = false;
+        }
+    }
+
+    private SortedKeyIndex designationIds(String designation) {
+        SortedKeyIndex ids = byDesignation.get(designation);
+        if (ids == null) {
+            SortedKeyIndex created = new SortedKeyIndex();
+            ids = byDesignation.putIfAbsent(designation, created);
+            if (ids == null) {
+                ids = created;
+            }
+        }
+        return ids;
+    }
+
+    private static String designationKey(Employee employee) {
+        return employee.getDesignation() == null ? NONE : employee.getDesignation();
+    }
+
+    private static String nameKey(String name) {
+        return name == null ? null : name.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class NameKey implements Comparable<NameKey> {
+        final String name;
+        final int id;
+
+        NameKey(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(NameKey other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Integer.compare(id, other.id);
+        }
+    }
+}
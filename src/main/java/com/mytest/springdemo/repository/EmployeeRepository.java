@@ -0,0 +1,338 @@
+package com.mytest.springdemo.repository;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import com.mytest.springdemo.model.DesignationStats;
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * In-memory employee store keyed by the numeric employee id.
+ * <p>
+ * Employees are kept in an {@link EmployeeStore} chosen by
+ * {@code employee.storage}: {@code map} (the default) keeps them in a
+ * {@link MapEmployeeStore}, where lookups are O(1) and never block and writes
+ * only lock the bin of the id being changed; {@code columnar} keeps them in a
+ * {@link ColumnarEmployeeStore}, which needs less heap for large datasets
+ * and creates the returned instances on each read. The aggregates and
+ * indexes below are kept on top of either store, so the choice of store
+ * changes only part of the repository's footprint;
+ * {@code EmployeeStoreFootprintBenchmark} measures both. Every write bumps
+ * {@link #version()}, which tells readers whether what they cached is still
+ * current.
+ * <p>
+ * Per-designation salary aggregates are updated by every write, so
+ * {@link #designationStats()} never scans the employees. Writes hold a shared
+ * lock and still run concurrently; only a full recompute of the aggregates
+ * holds it exclusively.
+ * <p>
+ * Indexes on id, designation, salary and name are maintained by the same
+ * writes and answer {@link #findPage} and the {@code findBy...} queries. A query reads only
+ * the part of an index that matches it, so its cost grows with the page
+ * size and not with the number of employees.
+ * <p>
+ * Stored instances are private copies and must be treated as read-only by
+ * callers.
+ */
+@Repository
+public class EmployeeRepository {
+
+    private final EmployeeStore employees;
+
+    private final AtomicLong version = new AtomicLong();
+
+    // written before the version bump, so a reader that sees a version also sees its time
+    private volatile long lastModified = System.currentTimeMillis();
+
+    private volatile DesignationAggregates aggregates = new DesignationAggregates();
+
+    private final EmployeeIndexes indexes = new EmployeeIndexes();
+
+    // shared by writes, exclusive for a recompute of the aggregates
+    private final ReadWriteLock writeLock = new ReentrantReadWriteLock();
+
+    public EmployeeRepository() {
+        this(new MapEmployeeStore());
+    }
+
+    @Autowired
+    public EmployeeRepository(@Value("${employee.storage:map}") String storage) {
+        this(createStore(storage));
+    }
+
+    public EmployeeRepository(EmployeeStore employees) {
+        this.employees = employees;
+    }
+
+    @PostConstruct
+    public void loadDefaults() {
+        save(new Employee("1", "emp1", "manager", 3000));
+        save(new Employee("2", "emp2", "individual contributor", 2000));
+        save(new Employee("3", "emp3", "individual contributor", 2000));
+    }
+
+    public Employee findById(int id) {
+        return employees.get(id);
+    }
+
+    public boolean exists(int id) {
+        return employees.containsKey(id);
+    }
+
+    /**
+     * Returns all employees ordered by id. The array is built on each call by
+     * walking the id index, so callers that serve it repeatedly should cache
+     * what they make of it against {@link #version()}; {@link #findPage} reads
+     * only the employees it returns.
+     */
+    public Employee[] findAll() {
+        return indexes.findPage(employees, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns up to {@code limit} employees whose id is greater than
+     * {@code afterId}, ordered by id. Passing null starts from the first
+     * employee. The cursor is a key rather than an offset, so pages stay
+     * stable while other employees are added or removed. The page is read
+     * from the id index, so its cost grows with {@code limit} and not with the
+     * number of employees, and writes never force a rebuild.
+     */
+    public Employee[] findPage(Integer afterId, int limit) {
+        return indexes.findPage(employees, afterId, limit);
+    }
+
+    /**
+     * Returns up to {@code limit} employees with the given designation and an
+     * id greater than {@code afterId}, ordered by id. Passing null starts from
+     * the first employee.
+     */
+    public Employee[] findByDesignation(String designation, Integer afterId, int limit) {
+        return indexes.findByDesignation(employees, designation, afterId, limit);
+    }
+
+    /**
+     * Returns up to {@code limit} employees earning between {@code min} and
+     * {@code max} inclusive, ordered by salary and then id. The next page
+     * starts after the salary and id of the last employee of this one; pass
+     * nulls for the first page.
+     */
+    public Employee[] findBySalaryRange(double min, double max, Double afterSalary, Integer afterId, int limit) {
+        return indexes.findBySalary(employees, min, max, afterSalary, afterId, limit);
+    }
+
+    /**
+     * Returns up to {@code limit} employees whose name starts with
+     * {@code prefix}, ignoring case, ordered by name and then id. The next
+     * page starts after the name and id of the last employee of this one;
+     * pass nulls for the first page.
+     */
+    public Employee[] findByNamePrefix(String prefix, String afterName, Integer afterId, int limit) {
+        return indexes.findByNamePrefix(employees, prefix, afterName, afterId, limit);
+    }
+
+    public int count() {
+        return employees.size();
+    }
+
+    /**
+     * Headcount and salary statistics per designation, ordered by designation.
+     */
+    public DesignationStats[] designationStats() {
+        return aggregates.snapshot();
+    }
+
+    /**
+     * Recomputes the designation aggregates from all employees in parallel and
+     * replaces the incrementally maintained ones with the result. Writes wait
+     * until the recompute is done.
+     *
+     * @return the designations whose incremental aggregates were wrong; empty
+     *         when they matched
+     */
+    public List<String> recomputeDesignationStats() {
+        writeLock.writeLock().lock();
+        try {
+            DesignationAggregates recomputed = DesignationAggregates.compute(employees.toArray());
+            List<String> differing = aggregates.differences(recomputed);
+            aggregates = recomputed;
+            return differing;
+        } finally {
+            writeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a counter that changes on every successful write.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Returns the time of the last successful write in epoch milliseconds.
+     */
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Inserts or replaces the employee with the same id.
+     *
+     * @return the previously stored employee, or null
+     * @throws IllegalArgumentException if the employee id is not numeric or
+     *         the salary is not a finite number
+     */
+    public Employee save(Employee employee) {
+        int id = parseId(employee.getEmpId());
+        Employee stored = copyOf(employee, id);
+        writeLock.readLock().lock();
+        try {
+            Employee previous = employees.put(id, stored);
+            aggregates.apply(id, previous, stored);
+            indexes.apply(id, previous, stored);
+            changed();
+            return previous;
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the employee only if no employee with the same id exists.
+     *
+     * @return true if the employee was added
+     */
+    public boolean create(Employee employee) {
+        int id = parseId(employee.getEmpId());
+        Employee stored = copyOf(employee, id);
+        writeLock.readLock().lock();
+        try {
+            if (employees.putIfAbsent(id, stored) != null) {
+                return false;
+            }
+            aggregates.apply(id, null, stored);
+            indexes.apply(id, null, stored);
+            changed();
+            return true;
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a batch of employees with a single version bump, so cached
+     * responses are invalidated once per batch instead of once per employee.
+     * With {@code replace} false, employees whose id already exists are left
+     * as they are.
+     *
+     * @return for each employee, whether it was stored
+     * @throws IllegalArgumentException as for {@link #save(Employee)}, before
+     *         anything is stored
+     */
+    public boolean[] saveAll(List<Employee> batch, boolean replace) {
+        int[] ids = new int[batch.size()];
+        Employee[] stored = new Employee[batch.size()];
+        for (int i = 0; i < stored.length; i++) {
+            ids[i] = parseId(batch.get(i).getEmpId());
+            stored[i] = copyOf(batch.get(i), ids[i]);
+        }
+        boolean[] saved = new boolean[stored.length];
+        boolean any = false;
+        writeLock.readLock().lock();
+        try {
+            for (int i = 0; i < stored.length; i++) {
+                Employee previous = replace ? employees.put(ids[i], stored[i]) : employees.putIfAbsent(ids[i], stored[i]);
+                if (replace || previous == null) {
+                    aggregates.apply(ids[i], previous, stored[i]);
+                    indexes.apply(ids[i], previous, stored[i]);
+                    saved[i] = true;
+                    any = true;
+                }
+            }
+            if (any) {
+                changed();
+            }
+            return saved;
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces an existing employee.
+     *
+     * @return the previous employee, or null if there was none to replace
+     */
+    public Employee update(Employee employee) {
+        int id = parseId(employee.getEmpId());
+        Employee stored = copyOf(employee, id);
+        writeLock.readLock().lock();
+        try {
+            Employee previous = employees.replace(id, stored);
+            if (previous != null) {
+                aggregates.apply(id, previous, stored);
+                indexes.apply(id, previous, stored);
+                changed();
+            }
+            return previous;
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    public Employee delete(int id) {
+        writeLock.readLock().lock();
+        try {
+            Employee previous = employees.remove(id);
+            if (previous != null) {
+                aggregates.apply(id, previous, null);
+                indexes.apply(id, previous, null);
+                changed();
+            }
+            return previous;
+        } finally {
+            writeLock.readLock().unlock();
+        }
+    }
+
+    private void changed() {
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    private static EmployeeStore createStore(String storage) {
+        if ("map".equalsIgnoreCase(storage)) {
+            return new MapEmployeeStore();
+        }
+        if ("columnar".equalsIgnoreCase(storage)) {
+            return new ColumnarEmployeeStore();
+        }
+        throw new IllegalArgumentException("employee.storage must be map or columnar: " + storage);
+    }
+
+    private static Employee copyOf(Employee employee, int id) {
+        if (Double.isNaN(employee.getSalary()) || Double.isInfinite(employee.getSalary())) {
+            throw new IllegalArgumentException("salary must be a finite number: " + employee.getSalary());
+        }
+        return new Employee(String.valueOf(id), employee.getName(), employee.getDesignation(), employee.getSalary());
+    }
+
+    public static int parseId(String empId) {
+        if (empId == null) {
+            throw new IllegalArgumentException("empId is required");
+        }
+        try {
+            return Integer.parseInt(empId.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("empId must be numeric: " + empId);
+        }
+    }
+}
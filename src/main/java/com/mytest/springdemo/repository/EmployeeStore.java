@@ -0,0 +1,33 @@
+package com.mytest.springdemo.repository;
+
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Primary storage behind {@link EmployeeRepository}, keyed by the numeric
+ * employee id. Each operation is atomic for its id, with the semantics of
+ * the {@link java.util.concurrent.ConcurrentMap} method of the same name.
+ * <p>
+ * Employees passed in are owned by the store afterwards; employees returned
+ * must be treated as read-only.
+ */
+public interface EmployeeStore {
+
+    Employee get(int id);
+
+    boolean containsKey(int id);
+
+    Employee put(int id, Employee employee);
+
+    Employee putIfAbsent(int id, Employee employee);
+
+    Employee replace(int id, Employee employee);
+
+    Employee remove(int id);
+
+    int size();
+
+    /**
+     * All employees in no particular order.
+     */
+    Employee[] toArray();
+}
@@ -0,0 +1,57 @@
+package com.mytest.springdemo.repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mytest.springdemo.model.Employee;
+
+/**
+ * Keeps each employee as an {@link Employee} object in a
+ * {@link ConcurrentHashMap}. Lookups return the stored instance without
+ * copying and never block; writes only lock the bin of the id being changed.
+ */
+public class MapEmployeeStore implements EmployeeStore {
+
+    private static final Employee[] EMPTY = new Employee[0];
+
+    private final ConcurrentHashMap<Integer, Employee> employees = new ConcurrentHashMap<Integer, Employee>(1024);
+
+    @Override
+    public Employee get(int id) {
+        return employees.get(id);
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return employees.containsKey(id);
+    }
+
+    @Override
+    public Employee put(int id, Employee employee) {
+        return employees.put(id, employee);
+    }
+
+    @Override
+    public Employee putIfAbsent(int id, Employee employee) {
+        return employees.putIfAbsent(id, employee);
+    }
+
+    @Override
+    public Employee replace(int id, Employee employee) {
+        return employees.replace(id, employee);
+    }
+
+    @Override
+    public Employee remove(int id) {
+        return employees.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return employees.size();
+    }
+
+    @Override
+    public Employee[] toArray() {
+        return employees.values().toArray(EMPTY);
+    }
+}
@@ -0,0 +1,224 @@
+package com.mytest.springdemo.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sorted set of {@code (long, int)} keys with a count per key, kept in
+ * primitive arrays. Keys compare by the long and then by the int; the id
+ * index uses the id as the long, the salary index the salary (see
+ * {@link #sortable(double)}) with the id as the int.
+ * <p>
+ * Entries are held in leaves of up to {@value #LEAF_CAPACITY} keys, each a
+ * sorted run of parallel arrays, and the leaves are in key order. A key costs
+ * a slot in each array instead of the skip list node, index nodes and boxed
+ * key and count of a {@code ConcurrentSkipListMap}. Inserting shifts at most one leaf, and
+ * keys appended past the end, as ascending ids are, fill each leaf before a
+ * new one is started.
+ * <p>
+ * A key stays in the index while its count is not zero and is live while
+ * the count is positive, which is what {@link EmployeeIndexes} needs to
+ * apply a removal before its addition. Scans share a lock and updates take it
+ * exclusively; a scan copies keys out a batch at a time, so callers do their
+ * per-key work without holding the lock.
+ */
+final class SortedKeyIndex {
+
+    static final int LEAF_CAPACITY = 256;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // never empty; only the first leaf may have no keys
+    private final List<Leaf> leaves = new ArrayList<Leaf>();
+
+    SortedKeyIndex() {
+        leaves.add(new Leaf());
+    }
+
+    /**
+     * Maps a double to a long with the same order as {@link Double#compare}.
+     */
+    static long sortable(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Adds {@code delta} to the count of the key, inserting it if absent and
+     * removing it when the count drops to zero.
+     */
+    void add(long hi, int lo, int delta) {
+        lock.writeLock().lock();
+        try {
+            int leafIndex = leafFor(hi, lo);
+            Leaf leaf = leaves.get(leafIndex);
+            int position = leaf.search(hi, lo);
+            if (position >= 0) {
+                leaf.counts[position] += delta;
+                if (leaf.counts[position] == 0) {
+                    leaf.remove(position);
+                    if (leaf.size == 0 && leaves.size() > 1) {
+                        leaves.remove(leafIndex);
+                    }
+                }
+                return;
+            }
+            insert(leafIndex, -position - 1, hi, lo, delta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies up to {@code his.length} live keys from {@code (fromHi, fromLo)}
+     * up to {@code (toHi, toLo)} inclusive into {@code his} and {@code los},
+     * in key order, and returns how many were copied. The start is included
+     * only if {@code fromInclusive}. Fewer keys than requested means the
+     * range has been exhausted.
+     */
+    int scan(long fromHi, int fromLo, boolean fromInclusive, long toHi, int toLo, long[] his, int[] los) {
+        lock.readLock().lock();
+        try {
+            int leafIndex = leafFor(fromHi, fromLo);
+            Leaf leaf = leaves.get(leafIndex);
+            int position = leaf.search(fromHi, fromLo);
+            if (position < 0) {
+                position = -position - 1;
+            } else if (!fromInclusive) {
+                position++;
+            }
+            int count = 0;
+            while (count < his.length) {
+                if (position == leaf.size) {
+                    if (++leafIndex == leaves.size()) {
+                        break;
+                    }
+                    leaf = leaves.get(leafIndex);
+                    position = 0;
+                    continue;
+                }
+                long hi = leaf.his[position];
+                int lo = leaf.los[position];
+                if (hi > toHi || (hi == toHi && lo > toLo)) {
+                    break;
+                }
+                if (leaf.counts[position] > 0) {
+                    his[count] = hi;
+                    los[count] = lo;
+                    count++;
+                }
+                position++;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index of the first leaf whose last key is not below the key, or of the
+     * last leaf if every key is below it.
+     */
+    private int leafFor(long hi, int lo) {
+        int low = 0;
+        int high = leaves.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Leaf leaf = leaves.get(middle);
+            int last = leaf.size - 1;
+            if (compare(leaf.his[last], leaf.los[last], hi, lo) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void insert(int leafIndex, int position, long hi, int lo, int count) {
+        Leaf leaf = leaves.get(leafIndex);
+        if (leaf.size < LEAF_CAPACITY) {
+            leaf.insert(position, hi, lo, count);
+            return;
+        }
+        Leaf next = new Leaf();
+        leaves.add(leafIndex + 1, next);
+        if (position == LEAF_CAPACITY && leafIndex == leaves.size() - 2) {
+            // appending past the last key: keep the full leaf full
+            next.insert(0, hi, lo, count);
+            return;
+        }
+        int half = LEAF_CAPACITY / 2;
+        leaf.moveTail(half, next);
+        if (position <= half) {
+            leaf.insert(position, hi, lo, count);
+        } else {
+            next.insert(position - half, hi, lo, count);
+        }
+    }
+
+    private static int compare(long hi, int lo, long otherHi, int otherLo) {
+        int byHi = Long.compare(hi, otherHi);
+        return byHi != 0 ? byHi : Integer.compare(lo, otherLo);
+    }
+
+    private static final class Leaf {
+        final long[] his = new long[LEAF_CAPACITY];
+        final int[] los = new int[LEAF_CAPACITY];
+        final int[] counts = new int[LEAF_CAPACITY];
+        int size;
+
+        /**
+         * Position of the key, or {@code -(insertion point) - 1} if absent.
+         */
+        int search(long hi, int lo) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int order = compare(his[middle], los[middle], hi, lo);
+                if (order < 0) {
+                    low = middle + 1;
+                } else if (order > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void insert(int position, long hi, int lo, int count) {
+            int tail = size - position;
+            System.arraycopy(his, position, his, position + 1, tail);
+            System.arraycopy(los, position, los, position + 1, tail);
+            System.arraycopy(counts, position, counts, position + 1, tail);
+            his[position] = hi;
+            los[position] = lo;
+            counts[position] = count;
+            size++;
+        }
+
+        void remove(int position) {
+            int tail = size - position - 1;
+            System.arraycopy(his, position + 1, his, position, tail);
+            System.arraycopy(los, position + 1, los, position, tail);
+            System.arraycopy(counts, position + 1, counts, position, tail);
+            size--;
+        }
+
+        /**
+         * Moves the keys from {@code from} on into the empty leaf {@code next}.
+         */
+        void moveTail(int from, Leaf next) {
+            int moved = size - from;
+            System.arraycopy(his, from, next.his, 0, moved);
+            System.arraycopy(los, from, next.los, 0, moved);
+            System.arraycopy(counts, from, next.counts, 0, moved);
+            next.size = moved;
+            size = from;
+        }
+    }
+}
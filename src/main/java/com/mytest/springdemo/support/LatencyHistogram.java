@@ -0,0 +1,169 @@
+package com.mytest.springdemo.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution in the style of HdrHistogram: buckets are linear
+ * within each power of two, so every recorded value keeps two significant
+ * digits (relative error under 1.6%) from nanoseconds up to
+ * {@link #MAX_TRACKABLE_NANOS}. Longer values count as that maximum.
+ * <p>
+ * Recording is allocation-free and lock-free, so it can sit on every request
+ * and every SQL execution. Failed calls are counted separately and kept out of
+ * the distribution, so fast failures do not flatter the percentiles.
+ */
+public class LatencyHistogram {
+
+    // 2^SUB_BUCKET_BITS linear sub-buckets per power of two
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    /** About 18 minutes; anything slower is clamped. */
+    public static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+
+    private static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile long startedAt = System.nanoTime();
+
+    /**
+     * Records one call.
+     *
+     * @param nanos elapsed time of the call
+     * @param succeeded {@code false} to count the call as an error only
+     */
+    public void record(long nanos, boolean succeeded) {
+        if (!succeeded) {
+            errors.increment();
+            return;
+        }
+        long value = Math.min(Math.max(nanos, 0L), MAX_TRACKABLE_NANOS);
+        counts.incrementAndGet(indexOf(value));
+        totalNanos.add(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records a successful call that started at {@code startNanos}
+     * ({@link System#nanoTime()}).
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos, true);
+    }
+
+    /**
+     * The smallest recorded value that {@code percentile} percent of the calls
+     * did not exceed, in nanoseconds; 0 if nothing was recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        return valueAtPercentile(snapshot, total, percentile);
+    }
+
+    /**
+     * Count, errors, throughput since creation or the last {@link #reset()},
+     * and mean, p50, p99, p99.9 and max in microseconds.
+     */
+    public Map<String, Number> getMetrics() {
+        long[] snapshot = snapshot();
+        long count = 0;
+        for (long c : snapshot) {
+            count += c;
+        }
+        long errorCount = errors.sum();
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+
+        Map<String, Number> metrics = new LinkedHashMap<String, Number>();
+        metrics.put("count", Long.valueOf(count));
+        metrics.put("errors", Long.valueOf(errorCount));
+        metrics.put("perSecond", Double.valueOf(round(seconds > 0 ? (count + errorCount) / seconds : 0)));
+        metrics.put("meanMicros", Double.valueOf(micros(count == 0 ? 0 : totalNanos.sum() / count)));
+        metrics.put("p50Micros", Double.valueOf(micros(valueAtPercentile(snapshot, count, 50.0))));
+        metrics.put("p99Micros", Double.valueOf(micros(valueAtPercentile(snapshot, count, 99.0))));
+        metrics.put("p999Micros", Double.valueOf(micros(valueAtPercentile(snapshot, count, 99.9))));
+        metrics.put("maxMicros", Double.valueOf(micros(maxNanos.get())));
+        return metrics;
+    }
+
+    /**
+     * Starts a new measurement interval. Calls recorded concurrently may land
+     * on either side.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        startedAt = System.nanoTime();
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    private long valueAtPercentile(long[] snapshot, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // the bucket's upper bound, but never above what was actually seen
+                return Math.min(highestEquivalentValue(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Values below {@link #SUB_BUCKET_COUNT} map one to one; above that each
+     * power of two is split into {@link #SUB_BUCKET_HALF} equal buckets.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+        long subBucket = (index & (SUB_BUCKET_HALF - 1)) + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private static double micros(long nanos) {
+        return round(nanos / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -0,0 +1,68 @@
+package com.mytest.springdemo.support;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named {@link LatencyHistogram}s, grouped by kind (an HTTP method, a DAO,
+ * SQL). Looking up an existing histogram does not allocate.
+ * <p>
+ * {@link #shared()} is the process-wide registry that the request filter and
+ * the DAOs record into and that {@code /metrics} reports.
+ */
+public class LatencyRegistry {
+
+    private static final LatencyRegistry SHARED = new LatencyRegistry();
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, LatencyHistogram>> groups =
+            new ConcurrentHashMap<String, ConcurrentHashMap<String, LatencyHistogram>>();
+
+    public static LatencyRegistry shared() {
+        return SHARED;
+    }
+
+    public LatencyHistogram histogram(String group, String name) {
+        ConcurrentHashMap<String, LatencyHistogram> histograms = groups.get(group);
+        if (histograms == null) {
+            ConcurrentHashMap<String, LatencyHistogram> created = new ConcurrentHashMap<String, LatencyHistogram>();
+            histograms = groups.putIfAbsent(group, created);
+            if (histograms == null) {
+                histograms = created;
+            }
+        }
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Metrics of every histogram as group, then name, then
+     * {@link LatencyHistogram#getMetrics()}; both levels sorted by name.
+     */
+    public Map<String, Map<String, Map<String, Number>>> getMetrics() {
+        Map<String, Map<String, Map<String, Number>>> metrics = new TreeMap<String, Map<String, Map<String, Number>>>();
+        for (Map.Entry<String, ConcurrentHashMap<String, LatencyHistogram>> group : groups.entrySet()) {
+            Map<String, Map<String, Number>> histograms = new TreeMap<String, Map<String, Number>>();
+            for (Map.Entry<String, LatencyHistogram> entry : group.getValue().entrySet()) {
+                histograms.put(entry.getKey(), entry.getValue().getMetrics());
+            }
+            metrics.put(group.getKey(), histograms);
+        }
+        return metrics;
+    }
+
+    public void reset() {
+        for (ConcurrentHashMap<String, LatencyHistogram> histograms : groups.values()) {
+            for (LatencyHistogram histogram : histograms.values()) {
+                histogram.reset();
+            }
+        }
+    }
+}
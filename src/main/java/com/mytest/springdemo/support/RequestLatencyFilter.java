@@ -0,0 +1,44 @@
+package com.mytest.springdemo.support;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Records the latency of every request into {@link LatencyRegistry#shared()},
+ * one histogram per HTTP method and request mapping ({@code /employee/{id}},
+ * not {@code /employee/42}). A request counts as an error when it throws or
+ * answers 5xx. Requests no handler matched are not recorded.
+ * <p>
+ * For streamed responses the time ends when the handler returns, not when
+ * the last byte is written.
+ */
+@Component
+public class RequestLatencyFilter extends OncePerRequestFilter {
+
+    private final LatencyRegistry registry = LatencyRegistry.shared();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            chain.doFilter(request, response);
+            succeeded = response.getStatus() < 500;
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern instanceof String) {
+                registry.histogram(request.getMethod(), (String) pattern).record(System.nanoTime() - start, succeeded);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.mytest.springdemo.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded map that evicts the least recently used entry. Keys are
+ * spread over a fixed number of stripes, each an access-ordered
+ * {@link LinkedHashMap} behind its own lock, so threads working on different
+ * keys rarely wait for each other. The bound and the recency order are per
+ * stripe: the cache holds at most {@code maxEntries} in total, and the entry
+ * evicted is the oldest of its stripe rather than of the whole cache.
+ */
+public class StripedLruCache<K, V> {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe<K, V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public StripedLruCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        int stripeCount = Math.min(STRIPES, Integer.highestOneBit(maxEntries));
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<K, V>(maxEntries / stripeCount);
+        }
+    }
+
+    public V get(K key) {
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe<K, V> stripeFor(K key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
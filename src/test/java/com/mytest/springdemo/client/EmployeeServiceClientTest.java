@@ -0,0 +1,308 @@
+package com.mytest.springdemo.client;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.web.client.HttpServerErrorException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mytest.springdemo.model.Employee;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the client against a stub employee service on a local port. The stub
+ * knows ids 1 to 100, answers an unknown id with an empty employee as the
+ * real service does, and records every request it receives.
+ */
+public class EmployeeServiceClientTest {
+
+    private HttpServer server;
+
+    private ExecutorService callers;
+
+    // path and query of every request, in arrival order
+    private final List<String> requests = new CopyOnWriteArrayList<String>();
+
+    // when set, requests wait for it before answering
+    private volatile CountDownLatch gate;
+
+    // when set, requests are answered with this status and no body
+    private volatile int failStatus;
+
+    private EmployeeServiceClient client;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        requests.clear();
+        gate = null;
+        failStatus = 0;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/employee/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                answer(exchange);
+            }
+        });
+        server.start();
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.destroy();
+            client = null;
+        }
+        callers.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    public void cachedEmployeeIsServedUntilTheTtlExpires() throws InterruptedException {
+        client = client(100, 10);
+        assertEquals(client.getEmployee(1).getName(), "emp1");
+        assertEquals(client.getEmployee(1).getName(), "emp1");
+        assertEquals(requests.size(), 1);
+
+        Thread.sleep(150);
+        assertEquals(client.getEmployee(1).getName(), "emp1");
+        assertEquals(requests.size(), 2);
+    }
+
+    @Test
+    public void returnedEmployeesAreCopies() {
+        client = client(60000, 10);
+        client.getEmployee(1).setName("changed");
+        assertEquals(client.getEmployee(1).getName(), "emp1");
+    }
+
+    @Test
+    public void concurrentLookupsOfOneIdShareARequest() throws Exception {
+        client = client(60000, 10);
+        gate = new CountDownLatch(1);
+        Future<Employee> first = callers.submit(lookup(7));
+        awaitRequests(1);
+        Future<Employee> second = callers.submit(lookup(7));
+        awaitCoalesced(1);
+        gate.countDown();
+
+        assertEquals(first.get(5, TimeUnit.SECONDS).getName(), "emp7");
+        assertEquals(second.get(5, TimeUnit.SECONDS).getName(), "emp7");
+        assertEquals(requests.size(), 1);
+    }
+
+    @Test
+    public void batchLookupWaitsForIdsAnotherCallerIsFetching() throws Exception {
+        client = client(60000, 10);
+        gate = new CountDownLatch(1);
+        Future<Employee> single = callers.submit(lookup(3));
+        awaitRequests(1);
+        Future<Map<Integer, Employee>> batch = callers.submit(batchLookup(2, 3, 4));
+        awaitRequests(2);
+        gate.countDown();
+
+        assertEquals(single.get(5, TimeUnit.SECONDS).getName(), "emp3");
+        assertEquals(new ArrayList<Integer>(batch.get(5, TimeUnit.SECONDS).keySet()), Arrays.asList(2, 3, 4));
+        assertEquals(requests.get(1), "/employee/list?ids=2,4");
+    }
+
+    @Test
+    public void batchLookupIsSplitByBatchSize() {
+        client = client(60000, 3);
+        Map<Integer, Employee> employees = client.getEmployees(Arrays.asList(5, 1, 2, 7, 3, 4, 6, 1));
+        assertEquals(new ArrayList<Integer>(employees.keySet()), Arrays.asList(5, 1, 2, 7, 3, 4, 6));
+        assertEquals(requests, Arrays.asList("/employee/list?ids=5,1,2", "/employee/list?ids=7,3,4",
+                "/employee/list?ids=6"));
+
+        // everything is cached now, so nothing goes out
+        assertEquals(client.getEmployees(Arrays.asList(1, 2, 3)).size(), 3);
+        assertEquals(requests.size(), 3);
+    }
+
+    @Test
+    public void unknownIdsResolveToNullAndAreNotCached() {
+        client = client(60000, 10);
+        assertNull(client.getEmployee(404));
+        assertNull(client.getEmployee(404));
+        assertEquals(requests.size(), 2);
+
+        Map<Integer, Employee> employees = client.getEmployees(Arrays.asList(1, 404));
+        assertEquals(new ArrayList<Integer>(employees.keySet()), Arrays.asList(1));
+        assertTrue(client.getEmployees(Arrays.asList(404)).isEmpty());
+        assertEquals(requests.get(requests.size() - 1), "/employee/list?ids=404");
+        assertEquals(client.getMetrics().get("cacheSize"), Integer.valueOf(1));
+    }
+
+    @Test
+    public void failureReachesEveryCallerWaitingOnTheRequest() throws Exception {
+        client = client(60000, 10);
+        gate = new CountDownLatch(1);
+        failStatus = 503;
+        Future<Employee> first = callers.submit(lookup(8));
+        awaitRequests(1);
+        Future<Employee> second = callers.submit(lookup(8));
+        awaitCoalesced(1);
+        gate.countDown();
+
+        HttpServerErrorException firstError = failure(first);
+        HttpServerErrorException secondError = failure(second);
+        assertEquals(firstError.getRawStatusCode(), 503);
+        assertSame(secondError, firstError);
+        assertEquals(requests.size(), 1);
+
+        // the failure is not cached; the next lookup asks again
+        failStatus = 0;
+        gate = null;
+        assertEquals(client.getEmployee(8).getName(), "emp8");
+    }
+
+    @Test
+    public void batchFailureReachesCallersWaitingOnItsIds() throws Exception {
+        client = client(60000, 10);
+        gate = new CountDownLatch(1);
+        failStatus = 500;
+        Future<Map<Integer, Employee>> batch = callers.submit(batchLookup(1, 2));
+        awaitRequests(1);
+        Future<Employee> waiter = callers.submit(lookup(2));
+        awaitCoalesced(1);
+        gate.countDown();
+
+        failure(batch);
+        assertEquals(failure(waiter).getRawStatusCode(), 500);
+        assertEquals(requests.size(), 1);
+    }
+
+    private EmployeeServiceClient client(long cacheTtlMillis, int batchSize) {
+        EmployeeServiceProperties properties = new EmployeeServiceProperties();
+        properties.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        properties.setCacheTtlMillis(cacheTtlMillis);
+        properties.setBatchSize(batchSize);
+        return new EmployeeServiceClient(properties);
+    }
+
+    private Callable<Employee> lookup(final int id) {
+        return new Callable<Employee>() {
+            @Override
+            public Employee call() {
+                return client.getEmployee(id);
+            }
+        };
+    }
+
+    private Callable<Map<Integer, Employee>> batchLookup(final Integer... ids) {
+        return new Callable<Map<Integer, Employee>>() {
+            @Override
+            public Map<Integer, Employee> call() {
+                return client.getEmployees(Arrays.asList(ids));
+            }
+        };
+    }
+
+    private static HttpServerErrorException failure(Future<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HttpServerErrorException) {
+                return (HttpServerErrorException) e.getCause();
+            }
+            throw e;
+        }
+        fail("expected the lookup to fail");
+        return null;
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (requests.size() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("expected " + count + " requests, got " + requests);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitCoalesced(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.getMetrics().get("coalesced").longValue() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("expected " + count + " coalesced lookups");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        requests.add(query == null ? path : path + "?" + query);
+        try {
+            CountDownLatch wait = gate;
+            if (wait != null && !wait.await(5, TimeUnit.SECONDS)) {
+                throw new IOException("test did not open the gate");
+            }
+            if (failStatus != 0) {
+                // the JDK server drops a connection after an error without a body
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(failStatus, -1);
+                return;
+            }
+            String body;
+            if (path.equals("/employee/list")) {
+                StringBuilder list = new StringBuilder("[");
+                for (String id : query.substring("ids=".length()).split(",")) {
+                    if (known(id)) {
+                        list.append(list.length() > 1 ? "," : "").append(json(id));
+                    }
+                }
+                body = list.append(']').toString();
+            } else {
+                String id = path.substring("/employee/".length());
+                body = known(id) ? json(id) : "{}";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean known(String id) {
+        int value = Integer.parseInt(id);
+        return value >= 1 && value <= 100;
+    }
+
+    private static String json(String id) {
+        return "{\"empId\":\"" + id + "\",\"name\":\"emp" + id + "\",\"designation\":\"engineer\",\"salary\":1000}";
+    }
+}
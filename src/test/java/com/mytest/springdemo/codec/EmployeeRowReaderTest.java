@@ -0,0 +1,130 @@
+package com.mytest.springdemo.codec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytest.springdemo.model.Employee;
+
+public class EmployeeRowReaderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void headerNamesColumnsInAnyOrder() throws IOException {
+        EmployeeRowReader reader = csv("salary,EMPID,extra,Designation,name\n2500,7,x,manager,emp7\n");
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "7", "emp7", "manager", 2500);
+        assertEquals(reader.getLineNumber(), 2);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void withoutHeaderColumnsAreTakenInOrder() throws IOException {
+        EmployeeRowReader reader = csv("1,emp1,manager,3000\r\n2,emp2,,\n");
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "1", "emp1", "manager", 3000);
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "2", "emp2", null, 0);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void firstRowThatHappensToContainOneColumnNameIsData() throws IOException {
+        EmployeeRowReader reader = csv("5,name,engineer,100\n");
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "5", "name", "engineer", 100);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void incompleteHeaderIsRejected() throws IOException {
+        csv("empId,name,salary\n1,emp1,100\n").next();
+    }
+
+    @Test
+    public void quotedFieldsKeepCommasAndEscapedQuotes() throws IOException {
+        EmployeeRowReader reader = csv("3,\"Doe, \"\"JD\"\" John\",\"vice president\",\"4000\"\n");
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "3", "Doe, \"JD\" John", "vice president", 4000);
+    }
+
+    @Test
+    public void badLinesAreReportedAndReadingContinues() throws IOException {
+        EmployeeRowReader reader = csv("1,\"open,manager,1\n2,emp2,manager,lots\n\n3,emp3,manager,3\n");
+        assertTrue(reader.next());
+        assertNull(reader.getEmployee());
+        assertEquals(reader.getError(), "unterminated quoted field");
+        assertTrue(reader.next());
+        assertEquals(reader.getError(), "salary is not a number: lots");
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "3", "emp3", "manager", 3);
+        assertEquals(reader.getLineNumber(), 4);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void byteOrderMarkBeforeTheHeaderIsSkipped() throws IOException {
+        EmployeeRowReader reader = csv("\uFEFFempId,name,designation,salary\n9,emp9,intern,10\n");
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "9", "emp9", "intern", 10);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void byteOrderMarkBeforeDataIsSkipped() throws IOException {
+        EmployeeRowReader reader = csv("\uFEFF9,emp9,intern,10\n");
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "9", "emp9", "intern", 10);
+    }
+
+    @Test
+    public void overlongLinesAreReportedWithoutBeingBuffered() throws IOException {
+        StringBuilder body = new StringBuilder("1,");
+        for (int i = 0; i < 100; i++) {
+            body.append('x');
+        }
+        body.append(",d,1\n2,emp2,d,2\n");
+        EmployeeRowReader reader = reader(body.toString(), EmployeeRowReader.Format.CSV, 32);
+        assertTrue(reader.next());
+        assertEquals(reader.getError(), "line longer than 32 characters");
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "2", "emp2", "d", 2);
+    }
+
+    @Test
+    public void readsNdjson() throws IOException {
+        EmployeeRowReader reader = reader("\uFEFF{\"empId\":\"4\",\"name\":\"emp4\",\"designation\":\"d\",\"salary\":40}\n"
+                + "not json\n", EmployeeRowReader.Format.NDJSON, 1024);
+        assertTrue(reader.next());
+        assertEmployee(reader.getEmployee(), "4", "emp4", "d", 40);
+        assertTrue(reader.next());
+        assertNull(reader.getEmployee());
+        assertTrue(reader.getError() != null);
+        assertFalse(reader.next());
+    }
+
+    private static EmployeeRowReader csv(String body) {
+        return reader(body, EmployeeRowReader.Format.CSV, 1024);
+    }
+
+    private static EmployeeRowReader reader(String body, EmployeeRowReader.Format format, int maxLineLength) {
+        return new EmployeeRowReader(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8, format, MAPPER.readerFor(Employee.class), maxLineLength);
+    }
+
+    private static void assertEmployee(Employee employee, String empId, String name, String designation,
+            double salary) {
+        assertEquals(employee.getEmpId(), empId);
+        assertEquals(employee.getName(), name);
+        assertEquals(employee.getDesignation(), designation);
+        assertEquals(employee.getSalary(), salary);
+    }
+}
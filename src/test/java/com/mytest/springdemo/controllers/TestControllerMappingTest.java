@@ -0,0 +1,81 @@
+package com.mytest.springdemo.controllers;
+
+import static org.testng.Assert.assertEquals;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Resolves requests against the controller's mappings only, without
+ * starting the application.
+ */
+public class TestControllerMappingTest {
+
+    private RequestMappingHandlerMapping mapping;
+
+    @BeforeClass
+    public void setUp() {
+        StaticWebApplicationContext context = new StaticWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.registerSingleton("testController", TestController.class);
+        context.refresh();
+        mapping = new RequestMappingHandlerMapping();
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+    }
+
+    @Test
+    public void listParametersSelectOneHandler() throws Exception {
+        assertEquals(handler("/employee/list"), "firstPage");
+        assertEquals(handler("/employee/list", "limit", "10"), "listPage");
+        assertEquals(handler("/employee/list", "ids", "1,2"), "listByIds");
+    }
+
+    @Test
+    public void searchParametersSelectOneHandler() throws Exception {
+        assertEquals(handler("/employee/search", "designation", "manager"), "searchByDesignation");
+        assertEquals(handler("/employee/search", "minSalary", "1", "maxSalary", "2"), "searchBySalary");
+        assertEquals(handler("/employee/search", "namePrefix", "emp"), "searchByNamePrefix");
+    }
+
+    /**
+     * A request that fits no list or search handler falls through to
+     * {@code /employee/{id}}, which answers 400 because the path segment is
+     * not a number, instead of failing as ambiguous with a 500.
+     */
+    @Test
+    public void conflictingParametersMatchNoListOrSearchHandler() throws Exception {
+        assertEquals(pattern("/employee/list", "limit", "10", "ids", "1,2"), "/employee/{id}");
+        assertEquals(pattern("/employee/search", "designation", "manager", "namePrefix", "emp"), "/employee/{id}");
+        assertEquals(pattern("/employee/search", "namePrefix", "emp", "minSalary", "1", "maxSalary", "2"),
+                "/employee/{id}");
+    }
+
+    private String handler(String uri, String... params) throws Exception {
+        return handlerMethod(uri, params).getMethod().getName();
+    }
+
+    private String pattern(String uri, String... params) throws Exception {
+        return handlerMethod(uri, params).getMethodAnnotation(RequestMapping.class).value()[0];
+    }
+
+    private HandlerMethod handlerMethod(String uri, String... params) throws Exception {
+        HandlerExecutionChain chain = mapping.getHandler(request(uri, params));
+        return (HandlerMethod) chain.getHandler();
+    }
+
+    private static MockHttpServletRequest request(String uri, String... params) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        for (int i = 0; i < params.length; i += 2) {
+            request.addParameter(params[i], params[i + 1]);
+        }
+        return request;
+    }
+}
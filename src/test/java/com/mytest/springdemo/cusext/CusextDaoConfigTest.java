@@ -0,0 +1,78 @@
+package com.mytest.springdemo.cusext;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.springframework.boot.test.util.EnvironmentTestUtils;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import jp.co.alico.cusext.dao.DisAgrConnectionPool;
+import jp.co.alico.cusext.dao.DisAgrInfoAsyncDAO;
+
+public class CusextDaoConfigTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    @AfterMethod
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        DisAgrConnectionPool.install(null);
+        DisAgrInfoAsyncDAO.install(null);
+    }
+
+    @Test
+    public void installsThePoolAndAsyncDaoBuiltFromTheProperties() throws Exception {
+        context = context("cusext.datasource.class-name:org.h2.jdbcx.JdbcDataSource",
+                "cusext.datasource.properties.URL:jdbc:h2:mem:cusext_config",
+                "cusext.datasource.properties.user:sa",
+                "cusext.pool.max-size:3",
+                "cusext.pool.min-idle:0",
+                "cusext.async.threads:2",
+                "cusext.async.queue-size:5");
+
+        DisAgrConnectionPool pool = context.getBean(DisAgrConnectionPool.class);
+        assertSame(DisAgrConnectionPool.getInstalled(), pool);
+        assertEquals(pool.getMetrics().get("max"), Integer.valueOf(3));
+        Connection conn = pool.getConnection();
+        try {
+            assertTrue(conn.isValid(1));
+        } finally {
+            conn.close();
+        }
+
+        DisAgrInfoAsyncDAO asyncDao = context.getBean(DisAgrInfoAsyncDAO.class);
+        assertSame(DisAgrInfoAsyncDAO.getInstalled(), asyncDao);
+        assertEquals(asyncDao.getMetrics().get("threads"), Integer.valueOf(2));
+        assertEquals(asyncDao.getMetrics().get("queueCapacity"), Integer.valueOf(5));
+
+        context.close();
+        context = null;
+        assertNull(DisAgrConnectionPool.getInstalled());
+        assertNull(DisAgrInfoAsyncDAO.getInstalled());
+    }
+
+    @Test
+    public void withoutADataSourceNothingIsInstalled() {
+        context = context("cusext.pool.max-size:3");
+        assertFalse(context.containsBean("disAgrConnectionPool"));
+        assertEquals(context.getBeanNamesForType(DisAgrInfoAsyncDAO.class).length, 0);
+        assertNull(DisAgrConnectionPool.getInstalled());
+    }
+
+    private static AnnotationConfigApplicationContext context(String... pairs) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        EnvironmentTestUtils.addEnvironment(context, pairs);
+        context.register(CusextDaoConfig.class);
+        context.refresh();
+        return context;
+    }
+}
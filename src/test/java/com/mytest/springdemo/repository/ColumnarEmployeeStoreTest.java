@@ -0,0 +1,135 @@
+package com.mytest.springdemo.repository;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.mytest.springdemo.model.Employee;
+
+public class ColumnarEmployeeStoreTest {
+
+    @Test
+    public void readsBackWhatWasStored() {
+        ColumnarEmployeeStore store = new ColumnarEmployeeStore();
+        assertNull(store.put(7, new Employee("7", "emp7", "manager", 3000)));
+        assertNull(store.put(8, new Employee("8", null, null, 0)));
+
+        Employee seven = store.get(7);
+        assertEquals(seven.getEmpId(), "7");
+        assertEquals(seven.getName(), "emp7");
+        assertEquals(seven.getDesignation(), "manager");
+        assertEquals(seven.getSalary(), 3000.0);
+        Employee eight = store.get(8);
+        assertNull(eight.getName());
+        assertNull(eight.getDesignation());
+        assertNull(store.get(9));
+        assertEquals(store.size(), 2);
+    }
+
+    @Test
+    public void putIfAbsentReplaceAndRemoveFollowConcurrentMap() {
+        ColumnarEmployeeStore store = new ColumnarEmployeeStore();
+        assertNull(store.replace(1, new Employee("1", "a", "x", 1)));
+        assertFalse(store.containsKey(1));
+
+        assertNull(store.putIfAbsent(1, new Employee("1", "a", "x", 1)));
+        assertEquals(store.putIfAbsent(1, new Employee("1", "b", "x", 2)).getName(), "a");
+        assertEquals(store.replace(1, new Employee("1", "c", "y", 3)).getName(), "a");
+        assertEquals(store.put(1, new Employee("1", "d", "y", 4)).getName(), "c");
+        assertEquals(store.remove(1).getName(), "d");
+        assertNull(store.remove(1));
+        assertEquals(store.size(), 0);
+    }
+
+    @Test
+    public void encodesEachDesignationOnce() {
+        ColumnarEmployeeStore store = new ColumnarEmployeeStore();
+        for (int id = 1; id <= 100; id++) {
+            store.put(id, new Employee(String.valueOf(id), "emp" + id, new String(id % 2 == 0 ? "even" : "odd"), id));
+        }
+        assertEquals(store.designationCount(), 2);
+        assertEquals(store.get(42).getDesignation(), "even");
+    }
+
+    @Test
+    public void deletingMovesTheLastSlotIntoTheHole() {
+        ColumnarEmployeeStore store = new ColumnarEmployeeStore();
+        for (int id = 1; id <= 5; id++) {
+            store.put(id, new Employee(String.valueOf(id), "emp" + id, "d", id));
+        }
+        store.remove(2);
+        assertEquals(store.size(), 4);
+        assertEquals(store.get(5).getName(), "emp5");
+        assertEquals(ids(store.toArray()).size(), 4);
+        assertFalse(ids(store.toArray()).contains(2));
+    }
+
+    /**
+     * Random writes over a small set of ids keep the id table at 32 positions
+     * and up to two thirds full, so probe runs are long and often wrap around
+     * the end of the table, which is where a backward-shift delete most
+     * easily loses or strands an entry.
+     */
+    @Test
+    public void idIndexSurvivesDeletesInsideWrappingProbeRuns() {
+        for (long seed = 0; seed < 50; seed++) {
+            ColumnarEmployeeStore store = new ColumnarEmployeeStore(16);
+            Map<Integer, String> expected = new HashMap<Integer, String>();
+            Random random = new Random(seed);
+            for (int round = 0; round < 2000; round++) {
+                int id = random.nextInt(40) - 10;
+                if (expected.size() >= 20 || random.nextBoolean()) {
+                    Employee removed = store.remove(id);
+                    String previous = expected.remove(id);
+                    assertEquals(removed == null ? null : removed.getName(), previous);
+                } else {
+                    String name = "n" + round;
+                    store.put(id, new Employee(String.valueOf(id), name, "d", round));
+                    expected.put(id, name);
+                }
+                assertEquals(store.size(), expected.size());
+            }
+            for (int id = -10; id < 30; id++) {
+                Employee employee = store.get(id);
+                assertEquals(employee == null ? null : employee.getName(), expected.get(id), "id " + id);
+            }
+        }
+    }
+
+    @Test
+    public void emptiedStoreHasNoStaleEntries() {
+        ColumnarEmployeeStore store = new ColumnarEmployeeStore(16);
+        for (int id = 0; id < 1000; id++) {
+            store.put(id, new Employee(String.valueOf(id), "emp" + id, "d", id));
+        }
+        for (int id = 999; id >= 0; id -= 2) {
+            store.remove(id);
+        }
+        for (int id = 0; id < 1000; id++) {
+            assertEquals(store.containsKey(id), id % 2 == 0, "id " + id);
+        }
+        for (int id = 0; id < 1000; id += 2) {
+            store.remove(id);
+        }
+        assertEquals(store.size(), 0);
+        assertEquals(store.toArray().length, 0);
+        assertTrue(store.get(0) == null && store.get(998) == null);
+    }
+
+    private static List<Integer> ids(Employee[] employees) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Employee employee : employees) {
+            ids.add(Integer.valueOf(employee.getEmpId()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,166 @@
+package com.mytest.springdemo.repository;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.mytest.springdemo.model.DesignationStats;
+import com.mytest.springdemo.model.Employee;
+
+public class DesignationAggregatesTest {
+
+    @Test
+    public void removingUndoesAddingWithoutDrift() {
+        DesignationAggregates aggregates = new DesignationAggregates();
+        // 0.1 and 0.2 have no exact double; summing them as doubles drifts
+        for (int id = 1; id <= 1000; id++) {
+            aggregates.apply(id, null, employee(id, "engineer", id % 2 == 0 ? 0.1 : 0.2));
+        }
+        for (int id = 3; id <= 1000; id++) {
+            aggregates.apply(id, employee(id, "engineer", id % 2 == 0 ? 0.1 : 0.2), null);
+        }
+        DesignationStats engineer = only(aggregates);
+        assertEquals(engineer.getCount(), 2);
+        assertEquals(engineer.getSum(), 0.1 + 0.2);
+
+        aggregates.apply(1, employee(1, "engineer", 0.2), null);
+        aggregates.apply(2, employee(2, "engineer", 0.1), null);
+        assertEquals(aggregates.snapshot().length, 0);
+    }
+
+    @Test
+    public void minAndMaxMoveWhenTheExtremeSalaryIsRemoved() {
+        DesignationAggregates aggregates = new DesignationAggregates();
+        double[] salaries = {500, 100, 900, 300, 900};
+        for (int id = 1; id <= salaries.length; id++) {
+            aggregates.apply(id, null, employee(id, "engineer", salaries[id - 1]));
+        }
+        assertStats(only(aggregates), 5, 2700, 100, 900);
+
+        // one of two employees on the maximum leaves
+        aggregates.apply(3, employee(3, "engineer", 900), null);
+        assertStats(only(aggregates), 4, 1800, 100, 900);
+        aggregates.apply(5, employee(5, "engineer", 900), null);
+        assertStats(only(aggregates), 3, 900, 100, 500);
+        // the minimum is raised in place
+        aggregates.apply(2, employee(2, "engineer", 100), employee(2, "engineer", 400));
+        assertStats(only(aggregates), 3, 1200, 300, 500);
+    }
+
+    @Test
+    public void removalArrivingBeforeItsAddition() {
+        DesignationAggregates aggregates = new DesignationAggregates();
+        aggregates.apply(1, null, employee(1, "engineer", 100));
+        aggregates.apply(2, null, employee(2, "engineer", 200));
+
+        // write A replaces id 1's 100 with 50 and write B then replaces 50
+        // with 300, but B's removal lands before A's addition
+        aggregates.apply(1, employee(1, "engineer", 100), null);
+        aggregates.apply(1, employee(1, "engineer", 50), null);
+        aggregates.apply(1, null, employee(1, "engineer", 300));
+        DesignationStats pending = only(aggregates);
+        // the salary removed ahead of its addition is not taken for the min
+        assertEquals(pending.getMin(), 200.0);
+        assertEquals(pending.getMax(), 300.0);
+
+        aggregates.apply(1, null, employee(1, "engineer", 50));
+        assertStats(only(aggregates), 2, 500, 200, 300);
+    }
+
+    @Test
+    public void removalOfTheOnlyEmployeeBeforeItsAdditionLeavesNothing() {
+        DesignationAggregates aggregates = new DesignationAggregates();
+        aggregates.apply(7, employee(7, null, 100), null);
+        assertEquals(aggregates.snapshot().length, 0);
+        aggregates.apply(7, null, employee(7, null, 100));
+        assertEquals(aggregates.snapshot().length, 0);
+        aggregates.apply(7, null, employee(7, null, 100));
+        // no designation is counted under ""
+        assertStats(only(aggregates), 1, 100, 100, 100);
+        assertEquals(only(aggregates).getDesignation(), "");
+    }
+
+    @Test
+    public void computeAgreesWithIncrementalUpdates() {
+        // enough employees for compute to split the work
+        Random random = new Random(42);
+        String[] designations = {"engineer", "manager", "analyst", null};
+        Map<Integer, Employee> current = new HashMap<Integer, Employee>();
+        DesignationAggregates incremental = new DesignationAggregates();
+        for (int round = 0; round < 30000; round++) {
+            int id = 1 + random.nextInt(12000);
+            Employee previous = current.get(id);
+            Employee next = random.nextInt(5) == 0 ? null
+                    : employee(id, designations[random.nextInt(designations.length)],
+                            1000 + random.nextInt(1000) + random.nextInt(100) / 100.0);
+            if (next == null) {
+                current.remove(id);
+            } else {
+                current.put(id, next);
+            }
+            incremental.apply(id, previous, next);
+        }
+        DesignationAggregates computed = DesignationAggregates
+                .compute(current.values().toArray(new Employee[current.size()]));
+
+        assertEquals(incremental.differences(computed), Collections.<String>emptyList());
+        assertEquals(computed.differences(incremental), Collections.<String>emptyList());
+        DesignationStats[] expected = computed.snapshot();
+        DesignationStats[] actual = incremental.snapshot();
+        assertEquals(actual.length, 4);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(actual[i].getDesignation(), expected[i].getDesignation());
+            assertStats(actual[i], expected[i].getCount(), expected[i].getSum(), expected[i].getMin(),
+                    expected[i].getMax());
+        }
+    }
+
+    @Test
+    public void differencesReportTheCorruptedDesignation() {
+        Employee[] employees = new Employee[40];
+        DesignationAggregates incremental = new DesignationAggregates();
+        for (int id = 1; id <= employees.length; id++) {
+            employees[id - 1] = employee(id, id % 2 == 0 ? "engineer" : "manager", 1000 + id);
+            incremental.apply(id, null, employees[id - 1]);
+        }
+        DesignationAggregates computed = DesignationAggregates.compute(employees);
+        assertTrue(incremental.differences(computed).isEmpty());
+
+        // a lost removal leaves one manager counted twice
+        incremental.apply(3, null, employee(3, "manager", 1003));
+        assertEquals(incremental.differences(computed), Arrays.asList("manager"));
+        assertEquals(computed.differences(incremental), Arrays.asList("manager"));
+
+        // a designation only one side knows about is reported too
+        incremental.apply(99, null, employee(99, "analyst", 500));
+        List<String> differing = new ArrayList<String>(computed.differences(incremental));
+        Collections.sort(differing);
+        assertEquals(differing, Arrays.asList("analyst", "manager"));
+    }
+
+    private static Employee employee(int id, String designation, double salary) {
+        return new Employee(String.valueOf(id), "emp" + id, designation, salary);
+    }
+
+    private static DesignationStats only(DesignationAggregates aggregates) {
+        DesignationStats[] stats = aggregates.snapshot();
+        assertEquals(stats.length, 1);
+        return stats[0];
+    }
+
+    private static void assertStats(DesignationStats stats, long count, double sum, double min, double max) {
+        assertEquals(stats.getCount(), count);
+        assertEquals(stats.getSum(), sum);
+        assertEquals(stats.getMin(), min);
+        assertEquals(stats.getMax(), max);
+    }
+}
@@ -0,0 +1,150 @@
+package com.mytest.springdemo.repository;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.mytest.springdemo.model.Employee;
+
+public class EmployeeIndexesTest {
+
+    private MapEmployeeStore store;
+
+    private EmployeeIndexes indexes;
+
+    @BeforeMethod
+    public void setUp() {
+        store = new MapEmployeeStore();
+        indexes = new EmployeeIndexes();
+        for (int id = 1; id <= 20; id++) {
+            // salaries repeat, so the id has to break ties
+            save(new Employee(String.valueOf(id), (id % 2 == 0 ? "Emp" : "other") + id,
+                    id % 3 == 0 ? "manager" : "engineer", 1000 + (id % 4) * 100));
+        }
+    }
+
+    @Test
+    public void pagesByIdFromTheCursor() {
+        assertEquals(ids(indexes.findPage(store, null, 3)), list(1, 2, 3));
+        assertEquals(ids(indexes.findPage(store, 3, 3)), list(4, 5, 6));
+        // a cursor that is not an id resumes after it
+        delete(7);
+        assertEquals(ids(indexes.findPage(store, 6, 3)), list(8, 9, 10));
+        assertEquals(ids(indexes.findPage(store, 19, 3)), list(20));
+        assertEquals(indexes.findPage(store, 20, 3).length, 0);
+    }
+
+    @Test
+    public void walkingEveryPageVisitsEachIdOnce() {
+        List<Integer> seen = new ArrayList<Integer>();
+        Integer after = null;
+        Employee[] page;
+        do {
+            page = indexes.findPage(store, after, 6);
+            seen.addAll(ids(page));
+            if (page.length > 0) {
+                after = Integer.valueOf(page[page.length - 1].getEmpId());
+            }
+        } while (page.length == 6);
+        assertEquals(seen.size(), 20);
+        assertEquals(seen.get(0), Integer.valueOf(1));
+        assertEquals(seen.get(19), Integer.valueOf(20));
+    }
+
+    @Test
+    public void pagesByDesignation() {
+        assertEquals(ids(indexes.findByDesignation(store, "manager", null, 4)), list(3, 6, 9, 12));
+        assertEquals(ids(indexes.findByDesignation(store, "manager", 12, 4)), list(15, 18));
+        assertEquals(indexes.findByDesignation(store, "intern", null, 4).length, 0);
+    }
+
+    @Test
+    public void changingADesignationMovesTheId() {
+        save(new Employee("3", "other3", "engineer", 1300));
+        assertEquals(ids(indexes.findByDesignation(store, "manager", null, 2)), list(6, 9));
+        assertEquals(ids(indexes.findByDesignation(store, "engineer", null, 3)), list(1, 2, 3));
+    }
+
+    @Test
+    public void pagesBySalaryThenId() {
+        // salaries 1100 are ids 1, 5, 9, 13, 17; 1200 are 2, 6, 10, 14, 18
+        Employee[] first = indexes.findBySalary(store, 1100, 1200, null, null, 4);
+        assertEquals(ids(first), list(1, 5, 9, 13));
+        Employee last = first[first.length - 1];
+        Employee[] second = indexes.findBySalary(store, 1100, 1200, last.getSalary(),
+                Integer.valueOf(last.getEmpId()), 4);
+        assertEquals(ids(second), list(17, 2, 6, 10));
+        assertEquals(indexes.findBySalary(store, 1250, 1290, null, null, 4).length, 0);
+    }
+
+    @Test
+    public void aCursorBelowTheRangeStartsAtTheMinimum() {
+        assertEquals(ids(indexes.findBySalary(store, 1300, 1300, 500.0, 99, 2)), list(3, 7));
+    }
+
+    @Test
+    public void pagesByNamePrefixIgnoringCase() {
+        Employee[] first = indexes.findByNamePrefix(store, "EMP1", null, null, 2);
+        // names sort as strings: emp10, emp12, emp14, ...
+        assertEquals(ids(first), list(10, 12));
+        Employee[] second = indexes.findByNamePrefix(store, "emp1", first[1].getName(), 12, 10);
+        assertEquals(ids(second), list(14, 16, 18));
+    }
+
+    @Test
+    public void deletedEmployeesLeaveEveryIndex() {
+        delete(3);
+        delete(10);
+        assertEquals(ids(indexes.findPage(store, 2, 1)), list(4));
+        assertEquals(ids(indexes.findByDesignation(store, "manager", null, 1)), list(6));
+        assertEquals(ids(indexes.findByNamePrefix(store, "emp10", null, null, 5)), list());
+    }
+
+    @Test
+    public void removalAppliedBeforeItsAdditionCancelsOut() {
+        // a create and a delete of the same id race: both store writes land,
+        // then the delete updates the indexes before the create does
+        Employee employee = new Employee("30", "late", "manager", 5000);
+        store.put(30, employee);
+        store.remove(30);
+        indexes.apply(30, employee, null);
+        assertEquals(indexes.findPage(store, 29, 5).length, 0);
+        indexes.apply(30, null, employee);
+        assertEquals(indexes.findPage(store, 29, 5).length, 0);
+        assertEquals(indexes.findByDesignation(store, "manager", 29, 5).length, 0);
+
+        save(employee);
+        assertEquals(ids(indexes.findPage(store, 29, 5)), list(30));
+        assertEquals(ids(indexes.findByDesignation(store, "manager", 29, 5)), list(30));
+    }
+
+    private void save(Employee employee) {
+        int id = Integer.parseInt(employee.getEmpId());
+        Employee previous = store.put(id, employee);
+        indexes.apply(id, previous, employee);
+    }
+
+    private void delete(int id) {
+        indexes.apply(id, store.remove(id), null);
+    }
+
+    private static List<Integer> ids(Employee[] employees) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Employee employee : employees) {
+            ids.add(Integer.valueOf(employee.getEmpId()));
+        }
+        return ids;
+    }
+
+    private static List<Integer> list(int... values) {
+        List<Integer> list = new ArrayList<Integer>();
+        for (int value : values) {
+            list.add(Integer.valueOf(value));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mytest.springdemo.repository;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.testng.annotations.Test;
+
+public class SortedKeyIndexTest {
+
+    @Test
+    public void ascendingAppendsFillLeavesAndScanInOrder() {
+        SortedKeyIndex index = new SortedKeyIndex();
+        int count = SortedKeyIndex.LEAF_CAPACITY * 3 + 7;
+        for (int id = 0; id < count; id++) {
+            index.add(id, 0, 1);
+        }
+        assertEquals(ids(index, Long.MIN_VALUE, true, Long.MAX_VALUE, 10), range(0, count));
+        assertEquals(ids(index, 99, false, 104, 10), range(100, 105));
+    }
+
+    @Test
+    public void countsCancelAndOnlyPositiveCountsAreLive() {
+        SortedKeyIndex index = new SortedKeyIndex();
+        // a removal applied before its addition
+        index.add(5, 0, -1);
+        assertEquals(ids(index, Long.MIN_VALUE, true, Long.MAX_VALUE, 4).size(), 0);
+        index.add(5, 0, 1);
+        assertEquals(ids(index, Long.MIN_VALUE, true, Long.MAX_VALUE, 4).size(), 0);
+        index.add(5, 0, 1);
+        index.add(6, 0, 2);
+        assertEquals(ids(index, Long.MIN_VALUE, true, Long.MAX_VALUE, 4), range(5, 7));
+    }
+
+    @Test
+    public void secondPartOfTheKeyBreaksTies() {
+        SortedKeyIndex index = new SortedKeyIndex();
+        long salary = SortedKeyIndex.sortable(1000);
+        index.add(salary, 9, 1);
+        index.add(salary, 3, 1);
+        index.add(SortedKeyIndex.sortable(999.5), 20, 1);
+        long[] his = new long[8];
+        int[] los = new int[8];
+        int found = index.scan(salary, Integer.MIN_VALUE, true, salary, Integer.MAX_VALUE, his, los);
+        assertEquals(found, 2);
+        assertEquals(los[0], 3);
+        assertEquals(los[1], 9);
+        assertEquals(index.scan(salary, 3, false, salary, Integer.MAX_VALUE, his, los), 1);
+        assertEquals(los[0], 9);
+    }
+
+    @Test
+    public void sortableKeepsTheOrderOfDoubles() {
+        double[] values = {Double.NEGATIVE_INFINITY, -1e9, -1.5, -0.0, 0.0, Double.MIN_VALUE, 1, 2.5, 1e12,
+                Double.POSITIVE_INFINITY};
+        for (int i = 1; i < values.length; i++) {
+            assertTrue(SortedKeyIndex.sortable(values[i - 1]) < SortedKeyIndex.sortable(values[i]), "at " + values[i]);
+        }
+    }
+
+    @Test
+    public void randomUpdatesMatchASortedMap() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            SortedKeyIndex index = new SortedKeyIndex();
+            TreeMap<Long, Integer> expected = new TreeMap<Long, Integer>();
+            for (int round = 0; round < 5000; round++) {
+                long key = random.nextInt(2000) - 1000;
+                int delta = random.nextInt(3) == 0 ? -1 : 1;
+                index.add(key, 0, delta);
+                Integer count = expected.get(key);
+                int sum = (count == null ? 0 : count.intValue()) + delta;
+                if (sum == 0) {
+                    expected.remove(key);
+                } else {
+                    expected.put(key, sum);
+                }
+            }
+            List<Long> live = new ArrayList<Long>();
+            for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+                if (entry.getValue().intValue() > 0) {
+                    live.add(entry.getKey());
+                }
+            }
+            assertEquals(ids(index, Long.MIN_VALUE, true, Long.MAX_VALUE, 7), live, "seed " + seed);
+        }
+    }
+
+    /**
+     * All live keys in the range, read {@code batch} at a time the way
+     * {@link EmployeeIndexes} pages through an index.
+     */
+    private static List<Long> ids(SortedKeyIndex index, long from, boolean inclusive, long to, int batch) {
+        List<Long> ids = new ArrayList<Long>();
+        long[] his = new long[batch];
+        int[] los = new int[batch];
+        for (;;) {
+            int found = index.scan(from, 0, inclusive, to, 0, his, los);
+            for (int i = 0; i < found; i++) {
+                ids.add(Long.valueOf(his[i]));
+            }
+            if (found < batch) {
+                return ids;
+            }
+            from = his[found - 1];
+            inclusive = false;
+        }
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> range = new ArrayList<Long>();
+        for (long value = from; value < to; value++) {
+            range.add(Long.valueOf(value));
+        }
+        return range;
+    }
+}
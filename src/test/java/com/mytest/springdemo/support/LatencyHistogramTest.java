@@ -0,0 +1,81 @@
+package com.mytest.springdemo.support;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveTheirOwnBucket() {
+        for (long value = 0; value < 128; value++) {
+            assertEquals(LatencyHistogram.indexOf(value), (int) value);
+            assertEquals(LatencyHistogram.highestEquivalentValue((int) value), value);
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguousAndKeepTwoSignificantDigits() {
+        long previousHigh = -1;
+        int previousIndex = -1;
+        for (long value = 0; value < 1L << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            long high = LatencyHistogram.highestEquivalentValue(index);
+            assertTrue(high >= value, "value " + value);
+            if (index != previousIndex) {
+                // a new bucket starts right after the previous one ends
+                assertEquals(index, previousIndex + 1, "value " + value);
+                assertEquals(value, previousHigh + 1, "value " + value);
+                previousIndex = index;
+                previousHigh = high;
+            }
+            assertTrue(high - value <= value / 64, "value " + value + " maps up to " + high);
+        }
+    }
+
+    @Test
+    public void largestTrackableValueHasTheLastBucket() {
+        long max = LatencyHistogram.MAX_TRACKABLE_NANOS;
+        int index = LatencyHistogram.indexOf(max);
+        assertEquals(LatencyHistogram.highestEquivalentValue(index), max);
+        assertEquals(LatencyHistogram.indexOf(max - max / 128), index);
+    }
+
+    @Test
+    public void percentilesComeFromTheRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000, true);
+        }
+        assertWithin(histogram.valueAtPercentile(50.0), 500000);
+        assertWithin(histogram.valueAtPercentile(99.0), 990000);
+        assertEquals(histogram.valueAtPercentile(100.0), 1000000);
+        assertWithin(histogram.valueAtPercentile(0.0), 1000);
+    }
+
+    @Test
+    public void failuresAndClampingStayOutOfTheDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5, false);
+        assertEquals(histogram.valueAtPercentile(50.0), 0);
+        histogram.record(-10, true);
+        histogram.record(Long.MAX_VALUE, true);
+        assertEquals(histogram.valueAtPercentile(50.0), 0);
+        assertEquals(histogram.valueAtPercentile(100.0), LatencyHistogram.MAX_TRACKABLE_NANOS);
+
+        Map<String, Number> metrics = histogram.getMetrics();
+        assertEquals(metrics.get("count"), Long.valueOf(2));
+        assertEquals(metrics.get("errors"), Long.valueOf(1));
+
+        histogram.reset();
+        assertEquals(histogram.getMetrics().get("count"), Long.valueOf(0));
+        assertEquals(histogram.valueAtPercentile(99.0), 0);
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        assertTrue(actual >= expected && actual - expected <= expected / 64, actual + " for " + expected);
+    }
+}
@@ -0,0 +1,142 @@
+package com.mytest.springdemo.support;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeOut = 10000)
+    public void concurrentCallersShareOneComputation() throws Exception {
+        final SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final Supplier<Object> loader = new Supplier<Object>() {
+            @Override
+            public Object get() {
+                loads.incrementAndGet();
+                await(release);
+                return new Object();
+            }
+        };
+
+        List<Future<Object>> results = submit(flight, "key", loader);
+        waitFor(flight, CALLERS - 1);
+        assertEquals(flight.getInFlightCount(), 1);
+        release.countDown();
+
+        Object first = results.get(0).get();
+        for (Future<Object> result : results) {
+            assertSame(result.get(), first);
+        }
+        assertEquals(loads.get(), 1);
+        assertEquals(flight.getExecutedCount(), 1);
+        assertEquals(flight.getCoalescedCount(), CALLERS - 1);
+        assertEquals(flight.getInFlightCount(), 0);
+    }
+
+    @Test(timeOut = 10000)
+    public void everyCallerSeesTheFailure() throws Exception {
+        final SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final IllegalStateException failure = new IllegalStateException("load failed");
+        Supplier<Object> loader = new Supplier<Object>() {
+            @Override
+            public Object get() {
+                await(release);
+                throw failure;
+            }
+        };
+
+        List<Future<Object>> results = submit(flight, "key", loader);
+        waitFor(flight, CALLERS - 1);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            try {
+                result.get();
+                fail("expected the loader's exception");
+            } catch (ExecutionException e) {
+                assertSame(e.getCause(), failure);
+            }
+        }
+        assertEquals(flight.getInFlightCount(), 0);
+    }
+
+    @Test
+    public void finishedComputationsAreNotCached() {
+        SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>();
+        final AtomicInteger loads = new AtomicInteger();
+        Supplier<Integer> loader = new Supplier<Integer>() {
+            @Override
+            public Integer get() {
+                return Integer.valueOf(loads.incrementAndGet());
+            }
+        };
+        assertEquals(flight.execute("key", loader), Integer.valueOf(1));
+        assertEquals(flight.execute("key", loader), Integer.valueOf(2));
+        assertEquals(flight.execute("other", loader), Integer.valueOf(3));
+        assertEquals(flight.getCoalescedCount(), 0);
+    }
+
+    private List<Future<Object>> submit(final SingleFlight<String, Object> flight, final String key,
+            final Supplier<Object> loader) {
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return flight.execute(key, loader);
+                }
+            }));
+        }
+        return results;
+    }
+
+    // the other callers are counted as coalesced before they block on the result
+    private static void waitFor(SingleFlight<?, ?> flight, int coalesced) throws InterruptedException {
+        while (flight.getCoalescedCount() < coalesced) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package jp.co.alico.cusext.dao;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class AgrmntNoAllocatorTest {
+
+    private static final int THREADS = 8;
+
+    private static final int PER_THREAD = 500;
+
+    @Test(timeOut = 30000)
+    public void concurrentCallersNeverShareAValue() throws Exception {
+        final FakeSequenceAllocator allocator = new FakeSequenceAllocator(100, 5, 20);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() throws SQLException {
+                        List<String> values = new ArrayList<String>(PER_THREAD);
+                        for (int i = 0; i < PER_THREAD; i++) {
+                            values.add(allocator.next(null));
+                        }
+                        return values;
+                    }
+                }));
+            }
+
+            Set<Long> seen = new HashSet<Long>();
+            for (Future<List<String>> result : results) {
+                for (String value : result.get()) {
+                    assertTrue(value.startsWith("A"), value);
+                    long number = Long.parseLong(value.substring(1));
+                    assertTrue(seen.add(Long.valueOf(number)), "duplicate " + value);
+                    assertEquals((number - 100) % 5, 0, value);
+                }
+            }
+            assertEquals(seen.size(), THREADS * PER_THREAD);
+            // every reserved value is handed out, so nothing is reserved twice
+            assertEquals(allocator.getReservationCount(), THREADS * PER_THREAD / 20);
+            assertEquals(allocator.reserved.get(), THREADS * PER_THREAD / 20);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void valuesStepByTheSequenceIncrement() throws SQLException {
+        AgrmntNoAllocator allocator = new FakeSequenceAllocator(10, 3, 2);
+        assertEquals(allocator.next(null), "A10");
+        assertEquals(allocator.next(null), "A13");
+        assertEquals(allocator.next(null), "A16");
+        assertEquals(allocator.next(null), "A19");
+        assertEquals(allocator.getReservationCount(), 2);
+    }
+
+    @Test
+    public void failedReservationIsRetriedByTheNextCall() throws SQLException {
+        FakeSequenceAllocator allocator = new FakeSequenceAllocator(1, 1, 2);
+        allocator.failures.set(1);
+        try {
+            allocator.next(null);
+            fail("expected the reservation to fail");
+        } catch (SQLException e) {
+            assertEquals(e.getMessage(), "reservation failed");
+        }
+        assertEquals(allocator.next(null), "A1");
+        assertEquals(allocator.getReservationCount(), 1);
+    }
+
+    @Test(expectedExceptions = SQLException.class)
+    public void shortRangeIsRejected() throws SQLException {
+        new AgrmntNoAllocator("dbo.SEQ", "A", 10) {
+            @Override
+            protected ReservedRange reserveRange(Connection conn, int size) {
+                return new ReservedRange(1, 1, size - 1);
+            }
+        }.next(null);
+    }
+
+    /**
+     * Hands out consecutive ranges of an in-memory sequence, taking a little
+     * time for each so that callers pile up behind the refill.
+     */
+    private static final class FakeSequenceAllocator extends AgrmntNoAllocator {
+        final AtomicInteger reserved = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        private final long start;
+        private final long increment;
+        private long nextFirst;
+
+        FakeSequenceAllocator(long start, long increment, int blockSize) {
+            super("dbo.SEQ", "A", blockSize);
+            this.start = start;
+            this.increment = increment;
+            this.nextFirst = start;
+        }
+
+        @Override
+        protected synchronized ReservedRange reserveRange(Connection conn, int size) throws SQLException {
+            if (failures.getAndDecrement() > 0) {
+                throw new SQLException("reservation failed");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            }
+            long first = nextFirst;
+            nextFirst += increment * size;
+            reserved.incrementAndGet();
+            assertTrue(first >= start);
+            return new ReservedRange(first, increment, size);
+        }
+    }
+}
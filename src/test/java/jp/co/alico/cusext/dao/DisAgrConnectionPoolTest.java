@@ -0,0 +1,273 @@
+package jp.co.alico.cusext.dao;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DisAgrConnectionPoolTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private JdbcDataSource h2;
+
+    // every physical connection the pool has opened, in order
+    private final List<Connection> physical = new CopyOnWriteArrayList<Connection>();
+
+    private DisAgrConnectionPool pool;
+
+    @BeforeMethod
+    public void setUp() throws SQLException {
+        h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:pool_" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        Connection conn = h2.getConnection();
+        try {
+            conn.createStatement().execute("CREATE TABLE T (ID INT PRIMARY KEY)");
+        } finally {
+            conn.close();
+        }
+        physical.clear();
+    }
+
+    @AfterMethod
+    public void tearDown() throws SQLException {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        Connection conn = h2.getConnection();
+        conn.createStatement().execute("SHUTDOWN");
+    }
+
+    @Test
+    public void acquireTimesOutWhenEveryConnectionIsBorrowed() throws SQLException {
+        DisAgrConnectionPool.Config config = config();
+        config.maxSize = 1;
+        config.acquireTimeoutMillis = 50;
+        pool = pool(config);
+        // the histogram is shared by every pool, so compare against where it started
+        long waits = waitMetric("count");
+        long waitErrors = waitMetric("errors");
+
+        Connection held = pool.getConnection();
+        long start = System.nanoTime();
+        try {
+            pool.getConnection();
+            fail("expected a timeout");
+        } catch (SQLTimeoutException expected) {
+            assertTrue(System.nanoTime() - start >= 40000000L);
+        }
+        assertEquals(pool.getMetrics().get("timeouts"), Long.valueOf(1));
+        assertEquals(pool.getPendingCount(), 0);
+        // the timeout counts as an error and stays out of the wait distribution
+        assertEquals(waitMetric("count"), waits + 1);
+        assertEquals(waitMetric("errors"), waitErrors + 1);
+        assertEquals(pool.getMetrics().get("waitErrors"), Long.valueOf(waitErrors + 1));
+
+        // the permit comes back when the borrower closes its connection
+        held.close();
+        pool.getConnection().close();
+        assertEquals(pool.getTotalCount(), 1);
+    }
+
+    @Test
+    public void connectionHeldPastTheLeakThresholdIsReportedOnce() throws Exception {
+        DisAgrConnectionPool.Config config = config();
+        config.leakDetectionMillis = 20;
+        config.housekeepingIntervalMillis = 10;
+        pool = pool(config);
+
+        Connection leaked = pool.getConnection();
+        waitFor(new Condition() {
+            @Override
+            public boolean holds() {
+                return pool.getMetrics().get("leaks").longValue() == 1;
+            }
+        });
+        Thread.sleep(50);
+        assertEquals(pool.getMetrics().get("leaks"), Long.valueOf(1));
+        leaked.close();
+        assertEquals(pool.getActiveCount(), 0);
+    }
+
+    @Test
+    public void idleConnectionsPastTheTimeoutAreClosedDownToMinIdle() throws Exception {
+        DisAgrConnectionPool.Config config = config();
+        config.minIdle = 1;
+        config.idleTimeoutMillis = 30;
+        config.housekeepingIntervalMillis = 10;
+        pool = pool(config);
+
+        Connection[] borrowed = new Connection[4];
+        for (int i = 0; i < borrowed.length; i++) {
+            borrowed[i] = pool.getConnection();
+        }
+        for (Connection conn : borrowed) {
+            conn.close();
+        }
+        waitFor(new Condition() {
+            @Override
+            public boolean holds() {
+                return pool.getIdleCount() == 1 && pool.getTotalCount() == 1;
+            }
+        });
+        int closed = 0;
+        for (Connection conn : physical) {
+            closed += conn.isClosed() ? 1 : 0;
+        }
+        assertEquals(closed, physical.size() - 1);
+        assertEquals(pool.getMetrics().get("destroyed").longValue(), (long) closed);
+    }
+
+    @Test
+    public void brokenIdleConnectionIsReplacedOnBorrow() throws Exception {
+        DisAgrConnectionPool.Config config = config();
+        config.validationIntervalMillis = 0;
+        pool = pool(config);
+
+        pool.getConnection().close();
+        assertEquals(physical.size(), 1);
+        // the server drops the connection while it sits idle
+        physical.get(0).close();
+        Thread.sleep(5);
+
+        Connection conn = pool.getConnection();
+        try {
+            assertTrue(conn.isValid(1));
+            Statement stmt = conn.createStatement();
+            stmt.executeQuery("SELECT 1").close();
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+        assertEquals(physical.size(), 2);
+        assertEquals(pool.getMetrics().get("validationFailures"), Long.valueOf(1));
+        assertEquals(pool.getTotalCount(), 1);
+    }
+
+    @Test
+    public void recentlyReturnedConnectionIsNotValidated() throws SQLException {
+        DisAgrConnectionPool.Config config = config();
+        config.validationIntervalMillis = 60000;
+        pool = pool(config);
+
+        pool.getConnection().close();
+        pool.getConnection().close();
+        assertEquals(physical.size(), 1);
+        assertEquals(pool.getMetrics().get("validationFailures"), Long.valueOf(0));
+    }
+
+    @Test
+    public void releaseRollsBackAndRestoresAutoCommitAndIsolation() throws SQLException {
+        DisAgrConnectionPool.Config config = config();
+        config.maxSize = 1;
+        pool = pool(config);
+
+        Connection conn = pool.getConnection();
+        int isolation = conn.getTransactionIsolation();
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("INSERT INTO T VALUES (1)");
+        stmt.close();
+        // returned without commit
+        conn.close();
+
+        Connection next = pool.getConnection();
+        try {
+            assertEquals(physical.size(), 1);
+            assertTrue(next.getAutoCommit());
+            assertEquals(next.getTransactionIsolation(), isolation);
+            ResultSet rset = next.createStatement().executeQuery("SELECT COUNT(*) FROM T");
+            rset.next();
+            assertEquals(rset.getInt(1), 0);
+            rset.close();
+        } finally {
+            next.close();
+        }
+    }
+
+    @Test
+    public void closedLogicalConnectionCannotBeUsed() throws SQLException {
+        pool = pool(config());
+        Connection conn = pool.getConnection();
+        conn.close();
+        assertTrue(conn.isClosed());
+        // closing twice does not return the physical connection twice
+        conn.close();
+        assertEquals(pool.getIdleCount(), 1);
+        try {
+            conn.createStatement();
+            fail("expected the closed connection to be rejected");
+        } catch (SQLException expected) {
+            assertNotNull(expected.getMessage());
+        }
+        assertFalse(physical.get(0).isClosed());
+    }
+
+    private long waitMetric(String name) {
+        return pool.getWaitTimeHistogram().getMetrics().get(name).longValue();
+    }
+
+    private static DisAgrConnectionPool.Config config() {
+        DisAgrConnectionPool.Config config = new DisAgrConnectionPool.Config();
+        config.maxSize = 4;
+        config.minIdle = 0;
+        config.acquireTimeoutMillis = 1000;
+        config.leakDetectionMillis = 0;
+        config.housekeepingIntervalMillis = 60000;
+        return config;
+    }
+
+    /**
+     * A pool over the H2 database that records each physical connection it opens.
+     */
+    private DisAgrConnectionPool pool(DisAgrConnectionPool.Config config) {
+        DataSource recording = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result = method.invoke(h2, args);
+                        if ("getConnection".equals(method.getName())) {
+                            physical.add((Connection) result);
+                        }
+                        return result;
+                    }
+                });
+        return new DisAgrConnectionPool(recording, config);
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.holds()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not reached within 5s");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
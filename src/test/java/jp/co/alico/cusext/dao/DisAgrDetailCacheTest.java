@@ -0,0 +1,179 @@
+package jp.co.alico.cusext.dao;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import jp.co.alico.cusext.vo.DisAgrmntInfoVO;
+
+public class DisAgrDetailCacheTest {
+
+    private DisAgrDetailCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        cache = new DisAgrDetailCache(64, 1, TimeUnit.HOURS);
+    }
+
+    @Test
+    public void disAgrmntNoIsMatchedLikeTheDatabase() {
+        DisAgrmntInfoVO vo = new DisAgrmntInfoVO();
+        cache.put("EN1  ", true, "ACT1", vo, cache.getEpoch());
+        assertSame(cache.get("en1", true), vo);
+        cache.invalidate(" en1");
+        assertNull(cache.get("EN1", true));
+    }
+
+    @Test
+    public void deleteAllByActIdDropsRowsStoredWithAnotherCaseOrPadding() {
+        cache.put("EN1", true, "ACT1  ", new DisAgrmntInfoVO(), cache.getEpoch());
+        cache.put("EN2", false, "Act1", new DisAgrmntInfoVO(), cache.getEpoch());
+        DisAgrmntInfoVO other = new DisAgrmntInfoVO();
+        cache.put("EN3", true, "ACT2", other, cache.getEpoch());
+
+        cache.invalidateByActId("act1");
+        assertNull(cache.get("EN1", true));
+        assertNull(cache.get("EN2", false));
+        assertSame(cache.get("EN3", true), other);
+    }
+
+    @Test
+    public void loadOverlappingADeleteAllWithAnotherCaseIsNotCached() {
+        long epoch = cache.getEpoch();
+        cache.invalidateByActId("act1");
+        cache.put("EN1", true, "ACT1  ", new DisAgrmntInfoVO(), epoch);
+        assertNull(cache.get("EN1", true));
+    }
+
+    @Test
+    public void loadStartedBeforeInvalidateIsNotCached() {
+        long epoch = cache.getEpoch();
+        cache.invalidate("EN1");
+        cache.put("EN1", true, "ACT1", new DisAgrmntInfoVO(), epoch);
+        assertNull(cache.get("EN1", true));
+
+        // a load that starts after the invalidation is cached again
+        cache.put("EN1", true, "ACT1", new DisAgrmntInfoVO(), cache.getEpoch());
+        assertNotNull(cache.get("EN1", true));
+    }
+
+    @Test
+    public void loadStartedBeforeInvalidateByActIdIsNotCached() {
+        long epoch = cache.getEpoch();
+        cache.invalidateByActId("ACT1");
+        cache.put("EN1", false, "ACT1", new DisAgrmntInfoVO(), epoch);
+        assertNull(cache.get("EN1", false));
+    }
+
+    @Test
+    public void loadStartedBeforeInvalidateAllIsNotCached() {
+        long epoch = cache.getEpoch();
+        cache.put("EN1", true, "ACT1", new DisAgrmntInfoVO(), epoch);
+        cache.invalidateAll();
+        assertNull(cache.get("EN1", true));
+        cache.put("EN2", true, "ACT2", new DisAgrmntInfoVO(), epoch);
+        assertNull(cache.get("EN2", true));
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void loadOfAnUnrelatedRowIsStillCached() {
+        long epoch = cache.getEpoch();
+        cache.invalidate("EN1");
+        cache.invalidateByActId("ACT1");
+        DisAgrmntInfoVO vo = new DisAgrmntInfoVO();
+        cache.put("EN2", true, "ACT2", vo, epoch);
+        // the stripes are a hash of the id, so this holds unless EN1/EN2 or ACT1/ACT2 collide
+        assertSame(cache.get("EN2", true), vo);
+    }
+
+    @Test
+    public void branchAndHeadOfficeAreCachedSeparately() {
+        DisAgrmntInfoVO branch = new DisAgrmntInfoVO();
+        cache.put("EN1", true, "ACT1", branch, cache.getEpoch());
+        assertNull(cache.get("EN1", false));
+        assertSame(cache.get("EN1", true), branch);
+        cache.invalidate("EN1");
+        assertNull(cache.get("EN1", true));
+    }
+
+    @Test
+    public void expiredEntryIsDroppedOnRead() throws InterruptedException {
+        DisAgrDetailCache shortLived = new DisAgrDetailCache(64, 20, TimeUnit.MILLISECONDS);
+        shortLived.put("EN1", true, "ACT1", new DisAgrmntInfoVO(), shortLived.getEpoch());
+        assertNotNull(shortLived.get("EN1", true));
+        Thread.sleep(50);
+        assertNull(shortLived.get("EN1", true));
+        assertEquals(shortLived.size(), 0);
+        assertEquals(shortLived.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void sizeStaysWithinTheBound() {
+        for (int i = 0; i < 1000; i++) {
+            cache.put("EN" + i, i % 2 == 0, "ACT" + i, new DisAgrmntInfoVO(), cache.getEpoch());
+        }
+        assertTrue(cache.size() <= 64, "size " + cache.size());
+        assertEquals(cache.getEvictionCount(), 1000 - cache.size());
+    }
+
+    @Test
+    public void leastRecentlyReadEntryIsEvictedFirst() {
+        // a bound of 32 gives each of the 16 segments room for two entries
+        DisAgrDetailCache lru = new DisAgrDetailCache(32, 1, TimeUnit.HOURS);
+        List<String> keys = sameSegmentKeys(3);
+        lru.put(keys.get(0), true, "ACT", new DisAgrmntInfoVO(), lru.getEpoch());
+        lru.put(keys.get(1), true, "ACT", new DisAgrmntInfoVO(), lru.getEpoch());
+        assertNotNull(lru.get(keys.get(0), true));
+        lru.put(keys.get(2), true, "ACT", new DisAgrmntInfoVO(), lru.getEpoch());
+
+        assertNull(lru.get(keys.get(1), true));
+        assertNotNull(lru.get(keys.get(0), true));
+        assertNotNull(lru.get(keys.get(2), true));
+        assertEquals(lru.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void countersTrackHitsMissesAndInvalidations() {
+        cache.put("EN1", true, "ACT1", new DisAgrmntInfoVO(), cache.getEpoch());
+        cache.get("EN1", true);
+        cache.get("EN1", true);
+        cache.get("EN2", true);
+        cache.invalidate("EN1");
+        cache.invalidateByActId("ACT1");
+        cache.invalidateAll();
+        cache.get("EN1", true);
+
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.getMissCount(), 2);
+        assertEquals(cache.getInvalidationCount(), 3);
+        assertEquals(cache.getEvictionCount(), 0);
+    }
+
+    /**
+     * Finds keys that share a segment by watching a cache that holds one
+     * entry per segment: a key that pushes the first one out shares its segment.
+     */
+    private static List<String> sameSegmentKeys(int count) {
+        List<String> keys = new ArrayList<String>();
+        keys.add("EN0");
+        for (int i = 1; keys.size() < count; i++) {
+            DisAgrDetailCache probe = new DisAgrDetailCache(16, 1, TimeUnit.HOURS);
+            probe.put(keys.get(0), true, "ACT", new DisAgrmntInfoVO(), probe.getEpoch());
+            probe.put("EN" + i, true, "ACT", new DisAgrmntInfoVO(), probe.getEpoch());
+            if (probe.get(keys.get(0), true) == null) {
+                keys.add("EN" + i);
+            }
+        }
+        return keys;
+    }
+}
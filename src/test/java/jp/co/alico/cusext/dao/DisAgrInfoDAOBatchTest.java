@@ -0,0 +1,140 @@
+package jp.co.alico.cusext.dao;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import jp.co.alico.cusext.common.Constant;
+import jp.co.alico.cusext.form.DisAgrEntryForm;
+import jp.co.alico.cusext.vo.DisAgrBatchResultVO;
+
+public class DisAgrInfoDAOBatchTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private DisAgrTestDatabase database;
+
+    @BeforeMethod
+    public void setUp() throws SQLException {
+        database = new DisAgrTestDatabase("disagr_batch_" + DATABASES.incrementAndGet());
+        database.create(1, 0);
+    }
+
+    @AfterMethod
+    public void tearDown() throws SQLException {
+        database.shutdown();
+    }
+
+    @Test
+    public void allRowsOfCleanChunksAreInserted() throws Exception {
+        DisAgrBatchResultVO result = new EmbeddedDisAgrInfoDAO(database).insertDisAgrInfoBatch(forms(7), "ope", 3);
+        assertEquals(result.getSuccessCount(), 7);
+        assertEquals(result.getFailureCount(), 0);
+        assertEquals(rowCount(), 7);
+    }
+
+    @Test
+    public void rowRejectedByTheDatabaseFailsAlone() throws Exception {
+        List<DisAgrEntryForm> forms = forms(6);
+        // longer than ACT_SFDC_ID allows
+        forms.get(4).setActId("ACT0_IS_FAR_TOO_LONG_FOR_THE_COLUMN");
+        DisAgrBatchResultVO result = new EmbeddedDisAgrInfoDAO(database).insertDisAgrInfoBatch(forms, "ope", 3);
+        assertFailedRows(result, 4);
+        assertEquals(rowCount(), 5);
+    }
+
+    @Test
+    public void rowThatCannotBeBoundFailsAloneAndTheBatchGoesOn() throws Exception {
+        List<DisAgrEntryForm> forms = forms(6);
+        forms.set(1, null);
+        DisAgrBatchResultVO result = new EmbeddedDisAgrInfoDAO(database).insertDisAgrInfoBatch(forms, "ope", 3);
+        assertFailedRows(result, 1);
+        // the rows added to the batch before the failing one are not sent twice
+        assertEquals(rowCount(), 5);
+    }
+
+    @Test
+    public void allocatorFailureFailsOnlyThatRow() throws Exception {
+        final AgrmntNoAllocator failing = new H2AgrmntNoAllocator(
+                Constant.SEQ_SCHEMA + ".SEQ_MST_CUS_AGRMNT_NO_EXT", "EN", AgrmntNoAllocator.DEFAULT_BLOCK_SIZE) {
+            private int calls;
+
+            @Override
+            public String next(Connection conn) throws SQLException {
+                // the third row fails, both in the batch and when it is retried on its own
+                calls++;
+                if (calls == 3 || calls == 4) {
+                    throw new IllegalStateException("allocator unavailable");
+                }
+                return super.next(conn);
+            }
+        };
+        EmbeddedDisAgrInfoDAO dao = new EmbeddedDisAgrInfoDAO(database) {
+            @Override
+            protected AgrmntNoAllocator getAgrmntNoAllocator() {
+                return failing;
+            }
+        };
+        DisAgrBatchResultVO result = dao.insertDisAgrInfoBatch(forms(6), "ope", 4);
+        assertFailedRows(result, 2);
+        assertEquals(rowCount(), 5);
+    }
+
+    @Test
+    public void failedChunkDoesNotLeaveRowsInTheCachedStatement() throws Exception {
+        EmbeddedDisAgrInfoDAO dao = new EmbeddedDisAgrInfoDAO(database);
+        List<DisAgrEntryForm> forms = forms(3);
+        forms.set(2, null);
+        dao.insertDisAgrInfoBatch(forms, "ope", 3);
+        DisAgrBatchResultVO result = dao.insertDisAgrInfoBatch(forms(2), "ope", 3);
+        assertEquals(result.getSuccessCount(), 2);
+        assertEquals(rowCount(), 4);
+    }
+
+    private static void assertFailedRows(DisAgrBatchResultVO result, int failedIndex) {
+        assertEquals(result.getFailureCount(), 1);
+        for (int i = 0; i < result.getRowResultList().size(); i++) {
+            if (i == failedIndex) {
+                assertNull(result.getRowResultList().get(i).getDisAgrmntNo());
+                assertNotNull(result.getRowResultList().get(i).getErrorMessage());
+            } else {
+                assertNotNull(result.getRowResultList().get(i).getDisAgrmntNo(), "row " + i);
+            }
+        }
+    }
+
+    private static List<DisAgrEntryForm> forms(int count) {
+        List<DisAgrEntryForm> forms = new ArrayList<DisAgrEntryForm>();
+        for (int i = 0; i < count; i++) {
+            DisAgrEntryForm form = new DisAgrEntryForm();
+            form.setActId(DisAgrTestDatabase.actId(0));
+            form.setActSubject("subject " + i);
+            form.setMemo("memo " + i);
+            forms.add(form);
+        }
+        return forms;
+    }
+
+    private int rowCount() throws SQLException {
+        Connection conn = database.getConnection();
+        try {
+            ResultSet rset = conn.createStatement().executeQuery(
+                    "SELECT COUNT(*) FROM " + Constant.TABLE_SCHEMA + ".T_MST_CUS_LDS_AGRMNT_INFO_DT");
+            rset.next();
+            return rset.getInt(1);
+        } finally {
+            conn.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package jp.co.alico.cusext.dao;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class StatementCachingConnectionTest {
+
+    private static final String INSERT = "INSERT INTO T (ID) VALUES (?)";
+
+    private static final String SELECT = "SELECT ID FROM T ORDER BY ID";
+
+    private Connection conn;
+
+    @BeforeMethod
+    public void setUp() throws SQLException {
+        conn = StatementCachingConnection.wrap(DriverManager.getConnection("jdbc:h2:mem:"), 4);
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.execute("CREATE TABLE T (ID INT PRIMARY KEY)");
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void closedStatementIsReused() throws SQLException {
+        PreparedStatement first = conn.prepareStatement(SELECT);
+        first.close();
+        PreparedStatement second = conn.prepareStatement(SELECT);
+        second.close();
+        assertSame(second, first);
+        long[] stats = StatementCachingConnection.getStats(conn);
+        assertNotNull(stats);
+        assertEquals(stats[0], 1);
+        assertEquals(stats[1], 1);
+    }
+
+    @Test
+    public void unsentBatchIsNotCarriedToTheNextCaller() throws SQLException {
+        PreparedStatement abandoned = conn.prepareStatement(INSERT);
+        abandoned.setInt(1, 1);
+        abandoned.addBatch();
+        abandoned.setInt(1, 2);
+        abandoned.addBatch();
+        // the caller failed before executeBatch and closed the statement
+        abandoned.close();
+
+        PreparedStatement next = conn.prepareStatement(INSERT);
+        next.setInt(1, 3);
+        next.addBatch();
+        assertEquals(next.executeBatch().length, 1);
+        next.close();
+        assertEquals(ids(), "3");
+    }
+
+    @Test
+    public void maxRowsIsResetOnRelease() throws SQLException {
+        for (int id = 1; id <= 3; id++) {
+            PreparedStatement insert = conn.prepareStatement(INSERT);
+            insert.setInt(1, id);
+            insert.executeUpdate();
+            insert.close();
+        }
+        PreparedStatement limited = conn.prepareStatement(SELECT);
+        limited.setMaxRows(1);
+        limited.executeQuery().close();
+        limited.close();
+        assertEquals(ids(), "1,2,3");
+    }
+
+    private String ids() throws SQLException {
+        PreparedStatement select = conn.prepareStatement(SELECT);
+        try {
+            ResultSet rset = select.executeQuery();
+            StringBuilder ids = new StringBuilder();
+            while (rset.next()) {
+                ids.append(ids.length() == 0 ? "" : ",").append(rset.getInt(1));
+            }
+            rset.close();
+            return ids.toString();
+        } finally {
+            select.close();
+        }
+    }
+}